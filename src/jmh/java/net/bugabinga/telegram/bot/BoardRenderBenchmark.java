@@ -0,0 +1,87 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Building the text of /board, which is all the bot does for it besides sending. Nothing gets
+ * sent to Telegram here.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BoardRenderBenchmark {
+
+  private static final long CHAT = 0;
+
+  private static final int BOARD_SIZE = 10;
+
+  /**
+   * Number of people on the board.
+   */
+  @Param({"10", "1000"})
+  public int players;
+
+  /**
+   * All time comes from the ranking, the others are summed up from the days.
+   */
+  @Param({"ALL", "WEEK", "SEASON"})
+  public ScoreWindow window;
+
+  private ScoreBoard board;
+  private int today;
+  private BoardCache cache;
+
+  /**
+   * A board of a few months of wins.
+   */
+  @Setup
+  public void createBoard() {
+    board = new ScoreBoard();
+    final List<String> names = SyntheticEventLog.userNames(players);
+    final Random random = new Random(players);
+    final long start = 1_500_000_000L;
+    final int wins = 50 * players;
+    for (int index = 0; index < wins; index++) {
+      final int user = random.nextInt(players);
+      board.apply(new ScoreEvent(ScoreEvent.Kind.WON, CHAT, user, names.get(user), index + 1,
+          start + index * 600L, 0, null));
+    }
+    today = ScoreBuckets.dayOf(start + wins * 600L);
+    cache = new BoardCache(1);
+    cache.put(CHAT, window, today, ScoreBoardCore.renderBoard(board, window, today, BOARD_SIZE));
+  }
+
+  /**
+   * @return The text of the board.
+   */
+  @Benchmark
+  public String render() {
+    return ScoreBoardCore.renderBoard(board, window, today, BOARD_SIZE);
+  }
+
+  /**
+   * @return The text of the board, as long as nobody scored since it was rendered.
+   */
+  @Benchmark
+  public String cached() {
+    return cache.get(CHAT, window, today);
+  }
+}
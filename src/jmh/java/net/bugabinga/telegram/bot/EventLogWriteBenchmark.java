@@ -0,0 +1,100 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * How fast the {@link EventLogProcessor} gets batches into the file store. This does what the
+ * processor does with a batch it drained from the queue, without the queue and its thread.
+ *
+ * <p>
+ * The score is batches per second. Multiply by the batch size for events.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class EventLogWriteBenchmark {
+
+  /**
+   * How many events the processor drained at once.
+   */
+  @Param({"1", "100", "1000"})
+  public int batchSize;
+
+  /**
+   * {@link DurabilityMode#BATCH} forces every batch to disk, {@link DurabilityMode#NONE} never
+   * does. {@link DurabilityMode#INTERVAL} lies in between.
+   */
+  @Param({"BATCH", "NONE"})
+  public DurabilityMode durability;
+
+  private Path directory;
+  private FileScoreStore store;
+  private List<ScoreEvent> events;
+  private int next;
+
+  /**
+   * Starts with an empty log, the events come from a few busy chats.
+   *
+   * @throws IOException If the log cannot be created.
+   */
+  @Setup(Level.Trial)
+  public void createStore() throws IOException {
+    directory = SyntheticEventLog.temporaryDirectory("scobo-write");
+    final PartitionedEventLog chatLogs = new PartitionedEventLog(directory.resolve("events"),
+        PartitionedEventLog.DEFAULT_SEGMENT_SIZE, PartitionedEventLog.DEFAULT_MAX_OPEN_WRITERS);
+    final ObjectMapper mapper = new ObjectMapper();
+    final ChatCheckpoints checkpoints = new ChatCheckpoints(mapper);
+    store = new FileScoreStore(chatLogs, checkpoints,
+        new ScoreSnapshots(directory.resolve("snapshots"), mapper),
+        new EventLogCompactor(chatLogs, checkpoints, false, 0, 60), ReplayMode.SEQUENTIAL, 1);
+    store.load();
+    events = new SyntheticEventLog(100, 20, 100_000, 0.1).events();
+  }
+
+  /**
+   * @throws IOException If the log cannot be deleted.
+   */
+  @TearDown(Level.Trial)
+  public void deleteStore() throws IOException {
+    store.close();
+    SyntheticEventLog.delete(directory);
+  }
+
+  /**
+   * @throws IOException If writing fails.
+   */
+  @Benchmark
+  public void writeBatch() throws IOException {
+    if (next + batchSize > events.size()) {
+      next = 0;
+    }
+    store.append(events.subList(next, next + batchSize));
+    next += batchSize;
+    if (durability == DurabilityMode.BATCH) {
+      store.force();
+    }
+  }
+}
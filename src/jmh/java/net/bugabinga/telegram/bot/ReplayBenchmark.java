@@ -0,0 +1,95 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Rebuilding every board from the whole event log, which is what startup does without a snapshot
+ * and what every /board did before the boards were kept in memory.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ReplayBenchmark {
+
+  /**
+   * Number of events in the log.
+   */
+  @Param({"100000", "1000000"})
+  public int events;
+
+  /**
+   * Number of chats the events are spread over.
+   */
+  @Param({"10", "1000"})
+  public int chats;
+
+  /**
+   * One after another or on a fork join pool.
+   */
+  @Param({"SEQUENTIAL", "PARALLEL"})
+  public ReplayMode mode;
+
+  /**
+   * Whether the cold segments are compressed, like the {@link EventLogCompactor} leaves them.
+   */
+  @Param({"false", "true"})
+  public boolean compressed;
+
+  private Path directory;
+  private PartitionedEventLog chatLogs;
+  private ChatCheckpoints checkpoints;
+
+  /**
+   * @throws IOException If the log cannot be written.
+   */
+  @Setup(Level.Trial)
+  public void writeLog() throws IOException {
+    directory = SyntheticEventLog.temporaryDirectory("scobo-replay");
+    // small segments, so even the small logs have cold ones
+    chatLogs = new SyntheticEventLog(chats, 20, events, 0.1).writeTo(directory, 64 * 1024);
+    checkpoints = new ChatCheckpoints(new ObjectMapper());
+    if (compressed) {
+      new EventLogCompactor(chatLogs, checkpoints, true, 0, 60).run();
+    }
+  }
+
+  /**
+   * @throws IOException If the log cannot be deleted.
+   */
+  @TearDown(Level.Trial)
+  public void deleteLog() throws IOException {
+    SyntheticEventLog.delete(directory);
+  }
+
+  /**
+   * @return The boards of all chats.
+   * @throws IOException If the log cannot be read.
+   */
+  @Benchmark
+  public ScoreBoards replay() throws IOException {
+    return EventLogReplay.replay(chatLogs, checkpoints, null, mode,
+        Runtime.getRuntime().availableProcessors());
+  }
+}
@@ -0,0 +1,206 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Makes up the history of a bunch of chats for the benchmarks. The same settings always give the
+ * same events. An /undo takes back the most recent win of its chat, like it does in the bot.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public final class SyntheticEventLog {
+
+  /**
+   * The first event happens at this time, in seconds since the epoch.
+   */
+  private static final long START = 1_500_000_000L;
+
+  /**
+   * Time between two events, so a large log spans a few months.
+   */
+  private static final long SECONDS_BETWEEN_EVENTS = 60;
+
+  private final int chats;
+  private final int users;
+  private final int events;
+  private final double undoRatio;
+  private final long seed;
+
+  /**
+   * @param chats Number of chats the events are spread over.
+   * @param users Number of people per chat.
+   * @param events Number of events in total.
+   * @param undoRatio Share of the events that are an /undo, between 0 and 1.
+   */
+  public SyntheticEventLog(final int chats, final int users, final int events,
+      final double undoRatio) {
+    this(chats, users, events, undoRatio, 42);
+  }
+
+  /**
+   * @param chats Number of chats the events are spread over.
+   * @param users Number of people per chat.
+   * @param events Number of events in total.
+   * @param undoRatio Share of the events that are an /undo, between 0 and 1.
+   * @param seed Another seed gives other events.
+   */
+  public SyntheticEventLog(final int chats, final int users, final int events,
+      final double undoRatio, final long seed) {
+    this.chats = chats;
+    this.users = users;
+    this.events = events;
+    this.undoRatio = undoRatio;
+    this.seed = seed;
+  }
+
+  /**
+   * @return The events as the bot would log them. An /undo shows up as the REVERT of a win.
+   */
+  public List<ScoreEvent> events() {
+    final Random random = new Random(seed);
+    final ScoreBoards boards = new ScoreBoards();
+    final List<ScoreEvent> generated = new ArrayList<>(events);
+    for (int index = 0; index < events; index++) {
+      final long chatId = random.nextInt(chats);
+      final int user = random.nextInt(users);
+      final ScoreEvent event;
+      final List<ScoreBoard.Win> last = boards.of(chatId).lastWins(1);
+      if (random.nextDouble() < undoRatio && !last.isEmpty()) {
+        event = ScoreEvent.revert(last.get(0), new ScoreEvent(ScoreEvent.Kind.UNDO, chatId, user,
+            userName(user), index + 1, timestamp(index), 0, null), null);
+      } else {
+        event = new ScoreEvent(ScoreEvent.Kind.WON, chatId, user, userName(user), index + 1,
+            timestamp(index), 0, null);
+      }
+      boards.apply(event);
+      generated.add(event);
+    }
+    return generated;
+  }
+
+  /**
+   * @param jsonMapper Serializes the updates.
+   * @return The JSON of the Telegram updates behind the events, the way the old event log stored
+   *         them.
+   * @throws IOException If serializing fails.
+   */
+  public List<byte[]> updates(final ObjectMapper jsonMapper) throws IOException {
+    final List<byte[]> updates = new ArrayList<>(events);
+    for (final ScoreEvent event : events()) {
+      final ObjectNode update = jsonMapper.createObjectNode();
+      update.put("update_id", event.getUpdateId());
+      final ObjectNode message = update.putObject("message");
+      message.put("message_id", event.getUpdateId());
+      final ObjectNode from = message.putObject("from");
+      from.put("id", event.getUserId());
+      from.put("first_name", "First " + event.getUserName());
+      from.put("is_bot", false);
+      from.put("username", event.getUserName());
+      final ObjectNode chat = message.putObject("chat");
+      chat.put("id", event.getChatId());
+      chat.put("type", "group");
+      chat.put("title", "Chat " + event.getChatId());
+      message.put("date", event.getTimestamp());
+      message.put("text",
+          event.getKind() == ScoreEvent.Kind.WON ? "/won" : "/undo@" + ScoreBoardCore.SCOBO_BOT);
+      updates.add(jsonMapper.writeValueAsBytes(update));
+    }
+    return updates;
+  }
+
+  /**
+   * @param directory Where the log goes, should be empty.
+   * @param maxSegmentSize Size at which the log of a chat rolls over into a new segment.
+   * @return The event log holding all events, with every segment closed.
+   * @throws IOException If writing fails.
+   */
+  public PartitionedEventLog writeTo(final Path directory, final long maxSegmentSize)
+      throws IOException {
+    final PartitionedEventLog log = new PartitionedEventLog(directory, maxSegmentSize,
+        PartitionedEventLog.DEFAULT_MAX_OPEN_WRITERS);
+    final List<ScoreEvent> all = events();
+    for (int from = 0; from < all.size(); from += 1000) {
+      log.append(all.subList(from, Math.min(all.size(), from + 1000)));
+    }
+    log.close();
+    return log;
+  }
+
+  /**
+   * @return The boards after all events.
+   */
+  public ScoreBoards boards() {
+    final ScoreBoards boards = new ScoreBoards();
+    events().forEach(boards::apply);
+    return boards;
+  }
+
+  /**
+   * @param count How many names.
+   * @return Made up people in random order, but the same for every call.
+   */
+  static List<String> userNames(final int count) {
+    final List<String> names = new ArrayList<>(count);
+    for (int user = 0; user < count; user++) {
+      names.add(userName(user));
+    }
+    Collections.shuffle(names, new Random(count));
+    return names;
+  }
+
+  /**
+   * @param prefix Start of the name of the directory.
+   * @return A fresh directory in the temporary directory of the system.
+   * @throws IOException If it cannot be created.
+   */
+  static Path temporaryDirectory(final String prefix) throws IOException {
+    return Files.createTempDirectory(prefix);
+  }
+
+  /**
+   * @param directory Gets deleted with everything in it.
+   * @throws IOException If something cannot be deleted.
+   */
+  static void delete(final Path directory) throws IOException {
+    Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(final Path file, final BasicFileAttributes attributes)
+          throws IOException {
+        Files.delete(file);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult postVisitDirectory(final Path visited, final IOException exception)
+          throws IOException {
+        Files.delete(visited);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  private static String userName(final int user) {
+    return "player" + user;
+  }
+
+  private static long timestamp(final int index) {
+    return START + index * SECONDS_BETWEEN_EVENTS;
+  }
+}
@@ -0,0 +1,104 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Finding the wins an /undo takes back: from the undo stack of the board, against walking the log
+ * of the chat backwards and skipping the wins that were already taken back.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UndoLookupBenchmark {
+
+  private static final long CHAT = 0;
+
+  /**
+   * How many wins the /undo takes back.
+   */
+  @Param({"1", "10"})
+  public int count;
+
+  /**
+   * Share of the events that are an /undo already.
+   */
+  @Param({"0.1", "0.4"})
+  public double undoRatio;
+
+  private Path directory;
+  private ChatEventLog chatLog;
+  private ScoreBoard board;
+
+  /**
+   * One busy chat.
+   *
+   * @throws IOException If the log cannot be written.
+   */
+  @Setup(Level.Trial)
+  public void writeLog() throws IOException {
+    directory = SyntheticEventLog.temporaryDirectory("scobo-undo");
+    final SyntheticEventLog log = new SyntheticEventLog(1, 20, 100_000, undoRatio);
+    chatLog = log.writeTo(directory, PartitionedEventLog.DEFAULT_SEGMENT_SIZE).find(CHAT);
+    board = log.boards().of(CHAT);
+  }
+
+  /**
+   * @throws IOException If the log cannot be deleted.
+   */
+  @TearDown(Level.Trial)
+  public void deleteLog() throws IOException {
+    SyntheticEventLog.delete(directory);
+  }
+
+  /**
+   * @return The wins to take back.
+   */
+  @Benchmark
+  public List<ScoreBoard.Win> undoStack() {
+    return board.lastWins(count);
+  }
+
+  /**
+   * @return The wins to take back.
+   * @throws IOException If the log cannot be read.
+   */
+  @Benchmark
+  public List<ScoreBoard.Win> logBackwards() throws IOException {
+    final List<ScoreBoard.Win> wins = new ArrayList<>(count);
+    final Set<Long> reverted = new HashSet<>();
+    chatLog.forEachBackwards(event -> {
+      if (event.getKind() == ScoreEvent.Kind.REVERT) {
+        reverted.add(Long.valueOf(event.getTarget()));
+      } else if (!reverted.remove(Long.valueOf(event.getUpdateId()))) {
+        wins.add(new ScoreBoard.Win(event.getUserId(), event.getUserName(), event.getUpdateId(),
+            event.getTimestamp()));
+      }
+      return wins.size() < count;
+    });
+    return wins;
+  }
+}
@@ -0,0 +1,94 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.telegram.telegrambots.api.objects.Update;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Turning a stored event back into a {@link ScoreEvent}: binding the JSON of a whole Telegram
+ * {@link Update}, like the old event log needed on every read, against the streaming decoder of
+ * the migration and the binary records of the current event log.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class UpdateDecodingBenchmark {
+
+  private static final int COUNT = 1024;
+
+  private ObjectMapper mapper;
+  private ScoreEventJsonDecoder jsonDecoder;
+  private final ScoreEventCodec.Decoder binaryDecoder = new ScoreEventCodec.Decoder();
+  private byte[][] updates;
+  private ByteBuffer[] records;
+  private int next;
+
+  /**
+   * @throws IOException If the updates cannot be serialized.
+   */
+  @Setup
+  public void createUpdates() throws IOException {
+    mapper = new ObjectMapper();
+    jsonDecoder = new ScoreEventJsonDecoder(mapper.getFactory());
+    final SyntheticEventLog log = new SyntheticEventLog(10, 20, COUNT, 0.1);
+    updates = log.updates(mapper).toArray(new byte[0][]);
+    final List<ScoreEvent> events = log.events();
+    records = new ByteBuffer[COUNT];
+    for (int index = 0; index < COUNT; index++) {
+      records[index] = ByteBuffer.wrap(ScoreEventCodec.encode(events.get(index)));
+    }
+  }
+
+  /**
+   * @return The event.
+   * @throws IOException If the JSON is broken.
+   */
+  @Benchmark
+  public ScoreEvent bindUpdate() throws IOException {
+    return ScoreEvent.from(mapper.readValue(updates[next()], Update.class));
+  }
+
+  /**
+   * @return The event.
+   * @throws IOException If the JSON is broken.
+   */
+  @Benchmark
+  public ScoreEvent streamUpdate() throws IOException {
+    final byte[] update = updates[next()];
+    return jsonDecoder.decode(update, 0, update.length);
+  }
+
+  /**
+   * @return The event.
+   */
+  @Benchmark
+  public ScoreEvent decodeRecord() {
+    final ByteBuffer record = records[next()];
+    record.rewind();
+    return binaryDecoder.decode(record);
+  }
+
+  private int next() {
+    next = next + 1 & COUNT - 1;
+    return next;
+  }
+}
@@ -0,0 +1,296 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.telegram.telegrambots.ApiContextInitializer;
+import org.telegram.telegrambots.api.objects.Update;
+import org.telegram.telegrambots.bots.DefaultAbsSender;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Feeds updates into a {@link ScoreBoardCore} in this process at a fixed rate and reports how the
+ * whole bot kept up: throughput, how long people waited for their replies and how far the event
+ * log fell behind. Replies go to the fake Bot API of {@link WebhookLoadTest} on localhost, so
+ * nothing reaches the real Telegram.
+ *
+ * <p>
+ * The updates either come from a recorded <code>scobo_bot.json</code>, one update per line, or
+ * get made up with a mix of commands over many chats. The bot gets configured through the usual
+ * environment variables, its data goes to a temporary directory that is deleted afterwards.
+ *
+ * <p>
+ * Several load tests with their own SCOBO_INSTANCE and the same SCOBO_DATA_DIR run like sharded
+ * bots. Each one feeds updates of every chat and forwards the ones of chats it does not hold.
+ *
+ * <p>
+ * Telegram only lets a bot send about 30 messages per second, and the bot sticks to that. Raise
+ * SCOBO_SENDS_PER_SECOND, SCOBO_CHAT_SENDS_PER_MINUTE and SCOBO_PRIVATE_CHAT_SENDS_PER_SECOND to
+ * find out what the bot could do without the limits.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public final class ReplayLoadTest {
+
+  private static final String SYNTHETIC = "synthetic";
+
+  private static final String[] COMMANDS = {"won", "undo", "board", "rank"};
+
+  private static final int USERS_PER_CHAT = 10;
+
+  private ReplayLoadTest() {
+    // only static helpers in here
+  }
+
+  /**
+   * @param args Where the updates come from ("synthetic" or the path of a recorded event log),
+   *        the number of updates, updates per second (0 for as fast as possible), the number of
+   *        chats, the command mix (like "won=70,undo=5,board=20,rank=5") and how many milliseconds
+   *        the fake Bot API takes to answer.
+   */
+  public static void main(final String[] args) {
+    if (args.length < 1) {
+      System.err.println("Usage: ReplayLoadTest <synthetic|path/to/scobo_bot.json> [updates] "
+          + "[updates per second] [chats] [won=70,undo=5,board=20,rank=5] [fake api delay ms]");
+      System.exit(-1);
+    }
+
+    final String source = args[0];
+    final int count = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+    final double rate = args.length > 2 ? Double.parseDouble(args[2]) : 1_000;
+    final int chats = args.length > 3 ? Integer.parseInt(args[3]) : 1_000;
+    final int[] mix = parseMix(args.length > 4 ? args[4] : "won=70,undo=5,board=20,rank=5");
+    final long delayMillis = args.length > 5 ? Long.parseLong(args[5]) : 0;
+
+    // the fake Bot API answers would wait for a delayed ACK otherwise, like a 40 ms slower Telegram
+    System.setProperty("sun.net.httpserver.nodelay", "true");
+    ApiContextInitializer.init();
+    BotLog.install(
+        BotLog.parseLevel(Configuration.getString("SCOBO_LOG_LEVEL", "WARNING"), Level.WARNING),
+        Configuration.getInt("SCOBO_LOG_QUEUE", 8192));
+
+    try {
+      final ObjectMapper mapper = new ObjectMapper();
+      final List<Update> updates = SYNTHETIC.equals(source) ? synthetic(mapper, count, chats, mix)
+          : recorded(mapper, Paths.get(source), count);
+
+      final Path dataDirectory = Files.createTempDirectory("scobo-load");
+      // the core keeps its data below the home directory, this keeps the real one out of it
+      System.setProperty("user.home", dataDirectory.toString());
+      final HttpServer fakeApi = WebhookLoadTest.startFakeApi(0, delayMillis);
+      try {
+        final DefaultBotOptions options = ScoreBoardCore.botOptions();
+        options.setBaseUrl("http://localhost:" + fakeApi.getAddress().getPort() + "/bot");
+        final ScoreBoardCore core = new ScoreBoardCore(new DefaultAbsSender(options) {
+          @Override
+          public String getBotToken() {
+            return "load-test";
+          }
+        });
+        run(core, updates, rate);
+      } finally {
+        fakeApi.stop(0);
+        delete(dataDirectory);
+      }
+    } catch (final IOException exception) {
+      System.err.println("The load test failed: " + exception);
+      System.exit(-1);
+    }
+  }
+
+  private static void run(final ScoreBoardCore core, final List<Update> updates,
+      final double rate) {
+    final Metrics metrics = core.metrics();
+    final LongAdder written = metrics.counter("scobo_event_log_events_total", "");
+
+    // the event log lag is sampled, looking at it on every update would slow the bot down
+    final AtomicLong maxDepth = new AtomicLong();
+    final LongAdder depthSum = new LongAdder();
+    final LongAdder samples = new LongAdder();
+    final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(task -> {
+      final Thread thread = new Thread(task, "load-test-sampler");
+      thread.setDaemon(true);
+      return thread;
+    });
+    sampler.scheduleAtFixedRate(() -> {
+      final int depth = core.queuedEvents();
+      maxDepth.accumulateAndGet(depth, Math::max);
+      depthSum.add(depth);
+      samples.increment();
+    }, 0, 10, MILLISECONDS);
+
+    System.out.println(format("Feeding %d updates at %s.", Integer.valueOf(updates.size()),
+        rate > 0 ? format("%.0f updates/s", Double.valueOf(rate)) : "full speed"));
+    final long start = System.nanoTime();
+    long maxLateness = 0;
+    for (int index = 0; index < updates.size(); index++) {
+      if (rate > 0) {
+        final long due = start + (long) (index * 1e9 / rate);
+        long wait;
+        while ((wait = due - System.nanoTime()) > 0) {
+          LockSupport.parkNanos(wait);
+        }
+        maxLateness = Math.max(maxLateness, System.nanoTime() - due);
+      }
+      core.onUpdate(updates.get(index));
+    }
+    final long fed = System.nanoTime();
+    final int depthWhenFed = core.queuedEvents();
+
+    // closing waits for every chat, every reply and the event log
+    core.close();
+    final long done = System.nanoTime();
+    sampler.shutdownNow();
+
+    final double fedSeconds = (fed - start) / 1e9;
+    final double doneSeconds = (done - start) / 1e9;
+    System.out.println(format("Fed %d updates in %.1f s, %.0f updates/s. The feeder fell behind "
+        + "by %.1f ms at most.", Integer.valueOf(updates.size()), Double.valueOf(fedSeconds),
+        Double.valueOf(updates.size() / fedSeconds),
+        Double.valueOf(NANOSECONDS.toMicros(maxLateness) / 1e3)));
+    System.out.println(format("Everything was handled after %.1f s, %.0f updates/s.",
+        Double.valueOf(doneSeconds), Double.valueOf(updates.size() / doneSeconds)));
+
+    System.out.println("Time from receiving an update until Telegram accepted the reply:");
+    for (final String command : COMMANDS) {
+      print("  /" + command, metrics.histogram("scobo_reply_seconds", "", "command", command));
+    }
+    print("  unknown", metrics.histogram("scobo_reply_seconds", "", "command", "unknown"));
+    print("Bot API calls", metrics.histogram("scobo_send_seconds", ""));
+    System.out.println(format("  %d retried, %d failed, %d dropped or replaced.",
+        Long.valueOf(metrics.counter("scobo_send_retries_total", "").sum()),
+        Long.valueOf(metrics.counter("scobo_send_failures_total", "").sum()),
+        Long.valueOf(metrics.counter("scobo_sends_dropped_total", "").sum())));
+
+    final long sampleCount = Math.max(1, samples.sum());
+    System.out.println(format("Event log: %d events written. Waiting events, at most %d, on "
+        + "average %.1f, %d when the last update was fed.", Long.valueOf(written.sum()),
+        Long.valueOf(maxDepth.get()), Double.valueOf(depthSum.sum() / (double) sampleCount),
+        Integer.valueOf(depthWhenFed)));
+    print("  writes", metrics.histogram("scobo_event_log_write_seconds", ""));
+    print("  syncs", metrics.histogram("scobo_event_log_sync_seconds", ""));
+    System.out.println(format("%d updates were refused, %d forwarded to other instances.",
+        Long.valueOf(metrics.counter("scobo_update_failures_total", "").sum()),
+        Long.valueOf(metrics.counter("scobo_updates_forwarded_total", "").sum())));
+  }
+
+  private static void print(final String what, final LatencyHistogram latency) {
+    if (latency.count() == 0) {
+      return;
+    }
+    System.out.println(format("%s: %d, p50 %.2f ms, p99 %.2f ms, p99.9 %.2f ms.", what,
+        Long.valueOf(latency.count()), Double.valueOf(latency.quantileSeconds(0.5) * 1e3),
+        Double.valueOf(latency.quantileSeconds(0.99) * 1e3),
+        Double.valueOf(latency.quantileSeconds(0.999) * 1e3)));
+  }
+
+  /**
+   * @param mix Like "won=70,undo=5,board=20,rank=5". Missing commands do not show up.
+   * @return The weight of each of the {@link #COMMANDS}.
+   */
+  private static int[] parseMix(final String mix) {
+    final int[] weights = new int[COMMANDS.length];
+    for (final String part : mix.split(",")) {
+      final String[] pair = part.trim().split("=");
+      for (int index = 0; index < COMMANDS.length; index++) {
+        if (pair.length == 2 && COMMANDS[index].equals(pair[0].trim())) {
+          weights[index] = Math.max(0, Integer.parseInt(pair[1].trim()));
+        }
+      }
+    }
+    return weights;
+  }
+
+  /**
+   * Made up updates from {@link #USERS_PER_CHAT} people in each chat. Always the same for the same
+   * arguments, so runs can be compared.
+   */
+  private static List<Update> synthetic(final ObjectMapper mapper, final int count,
+      final int chats, final int[] mix) throws IOException {
+    int total = 0;
+    for (final int weight : mix) {
+      total += weight;
+    }
+    if (total == 0) {
+      throw new IOException("The command mix does not contain any command.");
+    }
+    final Random random = new Random(42);
+    final long now = System.currentTimeMillis() / 1000;
+    final List<Update> updates = new ArrayList<>(count);
+    for (int updateId = 1; updateId <= count; updateId++) {
+      int pick = random.nextInt(total);
+      int command = 0;
+      while (pick >= mix[command]) {
+        pick -= mix[command++];
+      }
+      final String text = command == 2 && random.nextInt(4) == 0 ? "/board week"
+          : "/" + COMMANDS[command];
+      final long chatId = -1_000_000L - random.nextInt(chats);
+      final int userId = random.nextInt(USERS_PER_CHAT) + 1;
+      updates.add(mapper.readValue(format(
+          "{\"update_id\":%d,\"message\":{\"message_id\":%d,\"date\":%d,\"chat\":{\"id\":%d,\"type\":\"group\",\"title\":\"load test\"},\"from\":{\"id\":%d,\"first_name\":\"player%d\"},\"text\":\"%s\"}}",
+          Integer.valueOf(updateId), Integer.valueOf(updateId), Long.valueOf(now),
+          Long.valueOf(chatId), Integer.valueOf(userId), Integer.valueOf(userId), text),
+          Update.class));
+    }
+    return updates;
+  }
+
+  /**
+   * The updates of an old event log, over and over again if it has fewer than asked for.
+   */
+  private static List<Update> recorded(final ObjectMapper mapper, final Path path,
+      final int count) throws IOException {
+    final List<Update> recorded = new ArrayList<>();
+    try (final Stream<String> lines = Files.lines(path, UTF_8)) {
+      for (final String line : lines.filter(line -> !line.trim().isEmpty())
+          .collect(Collectors.toList())) {
+        recorded.add(mapper.readValue(line, Update.class));
+      }
+    }
+    if (recorded.isEmpty()) {
+      throw new IOException(path + " does not contain any updates.");
+    }
+    final List<Update> updates = new ArrayList<>(count);
+    for (int index = 0; index < count; index++) {
+      updates.add(recorded.get(index % recorded.size()));
+    }
+    return updates;
+  }
+
+  private static void delete(final Path directory) throws IOException {
+    try (final Stream<Path> files = Files.walk(directory)) {
+      for (final Path file : files.sorted(Comparator.reverseOrder())
+          .collect(Collectors.toList())) {
+        Files.delete(file);
+      }
+    }
+  }
+}
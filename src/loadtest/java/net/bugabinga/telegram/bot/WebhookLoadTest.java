@@ -0,0 +1,261 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Posts synthetic updates to the webhook of a locally running {@link ScoreBoardWebhookBot} as fast
+ * as it takes them and reports how long the bot needed to acknowledge them.
+ *
+ * <p>
+ * A bot in webhook mode registers its webhook with Telegram on startup and sends replies. To run
+ * it without Telegram, this can also play a fake Bot API that accepts everything. Start the load
+ * test first, then the bot with
+ * <code>SCOBO_TELEGRAM_BASE_URL=http://localhost:&lt;fake api port&gt;/bot</code>, the load test
+ * waits for the webhook to come up.
+ *
+ * <p>
+ * Several sharded bots can be tested together by giving the URLs of all their webhooks separated
+ * by commas. The connections get spread over them, so most updates arrive at an instance that has
+ * to forward them.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public final class WebhookLoadTest {
+
+  private static final String[] TEXTS =
+      {"/won", "/won", "/won", "/won", "/won", "/won", "/won", "/undo", "/board", "hello there"};
+
+  private WebhookLoadTest() {
+    // only static helpers in here
+  }
+
+  /**
+   * @param args The URLs of the webhooks separated by commas, the number of updates, the number
+   *        of concurrent connections, the number of chats and the port of the fake Bot API (0 for
+   *        none).
+   */
+  public static void main(final String[] args) {
+    if (args.length < 1) {
+      System.err.println(
+          "Usage: WebhookLoadTest <webhook url>[,<webhook url>...] [updates] [connections] [chats]"
+              + " [fake api port]");
+      System.exit(-1);
+    }
+
+    final String[] webhookUrls = args[0].split(",");
+    final int updates = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+    final int connections = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+    final int chats = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+    final int fakeApiPort = args.length > 4 ? Integer.parseInt(args[4]) : 0;
+    // otherwise every answer waits for a delayed ACK, which looks like a 40 ms slower Telegram
+    System.setProperty("sun.net.httpserver.nodelay", "true");
+
+    try {
+      final @Nullable HttpServer fakeApi = fakeApiPort > 0 ? startFakeApi(fakeApiPort, 0) : null;
+      try {
+        final URL[] targets = new URL[webhookUrls.length];
+        for (int index = 0; index < webhookUrls.length; index++) {
+          awaitWebhook(webhookUrls[index]);
+          targets[index] = new URL(webhookUrls[index]);
+        }
+        run(targets, updates, connections, chats);
+      } finally {
+        if (fakeApi != null) {
+          fakeApi.stop(0);
+        }
+      }
+    } catch (final IOException | InterruptedException exception) {
+      System.err.println("The load test failed: " + exception);
+      System.exit(-1);
+    }
+  }
+
+  private static void run(final URL[] webhookUrls, final int updates, final int connections,
+      final int chats) throws InterruptedException {
+    final AtomicInteger nextUpdate = new AtomicInteger();
+    final AtomicInteger failures = new AtomicInteger();
+    final long[][] latencies = new long[connections][];
+    final ExecutorService clients = Executors.newFixedThreadPool(connections);
+
+    final long startTime = System.nanoTime();
+    for (int client = 0; client < connections; client++) {
+      final int index = client;
+      final URL webhookUrl = webhookUrls[client % webhookUrls.length];
+      clients.execute(() -> {
+        long[] own = new long[updates / connections + 1];
+        int count = 0;
+        int updateId;
+        while ((updateId = nextUpdate.incrementAndGet()) <= updates) {
+          final byte[] body = syntheticUpdate(updateId, chats).getBytes(UTF_8);
+          final long sent = System.nanoTime();
+          if (!post(webhookUrl, body)) {
+            failures.incrementAndGet();
+          }
+          if (count == own.length) {
+            own = Arrays.copyOf(own, 2 * own.length);
+          }
+          own[count++] = System.nanoTime() - sent;
+        }
+        latencies[index] = Arrays.copyOf(own, count);
+      });
+    }
+    clients.shutdown();
+    clients.awaitTermination(1, HOURS);
+    final long elapsed = System.nanoTime() - startTime;
+
+    final long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+    System.out.println(format("Posted %d updates over %d connections in %d ms, %.0f updates/s.",
+        Integer.valueOf(all.length), Integer.valueOf(connections),
+        Long.valueOf(NANOSECONDS.toMillis(elapsed)),
+        Double.valueOf(all.length / (elapsed / 1e9))));
+    System.out.println(format("Acknowledged after p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, max %.2f ms.",
+        Double.valueOf(percentile(all, 50)), Double.valueOf(percentile(all, 90)),
+        Double.valueOf(percentile(all, 99)), Double.valueOf(percentile(all, 100))));
+    System.out.println(failures.get() + " updates were not acknowledged with 2xx.");
+  }
+
+  private static boolean post(final URL webhookUrl, final byte[] body) {
+    try {
+      final HttpURLConnection connection = (HttpURLConnection) webhookUrl.openConnection();
+      connection.setRequestMethod("POST");
+      connection.setDoOutput(true);
+      connection.setFixedLengthStreamingMode(body.length);
+      connection.setRequestProperty("Content-Type", "application/json");
+      try (final OutputStream out = connection.getOutputStream()) {
+        out.write(body);
+      }
+      final int status = connection.getResponseCode();
+      // reading the response to the end keeps the connection alive for the next update
+      try (final InputStream in =
+          status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+        if (in != null) {
+          while (in.read() >= 0) {
+            // drain
+          }
+        }
+      }
+      return status / 100 == 2;
+    } catch (final IOException exception) {
+      return false;
+    }
+  }
+
+  private static String syntheticUpdate(final int updateId, final int chats) {
+    final ThreadLocalRandom random = ThreadLocalRandom.current();
+    final long chatId = -1_000_000L - random.nextInt(chats);
+    final int userId = random.nextInt(5) + 1;
+    return format(
+        "{\"update_id\":%d,\"message\":{\"message_id\":%d,\"date\":%d,\"chat\":{\"id\":%d,\"type\":\"group\",\"title\":\"load test\"},\"from\":{\"id\":%d,\"first_name\":\"player%d\"},\"text\":\"%s\"}}",
+        Integer.valueOf(updateId), Integer.valueOf(updateId),
+        Long.valueOf(System.currentTimeMillis() / 1000), Long.valueOf(chatId),
+        Integer.valueOf(userId), Integer.valueOf(userId), TEXTS[random.nextInt(TEXTS.length)]);
+  }
+
+  private static double percentile(final long[] sorted, final int percent) {
+    if (sorted.length == 0) {
+      return 0;
+    }
+    final int index =
+        Math.min(sorted.length - 1, (int) Math.ceil(sorted.length * percent / 100d) - 1);
+    return sorted[Math.max(0, index)] / 1e6;
+  }
+
+  private static void awaitWebhook(final String webhookUrl) throws InterruptedException {
+    System.out.println("Waiting for " + webhookUrl + " to come up...");
+    final long deadline = System.nanoTime() + SECONDS.toNanos(300);
+    while (System.nanoTime() < deadline) {
+      try {
+        final HttpURLConnection connection =
+            (HttpURLConnection) new URL(webhookUrl).openConnection();
+        // any answer at all means the server is up
+        connection.getResponseCode();
+        connection.disconnect();
+        return;
+      } catch (final IOException exception) {
+        Thread.sleep(500);
+      }
+    }
+    System.err.println(webhookUrl + " did not come up. Posting anyway.");
+  }
+
+  /**
+   * Answers every Bot API method with success. A sent message comes back as a minimal message, all
+   * other methods as <code>true</code>.
+   *
+   * @param port Where to listen on localhost, 0 for any free port.
+   * @param delayMillis How long every answer takes, like the round trip to the real Telegram.
+   * @return The running fake. Its base URL is <code>http://localhost:&lt;port&gt;/bot</code>.
+   * @throws IOException If the port is taken.
+   */
+  static HttpServer startFakeApi(final int port, final long delayMillis) throws IOException {
+    final HttpServer server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+    // answers may be delayed, a fixed pool would put a limit on the bot that Telegram does not
+    server.setExecutor(Executors.newCachedThreadPool(task -> {
+      final Thread thread = new Thread(task, "fake-bot-api");
+      thread.setDaemon(true);
+      return thread;
+    }));
+    server.createContext("/", exchange -> answer(exchange, delayMillis));
+    server.start();
+    System.out.println(
+        "Faking the Bot API on http://localhost:" + server.getAddress().getPort() + "/bot");
+    return server;
+  }
+
+  private static void answer(final HttpExchange exchange, final long delayMillis)
+      throws IOException {
+    if (delayMillis > 0) {
+      try {
+        Thread.sleep(delayMillis);
+      } catch (final InterruptedException exception) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    try (final InputStream in = exchange.getRequestBody()) {
+      while (in.read() >= 0) {
+        // drain
+      }
+    }
+    final String path = exchange.getRequestURI().getPath().toLowerCase();
+    final String result;
+    if (path.endsWith("/sendmessage")) {
+      result = "{\"message_id\":1,\"date\":0,\"chat\":{\"id\":1,\"type\":\"group\"}}";
+    } else if (path.endsWith("/getupdates")) {
+      result = "[]";
+    } else {
+      result = "true";
+    }
+    final byte[] response = ("{\"ok\":true,\"result\":" + result + "}").getBytes(UTF_8);
+    exchange.getResponseHeaders().add("Content-Type", "application/json");
+    exchange.sendResponseHeaders(200, response.length);
+    try (final OutputStream out = exchange.getResponseBody()) {
+      out.write(response);
+    }
+  }
+}
@@ -0,0 +1,157 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Hands log records over to a thread of its own, which writes them with the handlers that used to
+ * do it on the calling thread. Logging on an update thread costs a queue offer, not a write to the
+ * console.
+ *
+ * <p>
+ * If the queue is full, records below {@link Level#SEVERE} get dropped and counted instead of
+ * making the update thread wait. Errors always wait for room.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public final class AsyncLogHandler extends Handler {
+
+  private final List<Handler> delegates;
+  private final BlockingQueue<LogRecord> queue;
+  private final Thread writer;
+  private final LongAdder dropped = new LongAdder();
+  private final List<LogRecord> batch = new ArrayList<>();
+
+  private volatile boolean closed;
+
+  /**
+   * Starts the writer thread right away.
+   *
+   * @param delegates Where the records end up.
+   * @param capacity How many records may wait to be written.
+   */
+  public AsyncLogHandler(final List<Handler> delegates, final int capacity) {
+    this.delegates = new ArrayList<>(delegates);
+    queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+    writer = new Thread(this::write, "scobo-log");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  @Override
+  public void publish(final @Nullable LogRecord record) {
+    if (record == null || !isLoggable(record)) {
+      return;
+    }
+    // finding the caller walks the stack, and on the writer thread it would find the wrong one
+    record.setSourceClassName(null);
+    if (closed) {
+      publishNow(record);
+      return;
+    }
+    if (queue.offer(record)) {
+      return;
+    }
+    if (record.getLevel().intValue() < Level.SEVERE.intValue()) {
+      dropped.increment();
+      return;
+    }
+    try {
+      queue.put(record);
+    } catch (final InterruptedException exception) {
+      Thread.currentThread().interrupt();
+      publishNow(record);
+    }
+  }
+
+  private void write() {
+    try {
+      while (!closed || !queue.isEmpty()) {
+        final LogRecord first = queue.take();
+        batch.add(first);
+        queue.drainTo(batch);
+        for (final LogRecord record : batch) {
+          publishNow(record);
+        }
+        batch.clear();
+        reportDropped();
+        if (queue.isEmpty()) {
+          flushDelegates();
+        }
+      }
+    } catch (final InterruptedException exception) {
+      // closing, whatever is left gets written by close()
+    }
+  }
+
+  private void reportDropped() {
+    final long count = dropped.sumThenReset();
+    if (count > 0) {
+      final LogRecord report = new LogRecord(Level.WARNING,
+          "The log could not keep up and dropped " + count + " records.");
+      report.setLoggerName(AsyncLogHandler.class.getName());
+      publishNow(report);
+    }
+  }
+
+  private void publishNow(final LogRecord record) {
+    for (final Handler delegate : delegates) {
+      delegate.publish(record);
+    }
+  }
+
+  private void flushDelegates() {
+    for (final Handler delegate : delegates) {
+      delegate.flush();
+    }
+  }
+
+  /**
+   * @return How many records got dropped so far, because the queue was full.
+   */
+  public long dropped() {
+    return dropped.sum();
+  }
+
+  @Override
+  public void flush() {
+    // the writer flushes whenever it caught up
+  }
+
+  /**
+   * Writes whatever is still queued on the calling thread. Records that arrive afterwards get
+   * written right away.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    writer.interrupt();
+    try {
+      writer.join(1000);
+    } catch (final InterruptedException exception) {
+      Thread.currentThread().interrupt();
+    }
+    final List<LogRecord> left = new ArrayList<>();
+    queue.drainTo(left);
+    for (final LogRecord record : left) {
+      publishNow(record);
+    }
+    reportDropped();
+    for (final Handler delegate : delegates) {
+      delegate.close();
+    }
+  }
+}
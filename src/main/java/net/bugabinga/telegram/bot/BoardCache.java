@@ -0,0 +1,138 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongPredicate;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * The text of the last /board of every {@link ScoreWindow} per chat. People tend to ask for the
+ * board several times right after a match, and as long as nobody scored in between it reads the
+ * same.
+ *
+ * <p>
+ * A chat's boards get dropped as soon as one of its scores changes. That happens on the thread of
+ * the chat, the same one that renders its boards, so a stale board never makes it back in. Boards
+ * of a window also expire when the day changes, because then the window covers other days. Only
+ * the chats that asked for a board most recently are kept.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public class BoardCache {
+
+  private static final ScoreWindow[] WINDOWS = ScoreWindow.values();
+
+  /**
+   * The rendered boards of one chat.
+   */
+  private static final class Boards {
+    final @Nullable String[] texts = new String[WINDOWS.length];
+    final int[] days = new int[WINDOWS.length];
+  }
+
+  /**
+   * Least recently used first.
+   */
+  private final LinkedHashMap<Long, Boards> chats;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  /**
+   * @param maxChats How many chats to keep boards for.
+   */
+  public BoardCache(final int maxChats) {
+    chats = new LinkedHashMap<Long, Boards>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<Long, Boards> eldest) {
+        return size() > maxChats;
+      }
+    };
+  }
+
+  /**
+   * @param chatId Id of the chat.
+   * @param window Time span of the board.
+   * @param today Days since the epoch. Does not matter for {@link ScoreWindow#ALL}.
+   * @return The text of the board, or <code>null</code> if it has to be rendered.
+   */
+  public synchronized @Nullable String get(final long chatId, final ScoreWindow window,
+      final int today) {
+    final @Nullable Boards boards = chats.get(Long.valueOf(chatId));
+    final int index = window.ordinal();
+    if (boards == null || boards.texts[index] == null
+        || window != ScoreWindow.ALL && boards.days[index] != today) {
+      misses.increment();
+      return null;
+    }
+    hits.increment();
+    return boards.texts[index];
+  }
+
+  /**
+   * @param chatId Id of the chat.
+   * @param window Time span of the board.
+   * @param today Days since the epoch the board was rendered for.
+   * @param text The rendered board.
+   */
+  public synchronized void put(final long chatId, final ScoreWindow window, final int today,
+      final String text) {
+    final Long key = Long.valueOf(chatId);
+    @Nullable
+    Boards boards = chats.get(key);
+    if (boards == null) {
+      boards = new Boards();
+      chats.put(key, boards);
+    }
+    boards.texts[window.ordinal()] = text;
+    boards.days[window.ordinal()] = today;
+  }
+
+  /**
+   * Drops the boards of a chat, because a score in it changed.
+   *
+   * @param chatId Id of the chat.
+   */
+  public synchronized void invalidate(final long chatId) {
+    chats.remove(Long.valueOf(chatId));
+  }
+
+  /**
+   * Drops the boards of some chats, because they are not ours anymore.
+   *
+   * @param chatIds Says which chats to drop.
+   */
+  public synchronized void invalidateIf(final LongPredicate chatIds) {
+    chats.keySet().removeIf(chatId -> chatIds.test(chatId.longValue()));
+  }
+
+  /**
+   * @return How many chats have boards right now.
+   */
+  public synchronized int size() {
+    return chats.size();
+  }
+
+  /**
+   * @return How many boards could be answered without rendering them.
+   */
+  public long hits() {
+    return hits.sum();
+  }
+
+  /**
+   * @return How many boards had to be rendered.
+   */
+  public long misses() {
+    return misses.sum();
+  }
+}
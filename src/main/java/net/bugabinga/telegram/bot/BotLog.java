@@ -0,0 +1,142 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.telegram.telegrambots.logging.BotLogger;
+
+/**
+ * Logging for the paths every update or every line of the event log goes through. The message only
+ * gets built if its level is logged at all, so a disabled debug line costs a comparison instead
+ * of a string concatenation with a whole {@link org.telegram.telegrambots.api.objects.Update}.
+ * Everything else keeps using {@link BotLogger} directly.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public final class BotLog {
+
+  /**
+   * Namespace for logger.
+   */
+  private static final String TAG = "BOT_LOG";
+
+  /**
+   * Same as {@link BotLogger}, until {@link #install(Level, int)} says otherwise.
+   */
+  private static volatile Level level = Level.INFO;
+
+  /**
+   * Logs only every n-th of a message that would otherwise show up once per line or per update,
+   * together with how often it happened so far.
+   */
+  public static final class Sampler {
+
+    private final int every;
+    private final AtomicLong seen = new AtomicLong();
+
+    /**
+     * @param every Only every n-th message gets logged.
+     */
+    public Sampler(final int every) {
+      this.every = Math.max(1, every);
+    }
+
+    /**
+     * @param tag Namespace for logger.
+     * @param message Only built for every n-th call.
+     */
+    public void debug(final String tag, final Supplier<String> message) {
+      if (isLoggable(Level.FINE)) {
+        final long count = seen.incrementAndGet();
+        if ((count - 1) % every == 0) {
+          BotLogger.debug(tag, message.get() + suffix(count));
+        }
+      }
+    }
+
+    /**
+     * @param tag Namespace for logger.
+     * @param message Only built for every n-th call.
+     */
+    public void warn(final String tag, final Supplier<String> message) {
+      if (isLoggable(Level.WARNING)) {
+        final long count = seen.incrementAndGet();
+        if ((count - 1) % every == 0) {
+          BotLogger.warn(tag, message.get() + suffix(count));
+        }
+      }
+    }
+
+    private String suffix(final long count) {
+      return count == 1 ? "" : " (seen " + count + " times)";
+    }
+  }
+
+  private BotLog() {
+    // only static helpers in here
+  }
+
+  /**
+   * Sets the level of the bot and moves writing the log to a thread of its own.
+   *
+   * @param newLevel The lowest level that gets logged.
+   * @param capacity How many records may wait to be written before they get dropped.
+   */
+  public static void install(final Level newLevel, final int capacity) {
+    level = newLevel;
+    BotLogger.setLevel(newLevel);
+    // BotLogger has no handler of its own, its records end up at the handlers of the root logger
+    final Logger root = Logger.getLogger("");
+    final List<Handler> handlers = Arrays.asList(root.getHandlers());
+    for (final Handler handler : handlers) {
+      root.removeHandler(handler);
+      handler.setLevel(newLevel);
+    }
+    final AsyncLogHandler async = new AsyncLogHandler(handlers, capacity);
+    async.setLevel(newLevel);
+    root.addHandler(async);
+    BotLogger.info(TAG, "Logging " + newLevel + " and up on a thread of its own.");
+  }
+
+  /**
+   * @param name Like "INFO" or "FINE".
+   * @param defaultLevel Used if the name is not a level.
+   * @return The level.
+   */
+  public static Level parseLevel(final String name, final Level defaultLevel) {
+    try {
+      return Level.parse(name);
+    } catch (final IllegalArgumentException exception) {
+      BotLogger.warn(TAG, "'" + name + "' is not a log level. Using " + defaultLevel + ".");
+      return defaultLevel;
+    }
+  }
+
+  /**
+   * @param wanted The level of a message.
+   * @return <code>true</code> if a message of that level would get logged.
+   */
+  public static boolean isLoggable(final Level wanted) {
+    return wanted.intValue() >= level.intValue() && level != Level.OFF;
+  }
+
+  /**
+   * @param tag Namespace for logger.
+   * @param message Only built if debug messages get logged.
+   */
+  public static void debug(final String tag, final Supplier<String> message) {
+    if (isLoggable(Level.FINE)) {
+      BotLogger.debug(tag, message.get());
+    }
+  }
+}
@@ -0,0 +1,105 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The board of one chat at the {@link ChatEventLog#start()} of its log. The segments in front of
+ * it got folded into this by the {@link EventLogCompactor} and are gone, so unlike a
+ * {@link ScoreSnapshot} it cannot be rebuilt from the log.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public class ChatCheckpoint {
+
+  /**
+   * Bump this whenever the layout changes, and teach {@link ChatCheckpoints} to read the old one.
+   */
+  static final int VERSION = 1;
+
+  private final int version;
+  private final long offset;
+  private final Map<String, Integer> scores;
+  private final List<ScoreBoard.Win> wins;
+  private final Map<Long, Map<String, Integer>> buckets;
+
+  /**
+   * @param version Layout version of the checkpoint.
+   * @param offset Logical offset into the log of the chat, up to which all events are included.
+   * @param scores Points per name.
+   * @param wins Wins that can be undone, most recent first.
+   * @param buckets Points per name per day, as far as they are kept.
+   */
+  @JsonCreator
+  public ChatCheckpoint(@JsonProperty("version") final int version,
+      @JsonProperty("offset") final long offset,
+      @JsonProperty("scores") final Map<String, Integer> scores,
+      @JsonProperty("wins") final List<ScoreBoard.Win> wins,
+      @JsonProperty("buckets") final Map<Long, Map<String, Integer>> buckets) {
+    this.version = version;
+    this.offset = offset;
+    this.scores = scores;
+    this.wins = wins;
+    this.buckets = buckets;
+  }
+
+  /**
+   * @param offset Logical offset into the log of the chat, up to which all events are included.
+   * @param board The board of the chat at that offset.
+   * @return A checkpoint of the board.
+   */
+  public static ChatCheckpoint of(final long offset, final ScoreBoard board) {
+    return new ChatCheckpoint(VERSION, offset, board.scores(), board.wins(),
+        board.buckets(Integer.MIN_VALUE));
+  }
+
+  /**
+   * @return A fresh board holding the state of the checkpoint.
+   */
+  public ScoreBoard toBoard() {
+    return new ScoreBoard(scores, wins, buckets);
+  }
+
+  /**
+   * @return Layout version of the checkpoint.
+   */
+  public int getVersion() {
+    return version;
+  }
+
+  /**
+   * @return Logical offset into the log of the chat, up to which all events are included.
+   */
+  public long getOffset() {
+    return offset;
+  }
+
+  /**
+   * @return Points per name.
+   */
+  public Map<String, Integer> getScores() {
+    return scores;
+  }
+
+  /**
+   * @return Wins that can be undone, most recent first.
+   */
+  public List<ScoreBoard.Win> getWins() {
+    return wins;
+  }
+
+  /**
+   * @return Points per name per day, keyed by the day since the epoch.
+   */
+  public Map<Long, Map<String, Integer>> getBuckets() {
+    return buckets;
+  }
+}
@@ -0,0 +1,109 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import static java.lang.String.format;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.telegram.telegrambots.logging.BotLogger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Reads and writes the {@link ChatCheckpoint} of each chat. It lives next to the segments of the
+ * chat and is named after its offset, so the newest one is the last one in lexical order.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public class ChatCheckpoints {
+
+  /**
+   * Namespace for logger.
+   */
+  private static final String TAG = "CHAT_CHECKPOINTS";
+
+  private static final String SUFFIX = ".checkpoint";
+
+  private final ObjectMapper jsonMapper;
+
+  /**
+   * @param jsonMapper The JSON serializer.
+   */
+  public ChatCheckpoints(final ObjectMapper jsonMapper) {
+    this.jsonMapper = jsonMapper;
+  }
+
+  /**
+   * Writes the checkpoint into a temporary file first and then moves it into place. Only once both
+   * are on disk the older checkpoints get deleted, so there is always one that can be read, and the
+   * caller may delete the segments it replaces.
+   *
+   * @param chatLog The log of the chat.
+   * @param checkpoint The board of the chat at some offset.
+   * @throws IOException If writing fails.
+   */
+  public void write(final ChatEventLog chatLog, final ChatCheckpoint checkpoint)
+      throws IOException {
+    final Path directory = chatLog.getDirectory();
+    final Path target =
+        directory.resolve(format("%020d%s", Long.valueOf(checkpoint.getOffset()), SUFFIX));
+    DurableFiles.writeJson(jsonMapper, target, checkpoint);
+
+    for (final Path older : list(directory)) {
+      if (!older.equals(target)) {
+        Files.deleteIfExists(older);
+      }
+    }
+  }
+
+  /**
+   * @param chatLog The log of a chat.
+   * @return The newest checkpoint of the chat, or <code>null</code> if its log was never
+   *         compacted.
+   * @throws IOException If the directory cannot be listed or the checkpoint cannot be read. Its
+   *         segments are gone, so there is no way around it.
+   */
+  public @Nullable ChatCheckpoint load(final ChatEventLog chatLog) throws IOException {
+    final List<Path> checkpoints = list(chatLog.getDirectory());
+    if (checkpoints.isEmpty()) {
+      return null;
+    }
+
+    final Path newest = checkpoints.get(checkpoints.size() - 1);
+    final ChatCheckpoint checkpoint = jsonMapper.readValue(newest.toFile(), ChatCheckpoint.class);
+    if (checkpoint.getVersion() != ChatCheckpoint.VERSION) {
+      throw new IOException(
+          "The checkpoint " + newest + " has the unknown version " + checkpoint.getVersion() + ".");
+    }
+    if (checkpoint.getOffset() < chatLog.start()) {
+      BotLogger.error(TAG, format(
+          "The checkpoint %s ends at %d, but the log of chat %d only starts at %d. The events in between are lost.",
+          newest, Long.valueOf(checkpoint.getOffset()), Long.valueOf(chatLog.getChatId()),
+          Long.valueOf(chatLog.start())));
+    }
+    return checkpoint;
+  }
+
+  private static List<Path> list(final Path directory) throws IOException {
+    final List<Path> checkpoints = new ArrayList<>();
+    if (Files.isDirectory(directory)) {
+      try (final DirectoryStream<Path> files =
+          Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+        files.forEach(checkpoints::add);
+      }
+    }
+    Collections.sort(checkpoints);
+    return checkpoints;
+  }
+}
@@ -0,0 +1,163 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.telegram.telegrambots.logging.BotLogger;
+
+/**
+ * Runs the work of many chats on a fixed number of threads. Every chat is pinned to one stripe by
+ * its id and every stripe has exactly one thread, so the commands of a chat are handled strictly in
+ * the order they arrived, while a slow command in one chat only holds up the chats that share its
+ * stripe.
+ *
+ * <p>
+ * Every stripe queues a limited number of tasks. Once that is reached, further work for its chats
+ * gets rejected instead of piling up.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public class ChatDispatcher {
+
+  /**
+   * Namespace for logger.
+   */
+  private static final String TAG = "CHAT_DISPATCHER";
+
+  /**
+   * A full stripe rejects every update until it catches up, one warning per update would only make
+   * it worse.
+   */
+  private static final BotLog.Sampler REJECTED = new BotLog.Sampler(100);
+
+  private final ThreadPoolExecutor[] stripes;
+
+  /**
+   * @param stripeCount Number of threads. Chats get spread over them.
+   * @param queueLimit How many tasks may wait in a single stripe.
+   */
+  public ChatDispatcher(final int stripeCount, final int queueLimit) {
+    stripes = new ThreadPoolExecutor[Math.max(1, stripeCount)];
+    for (int index = 0; index < stripes.length; index++) {
+      final String threadName = "scobo-chat-" + index;
+      stripes[index] = new ThreadPoolExecutor(1, 1, 0, MILLISECONDS,
+          new ArrayBlockingQueue<>(Math.max(1, queueLimit)), task -> new Thread(task, threadName));
+    }
+    BotLogger.info(TAG, format("Dispatching chats over %d stripes with room for %d tasks each.",
+        Integer.valueOf(stripes.length), Integer.valueOf(Math.max(1, queueLimit))));
+  }
+
+  /**
+   * @param chatId The chat the task belongs to.
+   * @param task Runs after every task of the same chat that was dispatched before it.
+   * @return <code>false</code> if the stripe of the chat is full or the dispatcher is closed. The
+   *         task does not run then.
+   */
+  public boolean dispatch(final long chatId, final Runnable task) {
+    final int stripe = stripeOf(chatId);
+    try {
+      stripes[stripe].execute(() -> {
+        try {
+          task.run();
+        } catch (final RuntimeException exception) {
+          // the other chats of the stripe should not care
+          BotLogger.error("A task of chat " + chatId + " failed.", TAG, exception);
+        }
+      });
+      return true;
+    } catch (final RejectedExecutionException exception) {
+      REJECTED.warn(TAG,
+          () -> format("Stripe %d is full with %d waiting tasks. Rejecting work of chat %d.",
+              Integer.valueOf(stripe), Integer.valueOf(queueDepth(stripe)), Long.valueOf(chatId)));
+      return false;
+    }
+  }
+
+  /**
+   * @return Number of stripes.
+   */
+  public int stripeCount() {
+    return stripes.length;
+  }
+
+  /**
+   * @param stripe Index of a stripe.
+   * @return How many tasks are waiting in it, not counting the one that is running.
+   */
+  public int queueDepth(final int stripe) {
+    return stripes[stripe].getQueue().size();
+  }
+
+  /**
+   * Waits until every task that was dispatched before is done. Tasks dispatched in the meantime
+   * may or may not be done.
+   *
+   * @param timeout How long to wait for all stripes together.
+   * @param unit Unit of the timeout.
+   * @return <code>false</code> if some stripe did not get there in time or is closed.
+   * @throws InterruptedException If waiting got interrupted.
+   */
+  public boolean awaitDispatched(final long timeout, final TimeUnit unit)
+      throws InterruptedException {
+    final long deadline = System.nanoTime() + unit.toNanos(timeout);
+    final CountDownLatch done = new CountDownLatch(stripes.length);
+    for (final ThreadPoolExecutor stripe : stripes) {
+      // a full stripe rejects the marker like any other task, so it has to wait for room
+      while (true) {
+        try {
+          stripe.execute(done::countDown);
+          break;
+        } catch (final RejectedExecutionException exception) {
+          if (stripe.isShutdown() || System.nanoTime() >= deadline) {
+            return false;
+          }
+          Thread.sleep(1);
+        }
+      }
+    }
+    return done.await(deadline - System.nanoTime(), NANOSECONDS);
+  }
+
+  /**
+   * Lets every stripe finish what is already queued and stops the threads.
+   *
+   * @param timeout How long to wait for all stripes together.
+   * @param unit Unit of the timeout.
+   * @return <code>false</code> if some stripe did not finish in time. Its tasks are dropped.
+   * @throws InterruptedException If waiting got interrupted.
+   */
+  public boolean close(final long timeout, final TimeUnit unit) throws InterruptedException {
+    for (final ThreadPoolExecutor stripe : stripes) {
+      stripe.shutdown();
+    }
+
+    final long deadline = System.nanoTime() + unit.toNanos(timeout);
+    boolean drained = true;
+    for (int index = 0; index < stripes.length; index++) {
+      if (!stripes[index].awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+        BotLogger.error(TAG, format("Stripe %d did not finish in time. Dropping %d tasks.",
+            Integer.valueOf(index), Integer.valueOf(stripes[index].shutdownNow().size())));
+        drained = false;
+      }
+    }
+    return drained;
+  }
+
+  private int stripeOf(final long chatId) {
+    // group ids are negative and often share their low bits, so mix them first
+    final long mixed = chatId * 0x9E3779B97F4A7C15L;
+    return (int) ((mixed >>> 32) % stripes.length);
+  }
+}
@@ -0,0 +1,601 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import static java.lang.String.format;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.telegram.telegrambots.logging.BotLogger;
+
+/**
+ * The events of a single chat. They live in a directory of their own, split into segment files of
+ * limited size. Offsets into the log of a chat are logical: every segment is named after the
+ * offset of its first record, so an offset stays valid when the log rolls over into a new segment.
+ *
+ * <p>
+ * Segments that are no longer written to may get compressed by the {@link EventLogCompactor},
+ * which keeps their offsets, or dropped, once their events are folded into a
+ * {@link ChatCheckpoint}. The log then starts at the {@link #start()} of its oldest segment.
+ *
+ * <p>
+ * Only the {@link EventLogProcessor} appends and only the {@link EventLogCompactor} compresses or
+ * drops segments, but any thread may read up to {@link #end()} concurrently.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public class ChatEventLog {
+
+  /**
+   * Namespace for logger.
+   */
+  private static final String TAG = "CHAT_EVENT_LOG";
+
+  private static final String SUFFIX = ".seg";
+
+  /**
+   * Suffix of a segment that got compressed as a whole with GZIP.
+   */
+  private static final String COMPRESSED_SUFFIX = SUFFIX + ".gz";
+
+  private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+  /**
+   * The segments at one point in time. Gets replaced as a whole whenever a segment is added,
+   * compressed or dropped, so readers can grab a consistent copy without locking.
+   */
+  private static final class Segments {
+    /**
+     * Logical offsets of the first record in each segment, ascending.
+     */
+    final long[] bases;
+
+    /**
+     * Whether the segment at the same index is compressed.
+     */
+    final boolean[] compressed;
+
+    Segments(final long[] bases, final boolean[] compressed) {
+      this.bases = bases;
+      this.compressed = compressed;
+    }
+  }
+
+  private final long chatId;
+  private final Path directory;
+  private final long maxSegmentSize;
+
+  private volatile Segments segments;
+
+  /**
+   * Logical offset behind the last record that was written completely.
+   */
+  private volatile long end;
+
+  private @Nullable FileChannel writer;
+  private boolean unsynced;
+
+  /**
+   * @param chatId The chat this log belongs to.
+   * @param directory Where the segments live. It is created with the first event.
+   * @param maxSegmentSize Once the newest segment is this large, the next write starts a new one.
+   * @throws IOException If the existing segments cannot be listed.
+   */
+  ChatEventLog(final long chatId, final Path directory, final long maxSegmentSize)
+      throws IOException {
+    this.chatId = chatId;
+    this.directory = directory;
+    this.maxSegmentSize = maxSegmentSize;
+
+    // a crash while compressing leaves both files behind, the plain one wins
+    final TreeMap<Long, Boolean> found = new TreeMap<>();
+    if (Files.isDirectory(directory)) {
+      try (final DirectoryStream<Path> files =
+          Files.newDirectoryStream(directory, "*{" + SUFFIX + "," + COMPRESSED_SUFFIX + "}")) {
+        for (final Path file : files) {
+          final String name = file.getFileName().toString();
+          final boolean compressed = name.endsWith(COMPRESSED_SUFFIX);
+          final String base = name.substring(0,
+              name.length() - (compressed ? COMPRESSED_SUFFIX : SUFFIX).length());
+          try {
+            found.merge(Long.valueOf(base), Boolean.valueOf(compressed),
+                (first, second) -> Boolean.FALSE);
+          } catch (final NumberFormatException exception) {
+            BotLogger.warn(TAG, "Ignoring " + file + ", it does not look like a segment.");
+          }
+        }
+      }
+    }
+    final long[] bases = new long[found.size()];
+    final boolean[] compressed = new boolean[found.size()];
+    int index = 0;
+    for (final Map.Entry<Long, Boolean> segment : found.entrySet()) {
+      bases[index] = segment.getKey().longValue();
+      compressed[index] = segment.getValue().booleanValue();
+      index++;
+    }
+    segments = new Segments(bases, compressed);
+    end = bases.length == 0 ? 0 : lastBase() + Files.size(lastSegment());
+  }
+
+  /**
+   * @return The chat this log belongs to.
+   */
+  public long getChatId() {
+    return chatId;
+  }
+
+  /**
+   * @return Where the segments live.
+   */
+  public Path getDirectory() {
+    return directory;
+  }
+
+  /**
+   * @return Logical offset of the oldest record that is still kept. Everything in front of it was
+   *         folded into a {@link ChatCheckpoint}.
+   */
+  public long start() {
+    final long[] bases = segments.bases;
+    return bases.length == 0 ? 0 : bases[0];
+  }
+
+  /**
+   * @return Logical offset behind the last record of this chat.
+   */
+  public long end() {
+    return end;
+  }
+
+  /**
+   * @return Number of segment files.
+   */
+  public int segmentCount() {
+    return segments.bases.length;
+  }
+
+  /**
+   * Reads the events of this chat in the order they were written. Only the files of this chat are
+   * touched.
+   *
+   * @param from Logical offset to start at. Has to be the start of a record, for example a
+   *        position from a {@link ScoreSnapshot} or {@link #start()}.
+   * @param consumer Gets every event.
+   * @return Logical offset right behind the last complete record that was read. If it is smaller
+   *         than {@link #end()}, the newest segment ends with garbage.
+   * @throws IOException If reading fails.
+   */
+  public long forEach(final long from, final Consumer<ScoreEvent> consumer) throws IOException {
+    return forEach(from, end, consumer);
+  }
+
+  /**
+   * @param from Logical offset to start at. Has to be the start of a record.
+   * @param to Logical offset to stop at. Has to be the start of a segment or {@link #end()}.
+   * @param consumer Gets every event in between.
+   * @return Logical offset right behind the last complete record that was read.
+   * @throws IOException If reading fails.
+   */
+  long forEach(final long from, final long to, final Consumer<ScoreEvent> consumer)
+      throws IOException {
+    final long[] bases = segments.bases;
+    final long readEnd = Math.min(to, end);
+
+    long position = from;
+    for (int index = 0; index < bases.length && bases[index] < readEnd; index++) {
+      final long base = bases[index];
+      final long segmentEnd = index + 1 < bases.length ? bases[index + 1] : readEnd;
+      if (segmentEnd <= from) {
+        continue;
+      }
+
+      final long offset = Math.max(from, base) - base;
+      // garbage in an older segment is skipped, the next one starts at a record boundary again
+      position = base + readSegment(base, offset, segmentEnd - base, consumer);
+    }
+    return position;
+  }
+
+  /**
+   * Reads the events of this chat from the newest to the oldest, for anything that is only
+   * interested in recent history.
+   *
+   * @param consumer Gets every event and returns <code>false</code> to stop reading.
+   * @throws IOException If reading fails.
+   */
+  public void forEachBackwards(final Predicate<ScoreEvent> consumer) throws IOException {
+    final long[] bases = segments.bases;
+    final long readEnd = end;
+
+    for (int index = bases.length - 1; index >= 0; index--) {
+      final long base = bases[index];
+      final long segmentEnd = index + 1 < bases.length ? bases[index + 1] : readEnd;
+      if (isCompressed(base)) {
+        // a stream only goes forwards, but a segment is small enough to hold its events
+        final List<ScoreEvent> events = new ArrayList<>();
+        readSegment(base, 0, segmentEnd - base, events::add);
+        Collections.reverse(events);
+        for (final ScoreEvent event : events) {
+          if (!consumer.test(event)) {
+            return;
+          }
+        }
+        continue;
+      }
+      final MappedEventReader reader = new MappedEventReader(segment(base), 0, segmentEnd - base);
+      @Nullable
+      ScoreEvent event;
+      while ((event = reader.previous()) != null) {
+        if (!consumer.test(event)) {
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * @return Offset in the segment right behind the last complete record that was read.
+   */
+  private long readSegment(final long base, final long offset, final long limit,
+      final Consumer<ScoreEvent> consumer) throws IOException {
+    if (!isCompressed(base)) {
+      try {
+        final MappedEventReader reader = new MappedEventReader(segment(base), offset, limit);
+        @Nullable
+        ScoreEvent event;
+        while ((event = reader.next()) != null) {
+          consumer.accept(event);
+        }
+        return reader.position();
+      } catch (final NoSuchFileException exception) {
+        // got compressed in the meantime, the compressed file exists before the plain one is gone
+      }
+    }
+
+    try (final InputStream input = new GZIPInputStream(
+        Files.newInputStream(compressedSegment(base)), STREAM_BUFFER_SIZE)) {
+      skipFully(input, offset);
+      try (final ScoreEventReader reader =
+          new ScoreEventReader(Channels.newChannel(input), offset, limit)) {
+        @Nullable
+        ScoreEvent event;
+        while ((event = reader.next()) != null) {
+          consumer.accept(event);
+        }
+        return reader.position();
+      }
+    }
+  }
+
+  private static void skipFully(final InputStream input, final long count) throws IOException {
+    long skipped = 0;
+    while (skipped < count) {
+      final long step = input.skip(count - skipped);
+      if (step <= 0) {
+        if (input.read() < 0) {
+          throw new EOFException("A compressed segment ended before offset " + count + ".");
+        }
+        skipped++;
+      } else {
+        skipped += step;
+      }
+    }
+  }
+
+  /**
+   * @return Logical offsets of the segments that are no longer written to and are not compressed
+   *         yet, oldest first.
+   */
+  long[] uncompressedColdSegments() {
+    final Segments current = segments;
+    final long[] cold = new long[Math.max(0, current.bases.length - 1)];
+    int count = 0;
+    for (int index = 0; index < current.bases.length - 1; index++) {
+      if (!current.compressed[index]) {
+        cold[count++] = current.bases[index];
+      }
+    }
+    return Arrays.copyOf(cold, count);
+  }
+
+  /**
+   * @return Logical offsets of all segments, oldest first. All but the last one are no longer
+   *         written to.
+   */
+  long[] segmentBases() {
+    return segments.bases.clone();
+  }
+
+  /**
+   * @param base Logical offset of a segment.
+   * @return Size of the segment file on disk, which is less than its logical size if it is
+   *         compressed.
+   * @throws IOException If the file is gone.
+   */
+  long segmentFileSize(final long base) throws IOException {
+    return Files.size(isCompressed(base) ? compressedSegment(base) : segment(base));
+  }
+
+  /**
+   * @param base Logical offset of a segment.
+   * @return When the segment was written to last.
+   * @throws IOException If the file is gone.
+   */
+  long segmentLastModified(final long base) throws IOException {
+    return Files
+        .getLastModifiedTime(isCompressed(base) ? compressedSegment(base) : segment(base))
+        .toMillis();
+  }
+
+  /**
+   * Rewrites a cold segment with GZIP. Its records stay at the same logical offsets. Only the
+   * {@link EventLogCompactor} may call this.
+   *
+   * @param base Logical offset of a segment that is no longer written to.
+   * @return Bytes saved on disk.
+   * @throws IOException If the compressed segment cannot be written. The plain one is kept then.
+   */
+  long compress(final long base) throws IOException {
+    final Path plain = segment(base);
+    final Path compressed = compressedSegment(base);
+    final Path temporary = directory.resolve(compressed.getFileName() + ".tmp");
+    try (final FileChannel channel =
+        FileChannel.open(temporary, CREATE, WRITE, TRUNCATE_EXISTING)) {
+      try (final OutputStream output = new GZIPOutputStream(Channels.newOutputStream(channel),
+          STREAM_BUFFER_SIZE)) {
+        Files.copy(plain, output);
+        output.flush();
+        // the plain segment gets deleted, so this has to be on disk first
+        channel.force(true);
+      }
+    }
+    Files.setLastModifiedTime(temporary, Files.getLastModifiedTime(plain));
+    DurableFiles.move(temporary, compressed);
+
+    final long saved = Files.size(plain) - Files.size(compressed);
+    markCompressed(base);
+    Files.delete(plain);
+    return saved;
+  }
+
+  /**
+   * Deletes all segments in front of <code>newStart</code>. Their events have to be in a
+   * {@link ChatCheckpoint} already. Only the {@link EventLogCompactor} may call this.
+   *
+   * @param newStart Logical offset of a cold segment.
+   * @return Bytes freed on disk.
+   * @throws IOException If a segment cannot be deleted.
+   */
+  long dropBefore(final long newStart) throws IOException {
+    final long[] dropped;
+    synchronized (this) {
+      final Segments current = segments;
+      int count = 0;
+      while (count < current.bases.length - 1 && current.bases[count] < newStart) {
+        count++;
+      }
+      dropped = Arrays.copyOf(current.bases, count);
+      segments = new Segments(Arrays.copyOfRange(current.bases, count, current.bases.length),
+          Arrays.copyOfRange(current.compressed, count, current.compressed.length));
+    }
+
+    long freed = 0;
+    for (final long base : dropped) {
+      // after a crash while compressing, both files might be there
+      for (final Path file : new Path[] {segment(base), compressedSegment(base)}) {
+        if (Files.exists(file)) {
+          freed += Files.size(file);
+          Files.delete(file);
+        }
+      }
+    }
+    return freed;
+  }
+
+  /**
+   * Appends already encoded records to the newest segment, starting a new one first if it is full.
+   * Only the processor thread may call this.
+   *
+   * @param records Complete records of this chat.
+   * @throws IOException If writing fails.
+   */
+  void append(final ByteBuffer records) throws IOException {
+    @Nullable
+    FileChannel channel = writer;
+    if (channel == null || end - lastBase() >= maxSegmentSize) {
+      channel = openWriter();
+    }
+
+    final int size = records.remaining();
+    try {
+      while (records.hasRemaining()) {
+        channel.write(records);
+      }
+    } catch (final IOException exception) {
+      // the events get appended again, a torn record in between would hide everything after it
+      try {
+        rollBack(end);
+      } catch (final IOException rollBackException) {
+        exception.addSuppressed(rollBackException);
+      }
+      throw exception;
+    }
+    unsynced = true;
+    end += size;
+  }
+
+  /**
+   * Cuts off what was appended after <code>previousEnd</code>, because the batch it belonged to
+   * could not be written completely. Only the processor thread may call this.
+   *
+   * @param previousEnd {@link #end()} before the batch was appended. It is in the newest segment,
+   *        because a new segment is only started right before appending.
+   * @throws IOException If the segment cannot be truncated.
+   */
+  void rollBack(final long previousEnd) throws IOException {
+    if (previousEnd < lastBase() || previousEnd > end) {
+      throw new IllegalStateException(
+          format("Cannot roll the log of chat %d back to %d.", Long.valueOf(chatId),
+              Long.valueOf(previousEnd)));
+    }
+    final @Nullable FileChannel channel = writer;
+    if (channel != null) {
+      channel.truncate(previousEnd - lastBase());
+    } else {
+      // the writer was closed to make room for the writers of other chats in the meantime
+      try (final FileChannel closed = FileChannel.open(lastSegment(), WRITE)) {
+        closed.truncate(previousEnd - lastBase());
+      }
+    }
+    end = previousEnd;
+  }
+
+  /**
+   * Forces everything that was appended to disk.
+   *
+   * @throws IOException If syncing fails.
+   */
+  void force() throws IOException {
+    final @Nullable FileChannel channel = writer;
+    if (channel != null && unsynced) {
+      channel.force(false);
+      unsynced = false;
+    }
+  }
+
+  /**
+   * Syncs and closes the newest segment. The next {@link #append(ByteBuffer)} opens it again.
+   *
+   * @throws IOException If syncing fails.
+   */
+  void closeWriter() throws IOException {
+    final @Nullable FileChannel channel = writer;
+    if (channel != null) {
+      try {
+        force();
+      } finally {
+        writer = null;
+        channel.close();
+      }
+    }
+  }
+
+  /**
+   * Cuts off a broken tail of the newest segment. Only allowed before anything gets appended.
+   *
+   * @param newEnd Logical offset to cut at, as returned by {@link #forEach(long, Consumer)}.
+   * @throws IOException If the segment cannot be truncated.
+   */
+  void truncate(final long newEnd) throws IOException {
+    if (writer != null || newEnd < lastBase() || newEnd > end) {
+      throw new IllegalStateException(
+          format("Cannot truncate the log of chat %d at %d.", Long.valueOf(chatId),
+              Long.valueOf(newEnd)));
+    }
+    try (final FileChannel channel = FileChannel.open(lastSegment(), WRITE)) {
+      channel.truncate(newEnd - lastBase());
+      channel.force(false);
+    }
+    end = newEnd;
+  }
+
+  private FileChannel openWriter() throws IOException {
+    final @Nullable FileChannel previous = writer;
+    if (previous == null && segments.bases.length > 0 && end - lastBase() < maxSegmentSize) {
+      final FileChannel channel = FileChannel.open(lastSegment(), WRITE, APPEND);
+      writer = channel;
+      return channel;
+    }
+
+    closeWriter();
+    Files.createDirectories(directory);
+    final long base = end;
+    final FileChannel channel = FileChannel.open(segment(base), CREATE, WRITE, APPEND);
+    final int count = addSegment(base);
+    writer = channel;
+    if (count > 1) {
+      BotLogger.info(TAG, format("Rolled the event log of chat %d over into segment %d.",
+          Long.valueOf(chatId), Long.valueOf(base)));
+    }
+    return channel;
+  }
+
+  /**
+   * @return The number of segments now.
+   */
+  private synchronized int addSegment(final long base) {
+    final Segments current = segments;
+    final long[] bases = Arrays.copyOf(current.bases, current.bases.length + 1);
+    bases[bases.length - 1] = base;
+    segments = new Segments(bases, Arrays.copyOf(current.compressed, bases.length));
+    return bases.length;
+  }
+
+  private synchronized void markCompressed(final long base) {
+    final Segments current = segments;
+    final int index = Arrays.binarySearch(current.bases, base);
+    if (index >= 0) {
+      final boolean[] compressed = current.compressed.clone();
+      compressed[index] = true;
+      segments = new Segments(current.bases, compressed);
+    }
+  }
+
+  private boolean isCompressed(final long base) {
+    final Segments current = segments;
+    final int index = Arrays.binarySearch(current.bases, base);
+    return index >= 0 && current.compressed[index];
+  }
+
+  private long lastBase() {
+    final long[] bases = segments.bases;
+    return bases.length == 0 ? 0 : bases[bases.length - 1];
+  }
+
+  private Path lastSegment() {
+    return segment(lastBase());
+  }
+
+  private Path segment(final long base) {
+    return directory.resolve(format("%020d%s", Long.valueOf(base), SUFFIX));
+  }
+
+  private Path compressedSegment(final long base) {
+    return directory.resolve(format("%020d%s", Long.valueOf(base), COMPRESSED_SUFFIX));
+  }
+
+  @Override
+  public String toString() {
+    return "ChatEventLog [chatId=" + chatId + ", segments=" + segments.bases.length + ", end="
+        + end + "]";
+  }
+}
@@ -0,0 +1,112 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import java.util.Locale;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.telegram.telegrambots.logging.BotLogger;
+
+/**
+ * Reads the settings of the bot from environment variables, which is how Heroku wants us to be
+ * configured. Every setting has a sane default, so nothing needs to be set for local development.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public final class Configuration {
+
+  /**
+   * Namespace for logger.
+   */
+  private static final String TAG = "CONFIGURATION";
+
+  private Configuration() {
+    // only static helpers in here
+  }
+
+  /**
+   * @param name Name of the environment variable.
+   * @param defaultValue Used if the variable is not set.
+   * @return The value of the variable.
+   */
+  public static String getString(final String name, final String defaultValue) {
+    final @Nullable String value = System.getenv(name);
+    return value == null || value.trim().isEmpty() ? defaultValue : value.trim();
+  }
+
+  /**
+   * @param name Name of the environment variable.
+   * @param defaultValue Used if the variable is not set or is not a number.
+   * @return The value of the variable.
+   */
+  public static long getLong(final String name, final long defaultValue) {
+    final String value = getString(name, Long.toString(defaultValue));
+    try {
+      return Long.parseLong(value);
+    } catch (final NumberFormatException exception) {
+      BotLogger.warn(TAG,
+          "'" + value + "' is not a number. Using " + defaultValue + " for " + name + " instead.");
+      return defaultValue;
+    }
+  }
+
+  /**
+   * @param name Name of the environment variable.
+   * @param defaultValue Used if the variable is not set or is not a number.
+   * @return The value of the variable.
+   */
+  public static double getDouble(final String name, final double defaultValue) {
+    final String value = getString(name, Double.toString(defaultValue));
+    try {
+      return Double.parseDouble(value);
+    } catch (final NumberFormatException exception) {
+      BotLogger.warn(TAG,
+          "'" + value + "' is not a number. Using " + defaultValue + " for " + name + " instead.");
+      return defaultValue;
+    }
+  }
+
+  /**
+   * @param name Name of the environment variable.
+   * @param defaultValue Used if the variable is not set or is not a number.
+   * @return The value of the variable.
+   */
+  public static int getInt(final String name, final int defaultValue) {
+    final long value = getLong(name, defaultValue);
+    if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+      BotLogger.warn(TAG, value + " is too large. Using " + defaultValue + " for " + name + ".");
+      return defaultValue;
+    }
+    return (int) value;
+  }
+
+  /**
+   * @param name Name of the environment variable.
+   * @param defaultValue Used if the variable is not set.
+   * @return <code>true</code> if the variable is set to "true", "yes", "on" or "1".
+   */
+  public static boolean getBoolean(final String name, final boolean defaultValue) {
+    final String value = getString(name, Boolean.toString(defaultValue)).toLowerCase(Locale.ROOT);
+    return value.equals("true") || value.equals("yes") || value.equals("on") || value.equals("1");
+  }
+
+  /**
+   * @param name Name of the environment variable. Its value is matched case insensitive against
+   *        the names of the enum constants.
+   * @param defaultValue Used if the variable is not set or does not name a constant.
+   * @return The value of the variable.
+   */
+  public static <E extends Enum<E>> E getEnum(final String name, final E defaultValue) {
+    final String value = getString(name, defaultValue.name());
+    try {
+      return Enum.valueOf(defaultValue.getDeclaringClass(), value.toUpperCase(Locale.ROOT));
+    } catch (final IllegalArgumentException exception) {
+      BotLogger.warn(TAG, "'" + value + "' is not a valid choice. Using " + defaultValue + " for "
+          + name + " instead.");
+      return defaultValue;
+    }
+  }
+}
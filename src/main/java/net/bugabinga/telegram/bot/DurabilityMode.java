@@ -0,0 +1,31 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+/**
+ * How hard the {@link EventLogProcessor} tries to make sure written events survive a crash of the
+ * machine. Set it with the environment variable <code>SCOBO_FSYNC</code>.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public enum DurabilityMode {
+
+  /**
+   * Every batch of events is forced to disk before the next one gets written. Safest, slowest.
+   */
+  BATCH,
+
+  /**
+   * The event log is forced to disk at most every <code>SCOBO_FSYNC_INTERVAL_MS</code>
+   * milliseconds. A crash loses at most that much time worth of events.
+   */
+  INTERVAL,
+
+  /**
+   * Never force anything, the operating system flushes whenever it likes.
+   */
+  NONE
+}
@@ -0,0 +1,99 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Replaces files in a way that survives a crash or a power loss. A moved file is only safe once
+ * its content and the directory entry pointing to it are on disk, which is what has to be true
+ * before anything it replaces gets deleted.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public final class DurableFiles {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /**
+   * Directories cannot be opened for syncing on Windows, its file system takes care of it.
+   */
+  private static final boolean SYNC_DIRECTORIES =
+      !System.getProperty("os.name", "").toLowerCase(Locale.ROOT).startsWith("windows");
+
+  private DurableFiles() {
+    // only static helpers in here
+  }
+
+  /**
+   * Writes the value as JSON into a temporary file, forces it to disk, moves it into place and
+   * syncs the directory.
+   *
+   * @param jsonMapper The JSON serializer.
+   * @param target Where the file ends up.
+   * @param value What to write.
+   * @throws IOException If writing fails. The target is untouched then.
+   */
+  public static void writeJson(final ObjectMapper jsonMapper, final Path target,
+      final Object value) throws IOException {
+    final Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+    try (final FileChannel channel =
+        FileChannel.open(temporary, CREATE, WRITE, TRUNCATE_EXISTING)) {
+      final OutputStream output =
+          new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+      // the channel still has to be forced, so Jackson must not close it
+      jsonMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET).writeValue(output,
+          value);
+      output.flush();
+      channel.force(true);
+    }
+    move(temporary, target);
+  }
+
+  /**
+   * Moves a file that is on disk already into place and syncs the directory.
+   *
+   * @param source A file whose content was forced to disk.
+   * @param target Where it ends up, in the same directory.
+   * @throws IOException If moving or syncing fails.
+   */
+  public static void move(final Path source, final Path target) throws IOException {
+    Files.move(source, target, ATOMIC_MOVE, REPLACE_EXISTING);
+    syncDirectory(target.toAbsolutePath().getParent());
+  }
+
+  /**
+   * Makes created, moved or deleted entries of the directory survive a crash.
+   *
+   * @param directory The directory.
+   * @throws IOException If syncing fails.
+   */
+  public static void syncDirectory(final Path directory) throws IOException {
+    if (!SYNC_DIRECTORIES) {
+      return;
+    }
+    try (final FileChannel channel = FileChannel.open(directory, READ)) {
+      channel.force(true);
+    }
+  }
+}
@@ -0,0 +1,183 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.telegram.telegrambots.logging.BotLogger;
+
+/**
+ * Keeps the event log from growing forever. Every now and then, on a thread of its own, it goes
+ * through the log of every chat and
+ * <ul>
+ * <li>folds the segments that are older than the retention into the {@link ChatCheckpoint} of the
+ * chat and deletes them. The checkpoint is a whole {@link ScoreBoard}, including the wins that can
+ * still be undone, so /undo works across it.</li>
+ * <li>compresses the segments that are no longer written to. They are streamed back on replay.</li>
+ * </ul>
+ * The segment that is currently written to is never touched.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public class EventLogCompactor implements Runnable {
+
+  /**
+   * Namespace for logger.
+   */
+  private static final String TAG = "EVENT_LOG_COMPACTOR";
+
+  private final PartitionedEventLog chatLogs;
+  private final ChatCheckpoints checkpoints;
+  private final boolean compress;
+  private final long retentionMillis;
+  private final long intervalMinutes;
+  private final AtomicLong reclaimedBytes = new AtomicLong();
+
+  private @Nullable ScheduledExecutorService scheduler;
+
+  /**
+   * @param chatLogs The event log.
+   * @param checkpoints Where the compacted events end up.
+   * @param compress Whether to compress segments that are no longer written to.
+   * @param retentionDays Segments that were last written to longer ago than this are folded into
+   *        the checkpoints. 0 keeps every event in the log.
+   * @param intervalMinutes Time between two runs.
+   */
+  public EventLogCompactor(final PartitionedEventLog chatLogs, final ChatCheckpoints checkpoints,
+      final boolean compress, final int retentionDays, final long intervalMinutes) {
+    this.chatLogs = chatLogs;
+    this.checkpoints = checkpoints;
+    this.compress = compress;
+    this.retentionMillis = DAYS.toMillis(Math.max(0, retentionDays));
+    this.intervalMinutes = Math.max(1, intervalMinutes);
+  }
+
+  /**
+   * Runs the compaction in the background from now on. Call this only once the log was replayed.
+   */
+  public synchronized void start() {
+    if (scheduler != null || !compress && retentionMillis == 0) {
+      return;
+    }
+    final ScheduledExecutorService started = Executors.newSingleThreadScheduledExecutor(
+        runnable -> {
+          final Thread thread = new Thread(runnable, "event-log-compactor");
+          thread.setDaemon(true);
+          return thread;
+        });
+    started.scheduleWithFixedDelay(this, intervalMinutes, intervalMinutes, MINUTES);
+    scheduler = started;
+  }
+
+  /**
+   * Stops the background compaction, waiting for a run that is in progress.
+   *
+   * @param timeout How long to wait.
+   * @param unit Unit of the timeout.
+   * @throws InterruptedException If interrupted while waiting.
+   */
+  public synchronized void close(final long timeout, final TimeUnit unit)
+      throws InterruptedException {
+    final @Nullable ScheduledExecutorService started = scheduler;
+    if (started != null) {
+      started.shutdown();
+      if (!started.awaitTermination(timeout, unit)) {
+        BotLogger.warn(TAG,
+            "The compaction did not finish in time. It picks up on the next start.");
+      }
+      scheduler = null;
+    }
+  }
+
+  /**
+   * @return Bytes freed on disk since the bot started.
+   */
+  public long reclaimedBytes() {
+    return reclaimedBytes.get();
+  }
+
+  @Override
+  public void run() {
+    final long startTime = System.nanoTime();
+    long reclaimed = 0;
+    for (final ChatEventLog chatLog : chatLogs.chats()) {
+      try {
+        reclaimed += compact(chatLog);
+      } catch (final IOException | RuntimeException exception) {
+        // everything is still there, the next run tries again
+        BotLogger.warn("Could not compact the event log of chat " + chatLog.getChatId() + ".", TAG,
+            exception);
+      }
+    }
+    if (reclaimed > 0) {
+      BotLogger.info(TAG, format("Reclaimed %d bytes of the event log in %d ms, %d in total.",
+          Long.valueOf(reclaimed),
+          Long.valueOf(NANOSECONDS.toMillis(System.nanoTime() - startTime)),
+          Long.valueOf(reclaimedBytes.addAndGet(reclaimed))));
+    }
+  }
+
+  /**
+   * @return Bytes freed on disk.
+   */
+  private long compact(final ChatEventLog chatLog) throws IOException {
+    long reclaimed = 0;
+    if (retentionMillis > 0) {
+      reclaimed += fold(chatLog, System.currentTimeMillis() - retentionMillis);
+    }
+    if (compress) {
+      for (final long base : chatLog.uncompressedColdSegments()) {
+        reclaimed += chatLog.compress(base);
+      }
+    }
+    return reclaimed;
+  }
+
+  /**
+   * Folds the segments last written to before the cutoff into the checkpoint and drops them. The
+   * checkpoint is forced to disk, directory entry included, before any segment gets deleted.
+   *
+   * @return Bytes freed on disk.
+   */
+  private long fold(final ChatEventLog chatLog, final long cutoffMillis) throws IOException {
+    final long[] bases = chatLog.segmentBases();
+    int expired = 0;
+    while (expired < bases.length - 1
+        && chatLog.segmentLastModified(bases[expired]) < cutoffMillis) {
+      expired++;
+    }
+    if (expired == 0) {
+      return 0;
+    }
+
+    final long newStart = bases[expired];
+    final @Nullable ChatCheckpoint previous = checkpoints.load(chatLog);
+    final long from = previous == null ? 0 : previous.getOffset();
+    if (from < chatLog.start()) {
+      // folding would only hide that events are missing
+      BotLogger.error(TAG, format("The log of chat %d starts at %d, but its events up to there are "
+          + "not in a checkpoint. Leaving it alone.", Long.valueOf(chatLog.getChatId()),
+          Long.valueOf(chatLog.start())));
+      return 0;
+    }
+    if (from < newStart) {
+      final ScoreBoard board = previous == null ? new ScoreBoard() : previous.toBoard();
+      chatLog.forEach(from, newStart, board::apply);
+      checkpoints.write(chatLog, ChatCheckpoint.of(newStart, board));
+    }
+    return chatLog.dropBefore(newStart);
+  }
+}
@@ -0,0 +1,432 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.util.stream.Collectors.toList;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.telegram.telegrambots.api.objects.Update;
+import org.telegram.telegrambots.logging.BotLogger;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+
+/**
+ * Converts an old event log into a {@link PartitionedEventLog}. Two formats are understood: one
+ * JSON serialized Telegram {@link Update} per line, where updates that do not alter any score are
+ * dropped, and a single file of {@link ScoreEventCodec} records for all chats.
+ *
+ * <p>
+ * The bot does this on its own the first time it starts without a partitioned event log. To do it
+ * by hand run <code>gradle migrateEventLog -Pargs="path/to/scobo_bot.json path/to/events"</code>.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public final class EventLogMigration {
+
+  /**
+   * Namespace for logger.
+   */
+  private static final String TAG = "EVENT_LOG_MIGRATION";
+
+  /**
+   * Events are handed to the new log in chunks of this size.
+   */
+  private static final int BATCH_SIZE = 1000;
+
+  /**
+   * Size of the pieces an old JSON log gets cut into for parsing them in parallel.
+   */
+  private static final int CHUNK_SIZE = 4 * 1024 * 1024;
+
+  /**
+   * Receives parsed events in the order of the old log.
+   */
+  @FunctionalInterface
+  private interface EventSink {
+    void accept(List<ScoreEvent> events) throws IOException;
+  }
+
+  private EventLogMigration() {
+    // only static helpers in here
+  }
+
+  /**
+   * @param oldLog The old event log, in either format.
+   * @param eventLogDirectory Where the partitioned event log goes. Must not exist yet.
+   * @param jsonMapper The JSON deserializer.
+   * @param maxSegmentSize Size at which the log of a chat rolls over into a new segment.
+   * @param mode Whether a JSON log gets parsed by one thread or in parallel.
+   * @param threads Size of the fork join pool for {@link ReplayMode#PARALLEL}.
+   * @return Number of events that were written.
+   * @throws IOException If reading or writing fails. The partitioned event log is only created if
+   *         everything worked.
+   */
+  public static long migrate(final Path oldLog, final Path eventLogDirectory,
+      final ObjectMapper jsonMapper, final long maxSegmentSize, final ReplayMode mode,
+      final int threads) throws IOException {
+    final long start = System.nanoTime();
+    final Path temporary =
+        eventLogDirectory.resolveSibling(eventLogDirectory.getFileName() + ".migrating");
+    deleteRecursively(temporary);
+
+    final long events;
+    try (final PartitionedEventLog chatLogs =
+        new PartitionedEventLog(temporary, maxSegmentSize,
+            PartitionedEventLog.DEFAULT_MAX_OPEN_WRITERS)) {
+      events = isBinary(oldLog) ? migrateBinary(oldLog, chatLogs)
+          : migrateJson(oldLog, chatLogs, jsonMapper, mode, threads);
+    }
+    Files.move(temporary, eventLogDirectory, ATOMIC_MOVE);
+
+    BotLogger.info(TAG,
+        format("Migrated %d events from %s in %d ms.", Long.valueOf(events), oldLog,
+            Long.valueOf((System.nanoTime() - start) / 1_000_000)));
+    return events;
+  }
+
+  /**
+   * JSON lines start with a brace or a line break, binary records with the high byte of their
+   * length, which is always zero.
+   */
+  private static boolean isBinary(final Path oldLog) throws IOException {
+    try (final InputStream input = Files.newInputStream(oldLog)) {
+      return input.read() == 0;
+    }
+  }
+
+  private static long migrateBinary(final Path oldLog, final PartitionedEventLog chatLogs)
+      throws IOException {
+    final List<ScoreEvent> batch = new ArrayList<>(BATCH_SIZE);
+    long events = 0;
+    try (final ScoreEventReader reader = new ScoreEventReader(oldLog, 0)) {
+      @Nullable
+      ScoreEvent event;
+      while ((event = reader.next()) != null) {
+        add(event, batch, chatLogs);
+        events++;
+      }
+    }
+    chatLogs.append(batch);
+    return events;
+  }
+
+  private static long migrateJson(final Path jsonLog, final PartitionedEventLog chatLogs,
+      final ObjectMapper jsonMapper, final ReplayMode mode, final int threads)
+      throws IOException {
+    final ObjectReader updateReader = jsonMapper.readerFor(Update.class);
+    final LongAdder lines = new LongAdder();
+    final long[] events = new long[1];
+    final EventSink sink = batch -> {
+      chatLogs.append(batch);
+      events[0] += batch.size();
+    };
+
+    switch (mode) {
+      case SEQUENTIAL:
+        parseSequentially(jsonLog, updateReader, lines, sink);
+        break;
+      case VERIFY:
+        sink.accept(verify(jsonLog, updateReader, jsonMapper.getFactory(), threads, lines));
+        break;
+      case PARALLEL:
+      default:
+        parseInParallel(jsonLog, jsonMapper.getFactory(), threads, lines, sink);
+    }
+
+    BotLogger.info(TAG, format("%d of the %d old updates changed a score.",
+        Long.valueOf(events[0]), Long.valueOf(lines.sum())));
+    return events[0];
+  }
+
+  private static void parseSequentially(final Path jsonLog, final ObjectReader updateReader,
+      final LongAdder lines, final EventSink sink) throws IOException {
+    final List<ScoreEvent> batch = new ArrayList<>(BATCH_SIZE);
+    try (final BufferedReader reader = Files.newBufferedReader(jsonLog, UTF_8)) {
+      @Nullable
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.isEmpty()) {
+          continue;
+        }
+        lines.increment();
+
+        final Update update;
+        try {
+          update = updateReader.readValue(line);
+        } catch (final IOException exception) {
+          BotLogger.error("Line " + lines.sum()
+              + " of the old event log is not a valid update. It gets dropped.", TAG, exception);
+          continue;
+        }
+
+        final @Nullable ScoreEvent event = ScoreEvent.from(update);
+        if (event != null) {
+          batch.add(event.withoutUpdate());
+          if (batch.size() == BATCH_SIZE) {
+            sink.accept(batch);
+            batch.clear();
+          }
+        }
+      }
+    }
+    sink.accept(batch);
+  }
+
+  /**
+   * Splits the file into chunks that end at line breaks and parses them on a fork join pool with
+   * the {@link ScoreEventJsonDecoder}. The chunks are handed to the sink in the order of the file,
+   * a few at a time, so not the whole log ends up in memory.
+   */
+  private static void parseInParallel(final Path jsonLog, final JsonFactory jsonFactory,
+      final int threads, final LongAdder lines, final EventSink sink) throws IOException {
+    final ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+    try (final FileChannel channel = FileChannel.open(jsonLog, READ)) {
+      final List<long[]> chunks = chunk(channel);
+      final int wave = 2 * pool.getParallelism();
+
+      for (int first = 0; first < chunks.size(); first += wave) {
+        final List<ForkJoinTask<List<ScoreEvent>>> tasks = new ArrayList<>(wave);
+        for (final long[] chunk : chunks.subList(first, Math.min(chunks.size(), first + wave))) {
+          tasks.add(
+              pool.submit(() -> parseChunk(channel, chunk[0], chunk[1], jsonFactory, lines)));
+        }
+        for (final ForkJoinTask<List<ScoreEvent>> task : tasks) {
+          sink.accept(task.get());
+        }
+      }
+    } catch (final ExecutionException exception) {
+      final Throwable cause = exception.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new IOException("Parsing the old event log failed.", cause);
+    } catch (final InterruptedException exception) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Got interrupted while parsing the old event log.", exception);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Parses the file both ways and compares the outcome. Meant for checking the streaming parallel
+   * parser against binding complete updates on a copy of a real event log, it keeps all events in
+   * memory twice.
+   */
+  private static List<ScoreEvent> verify(final Path jsonLog, final ObjectReader updateReader,
+      final JsonFactory jsonFactory, final int threads, final LongAdder lines)
+      throws IOException {
+    final List<ScoreEvent> sequential = new ArrayList<>();
+    parseSequentially(jsonLog, updateReader, lines, sequential::addAll);
+    final List<ScoreEvent> parallel = new ArrayList<>();
+    parseInParallel(jsonLog, jsonFactory, threads, new LongAdder(), parallel::addAll);
+
+    boolean same = sequential.size() == parallel.size();
+    for (int index = 0; same && index < sequential.size(); index++) {
+      same = Arrays.equals(ScoreEventCodec.encode(sequential.get(index)),
+          ScoreEventCodec.encode(parallel.get(index)));
+    }
+
+    if (same) {
+      BotLogger.info(TAG, "The parallel parser matches the sequential one.");
+    } else {
+      BotLogger.error(TAG, format(
+          "The parallel parser found %d events, the sequential one %d and they differ! Going with the sequential result.",
+          Integer.valueOf(parallel.size()), Integer.valueOf(sequential.size())));
+    }
+    return sequential;
+  }
+
+  /**
+   * @return Start and end offset of every chunk. Each one starts right after a line break.
+   */
+  private static List<long[]> chunk(final FileChannel channel) throws IOException {
+    final long size = channel.size();
+    final ByteBuffer probe = ByteBuffer.allocate(4096);
+    final List<long[]> chunks = new ArrayList<>();
+
+    long start = 0;
+    while (start < size) {
+      long end = Math.min(size, start + CHUNK_SIZE);
+      search: while (end < size) {
+        probe.clear();
+        final int read = channel.read(probe, end);
+        for (int index = 0; index < read; index++) {
+          if (probe.get(index) == '\n') {
+            end += index + 1;
+            break search;
+          }
+        }
+        end += read;
+      }
+      chunks.add(new long[] {start, end});
+      start = end;
+    }
+    return chunks;
+  }
+
+  private static List<ScoreEvent> parseChunk(final FileChannel channel, final long start,
+      final long end, final JsonFactory jsonFactory, final LongAdder lines) throws IOException {
+    final MappedByteBuffer chunk = channel.map(READ_ONLY, start, end - start);
+    final ScoreEventJsonDecoder decoder = new ScoreEventJsonDecoder(jsonFactory);
+    try {
+      return streamChunk(chunk, decoder, jsonFactory, lines);
+    } catch (final JsonProcessingException exception) {
+      BotLogger.warn(TAG, "The old event log contains broken JSON somewhere between offset " + start
+          + " and " + end + ". Going through that part line by line.");
+      chunk.rewind();
+      return parseChunkByLine(chunk, start, decoder, lines);
+    }
+  }
+
+  /**
+   * The lines of the log are root level values of one long JSON stream, so a single parser can read
+   * them all. That saves creating a parser for each line, which costs more than most updates.
+   */
+  private static List<ScoreEvent> streamChunk(final MappedByteBuffer chunk,
+      final ScoreEventJsonDecoder decoder, final JsonFactory jsonFactory, final LongAdder lines)
+      throws IOException {
+    final List<ScoreEvent> events = new ArrayList<>();
+    long updates = 0;
+    try (final JsonParser parser =
+        jsonFactory.createParser(new ByteBufferBackedInputStream(chunk))) {
+      @Nullable
+      JsonToken token;
+      while ((token = parser.nextToken()) != null) {
+        if (token != JsonToken.START_OBJECT) {
+          parser.skipChildren();
+          continue;
+        }
+        updates++;
+        final @Nullable ScoreEvent event = decoder.decode(parser);
+        if (event != null) {
+          events.add(event);
+        }
+      }
+    }
+    lines.add(updates);
+    return events;
+  }
+
+  private static List<ScoreEvent> parseChunkByLine(final MappedByteBuffer chunk, final long start,
+      final ScoreEventJsonDecoder decoder, final LongAdder lines) {
+    final List<ScoreEvent> events = new ArrayList<>();
+    byte[] line = new byte[4096];
+
+    while (chunk.hasRemaining()) {
+      final int lineStart = chunk.position();
+      int length = 0;
+      while (chunk.hasRemaining()) {
+        final byte next = chunk.get();
+        if (next == '\n') {
+          break;
+        }
+        if (length == line.length) {
+          line = Arrays.copyOf(line, 2 * line.length);
+        }
+        line[length++] = next;
+      }
+      if (length > 0 && line[length - 1] == '\r') {
+        length--;
+      }
+      if (length == 0) {
+        continue;
+      }
+      lines.increment();
+
+      final @Nullable ScoreEvent event;
+      try {
+        event = decoder.decode(line, 0, length);
+      } catch (final IOException exception) {
+        BotLogger.error("The line at offset " + (start + lineStart)
+            + " of the old event log is not a valid update. It gets dropped.", TAG, exception);
+        continue;
+      }
+      if (event != null) {
+        events.add(event);
+      }
+    }
+    return events;
+  }
+
+  private static void add(final ScoreEvent event, final List<ScoreEvent> batch,
+      final PartitionedEventLog chatLogs) throws IOException {
+    batch.add(event);
+    if (batch.size() == BATCH_SIZE) {
+      chatLogs.append(batch);
+      batch.clear();
+    }
+  }
+
+  private static void deleteRecursively(final Path path) throws IOException {
+    if (!Files.exists(path)) {
+      return;
+    }
+    try (final Stream<Path> files = Files.walk(path)) {
+      final List<Path> deepestFirst = files.sorted(Comparator.reverseOrder()).collect(toList());
+      for (final Path file : deepestFirst) {
+        Files.delete(file);
+      }
+    }
+  }
+
+  /**
+   * @param args Path of the old event log and path of the new event log directory.
+   */
+  public static void main(final String[] args) {
+    if (args.length != 2) {
+      System.err.println("Usage: EventLogMigration <old event log> <new event log directory>");
+      System.exit(-1);
+    }
+
+    final Path oldLog = Paths.get(args[0]);
+    final Path eventLogDirectory = Paths.get(args[1]);
+    if (Files.exists(eventLogDirectory)) {
+      System.err.println(eventLogDirectory + " already exists. Not going to overwrite it.");
+      System.exit(-1);
+    }
+
+    try {
+      migrate(oldLog, eventLogDirectory, new ObjectMapper(),
+          Configuration.getLong("SCOBO_SEGMENT_SIZE", PartitionedEventLog.DEFAULT_SEGMENT_SIZE),
+          Configuration.getEnum("SCOBO_REPLAY", ReplayMode.PARALLEL),
+          Configuration.getInt("SCOBO_REPLAY_THREADS", Runtime.getRuntime().availableProcessors()));
+    } catch (final IOException exception) {
+      BotLogger.error("The migration failed.", TAG, exception);
+      System.exit(-1);
+    }
+  }
+}
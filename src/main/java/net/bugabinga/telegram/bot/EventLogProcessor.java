@@ -4,21 +4,28 @@
 package net.bugabinga.telegram.bot;
 
 import static java.lang.System.lineSeparator;
-import static java.lang.Thread.currentThread;
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
 
-import java.io.File;
-import java.io.FileOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.Queue;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.telegram.telegrambots.api.objects.Update;
 import org.telegram.telegrambots.logging.BotLogger;
 
-import com.fasterxml.jackson.core.JsonGenerationException;
-import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 
 /**
  * @author Oliver Jan Krylow <oliver@bugabinga.net>
@@ -31,73 +38,213 @@ public class EventLogProcessor implements Runnable {
    * Namespace for logger.
    */
   private static final String TAG = "EVENT_LOG_PROCESSOR";
-  private static final long SLEEP_TIME = 1000;
 
-  private final Queue<Update> eventLog;
-  private final ObjectMapper jsonMapper;
-  private final File eventLogFile;
+  /**
+   * Upper bound of events that get written in one go, so a huge backlog does not allocate a huge
+   * buffer.
+   */
+  private static final int MAX_BATCH_SIZE = 1000;
+
+  private static final byte[] SEPARATOR = lineSeparator().getBytes(UTF_8);
+
+  /**
+   * A store that failed is tried again after this long, twice as long after every further failure.
+   */
+  private static final long FIRST_RETRY_DELAY_MILLIS = 100;
+
+  private static final long MAX_RETRY_DELAY_MILLIS = SECONDS.toMillis(10);
 
   /**
-   * @param eventLog A queue, that is filled by another thread with Telegram {@link Update}s.
-   * @param eventLogFile The {@link File} on disk where events get written to.
-   * @param jsonMapper The JSON serializer.
+   * Something the processor does with the store, that is worth trying again when it fails.
    */
-  public EventLogProcessor(final Queue<Update> eventLog, final File eventLogFile,
-      final ObjectMapper jsonMapper) {
+  @FunctionalInterface
+  private interface StoreAction {
+
+    void run() throws IOException;
+  }
+
+  private final EventLogQueue eventLog;
+  private final ScoreStore store;
+  private final @Nullable Path archivePath;
+  private final ObjectWriter jsonWriter;
+  private final DurabilityMode durability;
+  private final long syncIntervalNanos;
+  private final LatencyHistogram writeLatency;
+  private final LatencyHistogram syncLatency;
+  private final LongAdder written;
+  private final LongAdder failures;
+  private volatile boolean failing;
+
+  private final List<ScoreEvent> batch = new ArrayList<>(MAX_BATCH_SIZE);
+  private final ByteArrayOutputStream archiveBuffer = new ByteArrayOutputStream();
+
+  private boolean unsynced;
+  private long lastSync = System.nanoTime();
+
+  /**
+   * @param eventLog A queue, that is filled by other threads with {@link ScoreEvent}s.
+   * @param store Where the events get written to. It is closed once the queue is drained.
+   * @param archivePath If not <code>null</code>, the raw Telegram {@link Update} of every event
+   *        gets appended as JSON to this file.
+   * @param jsonMapper The JSON serializer for the archive.
+   * @param durability When to force written events to disk.
+   * @param syncIntervalMillis Time between two syncs with {@link DurabilityMode#INTERVAL}.
+   * @param metrics Where the write and sync latencies go.
+   */
+  public EventLogProcessor(final EventLogQueue eventLog, final ScoreStore store,
+      final @Nullable Path archivePath, final ObjectMapper jsonMapper,
+      final DurabilityMode durability, final long syncIntervalMillis, final Metrics metrics) {
     this.eventLog = eventLog;
-    this.eventLogFile = eventLogFile;
-    this.jsonMapper = jsonMapper;
+    this.store = store;
+    this.archivePath = archivePath;
+    this.jsonWriter = jsonMapper.writer();
+    this.durability = durability;
+    this.syncIntervalNanos = MILLISECONDS.toNanos(syncIntervalMillis);
+    writeLatency = metrics.histogram("scobo_event_log_write_seconds",
+        "Time to append one batch of events to the store.");
+    syncLatency = metrics.histogram("scobo_event_log_sync_seconds",
+        "Time to force written events to disk.");
+    written = metrics.counter("scobo_event_log_events_total", "Events written to the store.");
+    failures = metrics.counter("scobo_event_log_failures_total",
+        "Attempts to write or sync events that failed and get tried again.");
+    metrics.gauge("scobo_event_log_failing",
+        "1 while the store keeps failing and events pile up in the queue.",
+        () -> failing ? 1 : 0);
   }
 
   @Override
   public void run() {
-    while (currentThread().isAlive()) {
-      @Nullable
-      final Update update = eventLog.poll();
+    /*
+     * The store stays open between batches. Every batch of events that piled up in the queue gets
+     * written in one go.
+     */
+    try (final ScoreStore closedWhenDrained = store;
+        final @Nullable FileChannel archive = openArchive()) {
 
-      if (update == null) {
-        /*
-         * The event log is currently empty so we pause the thread an try again later.
-         */
-        try {
-          Thread.sleep(SLEEP_TIME);
-        } catch (final InterruptedException exception) {
-
-          BotLogger.warn(
-              "This thread got interrupted while sleeping. This is unexpected but not fatal. This thread will now stop running.",
-              TAG, exception);
-
-          break;
+      try {
+        while (eventLog.drainTo(batch, MAX_BATCH_SIZE, nanosUntilSyncIsDue())) {
+          if (batch.isEmpty()) {
+            // we only wake up empty handed, if a sync is due
+            untilItWorks(this::sync);
+            continue;
+          }
+          untilItWorks(this::writeBatch);
+          if (isSyncDue()) {
+            // a separate attempt, the batch must not be appended again when only syncing fails
+            untilItWorks(this::sync);
+          }
+          if (archive != null) {
+            archiveBatch(archive);
+          }
+          batch.clear();
         }
+      } catch (final InterruptedException exception) {
+        BotLogger.warn(
+            "This thread got interrupted while waiting for events. This is unexpected but not fatal. This thread will now stop running.",
+            TAG, exception);
+        if (!batch.isEmpty()) {
+          BotLogger.error(TAG, "Lost " + batch.size() + " events that could not be written.");
+        }
+      }
 
-        // skipping the rest of the process in order to get a new update object
-        continue;
+      if (unsynced) {
+        sync();
       }
+      BotLogger.info(TAG, "The event log is drained and closed.");
+    } catch (final IOException exception) {
+      BotLogger.error(
+          "The file where the events are supposed to be logged could either not be found, opened or written. This might be a permission issue or no disk space is left. Either way, it is game over for us, bye!",
+          TAG, exception);
+    }
+  }
 
-      /*
-       * Creating a new output stream in the loop is very wasteful, but the object mapper from
-       * jackson unfortunately closes the stream it writes to so we are forced to. FIXME(oliver):
-       * There is surely a workaround for this. jackson has many write methods...
-       */
-      try (final FileOutputStream fileOutputStream = new FileOutputStream(eventLogFile, true)) {
-        fileOutputStream.write(lineSeparator().getBytes(UTF_8));
-        // Warning! the writeValue method automatically closes the output stream, so do not touch it
-        // afterwards...
-        jsonMapper.writeValue(fileOutputStream, update);
-      } catch (final JsonGenerationException exception) {
-        BotLogger.warn(
-            "The serializer failed during generation of output. This incident will be ignored. The following event will be lost : '"
-                + update,
-            TAG, exception);
-      } catch (final JsonMappingException exception) {
-        BotLogger.error(
-            "The class we wanted to serialize (or one of its field classes...) could not be handled by ther serializer. This is a fatal bug. Stopping now.",
-            TAG, exception);
+  private @Nullable FileChannel openArchive() throws IOException {
+    final @Nullable Path path = archivePath;
+    return path == null ? null : FileChannel.open(path, CREATE, WRITE, APPEND);
+  }
+
+  /**
+   * @return How long the processor may sleep without violating the {@link DurabilityMode}, or a
+   *         negative value if it may sleep until the next event arrives.
+   */
+  private long nanosUntilSyncIsDue() {
+    if (durability != DurabilityMode.INTERVAL || !unsynced) {
+      return -1;
+    }
+    return Math.max(0, lastSync + syncIntervalNanos - System.nanoTime());
+  }
+
+  /**
+   * A full disk or a database that went away for a moment must not end the event log, everybody
+   * would wait for it forever. The same work is tried again until it works instead, while the
+   * queue fills up and pushes back on the chats.
+   */
+  private void untilItWorks(final StoreAction action) throws InterruptedException {
+    long delayMillis = FIRST_RETRY_DELAY_MILLIS;
+    for (int attempt = 1;; attempt++) {
+      try {
+        action.run();
+        if (failing) {
+          failing = false;
+          BotLogger.info(TAG, "The store works again after " + attempt + " attempts.");
+        }
+        return;
       } catch (final IOException exception) {
-        BotLogger.error(
-            "The file where the events are supposed to be logged could either not be found or opened. This might be a permission issue or no disk space is left. Either way, it is game over for us, bye!",
-            TAG, exception);
+        failures.increment();
+        failing = true;
+        BotLogger.error("Could not write to the store, attempt " + attempt
+            + ". Trying again in " + delayMillis + " ms.", TAG, exception);
       }
+      MILLISECONDS.sleep(delayMillis);
+      delayMillis = Math.min(2 * delayMillis, MAX_RETRY_DELAY_MILLIS);
     }
   }
+
+  private void writeBatch() throws IOException {
+    final long start = System.nanoTime();
+    store.append(batch);
+    writeLatency.record(System.nanoTime() - start);
+    written.add(batch.size());
+    unsynced = true;
+  }
+
+  private boolean isSyncDue() {
+    return durability == DurabilityMode.BATCH || durability == DurabilityMode.INTERVAL
+        && System.nanoTime() - lastSync >= syncIntervalNanos;
+  }
+
+  /**
+   * The archive is a nice to have. Whatever goes wrong in here must never stop the real event log.
+   */
+  private void archiveBatch(final FileChannel archive) {
+    archiveBuffer.reset();
+    for (final ScoreEvent event : batch) {
+      final @Nullable Update update = event.getUpdate();
+      if (update == null) {
+        // events that went through the spill file lost their raw update on the way
+        continue;
+      }
+      try {
+        final byte[] json = jsonWriter.writeValueAsBytes(update);
+        archiveBuffer.write(SEPARATOR);
+        archiveBuffer.write(json);
+      } catch (final IOException exception) {
+        BotLogger.warn("Could not serialize update " + update.getUpdateId()
+            + " for the archive. It is missing from there now.", TAG, exception);
+      }
+    }
+    try {
+      archiveBuffer.writeTo(Channels.newOutputStream(archive));
+    } catch (final IOException exception) {
+      BotLogger.warn("Could not write to the update archive.", TAG, exception);
+    }
+  }
+
+  private void sync() throws IOException {
+    final long start = System.nanoTime();
+    store.force();
+    lastSync = System.nanoTime();
+    syncLatency.record(lastSync - start);
+    unsynced = false;
+  }
 }
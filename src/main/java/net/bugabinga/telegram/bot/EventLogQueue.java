@@ -0,0 +1,399 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.telegram.telegrambots.logging.BotLogger;
+
+/**
+ * Hands {@link ScoreEvent}s over from the threads receiving them to the
+ * {@link EventLogProcessor}. The queue is bounded, what happens when it is full is decided by the
+ * {@link OverflowPolicy}. The processor gets woken up as soon as something arrives instead of
+ * polling for it.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public class EventLogQueue {
+
+  /**
+   * Namespace for logger.
+   */
+  private static final String TAG = "EVENT_LOG_QUEUE";
+
+  private static final BotLog.Sampler REFUSED = new BotLog.Sampler(100);
+
+  /**
+   * Gets put into the queue on {@link #close()} to wake up the processor. It never leaves this
+   * class.
+   */
+  private static final ScoreEvent POISON =
+      new ScoreEvent(ScoreEvent.Kind.WON, 0, 0, "poison", 0, 0, 0, null);
+
+  private final BlockingQueue<ScoreEvent> queue;
+
+  /**
+   * Free places in the queue. Taking them up front lets all events of an update in at once or none
+   * of them.
+   */
+  private final Semaphore capacity;
+  private final int maxCapacity;
+  private final OverflowPolicy overflowPolicy;
+  private final Path spillPath;
+  private final Path drainingSpillPath;
+
+  private final Object spillLock = new Object();
+  private @Nullable FileChannel spillChannel;
+  private volatile boolean spilling;
+  private int spilled;
+
+  /**
+   * Only touched by the processor thread. Tells the next {@link #drainTo(List, int, long)} that
+   * the spilled events of the previous batch have been written and their file can go.
+   */
+  private boolean spillHandedOut;
+
+  private volatile boolean closed;
+
+  /**
+   * Events that got into the queue or the spill file.
+   */
+  private final AtomicLong accepted = new AtomicLong();
+
+  /**
+   * Size of the batch handed to the processor last. Only touched by the processor thread.
+   */
+  private int handedOut;
+
+  private final Object writtenLock = new Object();
+
+  /**
+   * Events the processor is done with, guarded by the lock above.
+   */
+  private long written;
+
+  /**
+   * @param capacity How many events may wait for the processor at most.
+   * @param overflowPolicy What to do with events that do not fit anymore.
+   * @param spillPath File for events that got spilled with {@link OverflowPolicy#SPILL}.
+   */
+  public EventLogQueue(final int capacity, final OverflowPolicy overflowPolicy,
+      final Path spillPath) {
+    // one more place, so the poison always fits
+    this.queue = new ArrayBlockingQueue<>(capacity + 1);
+    this.capacity = new Semaphore(capacity);
+    this.maxCapacity = capacity;
+    this.overflowPolicy = overflowPolicy;
+    this.spillPath = spillPath;
+    this.drainingSpillPath = spillPath.resolveSibling(spillPath.getFileName() + ".draining");
+  }
+
+  /**
+   * Hands an event over to the processor.
+   *
+   * @param event The event to persist.
+   * @return <code>false</code> if the event was refused, because the queue is full (and the
+   *         policy says so), closed or we got interrupted while waiting.
+   */
+  public boolean offer(final ScoreEvent event) {
+    return offerAll(Collections.singletonList(event));
+  }
+
+  /**
+   * Hands all events of an update over to the processor, or none of them.
+   *
+   * @param events The events to persist, in order.
+   * @return <code>false</code> if the events were refused, because the queue is full (and the
+   *         policy says so), closed or we got interrupted while waiting. None of them got in then.
+   */
+  public boolean offerAll(final List<ScoreEvent> events) {
+    if (closed) {
+      REFUSED.warn(TAG, () -> "The event log queue is closed. Refusing " + events);
+      return false;
+    }
+    if (events.size() > maxCapacity) {
+      REFUSED.warn(TAG, () -> "The event log queue can never take " + events.size()
+          + " events at once. Refusing " + events);
+      return false;
+    }
+    if (enqueue(events)) {
+      accepted.addAndGet(events.size());
+      return true;
+    }
+    return false;
+  }
+
+  private boolean enqueue(final List<ScoreEvent> events) {
+    switch (overflowPolicy) {
+      case BLOCK:
+        try {
+          capacity.acquire(events.size());
+        } catch (final InterruptedException exception) {
+          Thread.currentThread().interrupt();
+          BotLogger.warn("Got interrupted while waiting for space in the event log queue.", TAG,
+              exception);
+          return false;
+        }
+        queue.addAll(events);
+        return true;
+      case SPILL:
+        synchronized (spillLock) {
+          /*
+           * Once something got spilled, everything after it has to be spilled too until the
+           * processor caught up. Otherwise the order of events in the log would be messed up.
+           */
+          if (!spilling && capacity.tryAcquire(events.size())) {
+            queue.addAll(events);
+            return true;
+          }
+          return spill(events);
+        }
+      case REJECT:
+      default:
+        if (capacity.tryAcquire(events.size())) {
+          queue.addAll(events);
+          return true;
+        }
+        return false;
+    }
+  }
+
+  /**
+   * Waits for events and moves them into the given batch. Meant to be called by the
+   * {@link EventLogProcessor} only. The batch of the previous call is expected to be written to
+   * the event log by now.
+   *
+   * @param batch Gets filled with the next events to write, in order.
+   * @param maxElements Maximum number of events taken from the queue.
+   * @param timeoutNanos How long to wait if there is nothing. Negative values wait forever.
+   * @return <code>false</code> if the queue is closed and there is nothing left, so the processor
+   *         can stop.
+   * @throws InterruptedException If the thread got interrupted while waiting.
+   * @throws IOException If the already written spill file cannot be deleted.
+   */
+  public boolean drainTo(final List<ScoreEvent> batch, final int maxElements,
+      final long timeoutNanos) throws InterruptedException, IOException {
+    if (handedOut > 0) {
+      synchronized (writtenLock) {
+        written += handedOut;
+        writtenLock.notifyAll();
+      }
+      handedOut = 0;
+    }
+    if (spillHandedOut) {
+      Files.delete(drainingSpillPath);
+      spillHandedOut = false;
+    }
+
+    if (spilling) {
+      synchronized (spillLock) {
+        if (spilling && queue.isEmpty()) {
+          unspill(batch);
+          handedOut = batch.size();
+          return true;
+        }
+      }
+    }
+
+    if (closed && queue.isEmpty()) {
+      return false;
+    }
+
+    final @Nullable ScoreEvent first =
+        timeoutNanos < 0 ? queue.take() : queue.poll(timeoutNanos, NANOSECONDS);
+    if (first == null) {
+      return true;
+    }
+    if (first != POISON) {
+      batch.add(first);
+    }
+    queue.drainTo(batch, maxElements - batch.size());
+    batch.removeIf(event -> event == POISON);
+    capacity.release(batch.size());
+    handedOut = batch.size();
+    return true;
+  }
+
+  /**
+   * @return How many events were accepted so far.
+   */
+  public long accepted() {
+    return accepted.get();
+  }
+
+  /**
+   * Waits for the processor to write events. It counts as done with a batch once it asks for the
+   * next one.
+   *
+   * @param count How many of the accepted events have to be written, usually {@link #accepted()}
+   *        at some point.
+   * @param timeout How long to wait.
+   * @param unit Unit of the timeout.
+   * @return <code>false</code> if the events were not written in time.
+   * @throws InterruptedException If waiting got interrupted.
+   */
+  public boolean awaitWritten(final long count, final long timeout, final TimeUnit unit)
+      throws InterruptedException {
+    final long deadline = System.nanoTime() + unit.toNanos(timeout);
+    synchronized (writtenLock) {
+      while (written < count) {
+        final long left = deadline - System.nanoTime();
+        if (left <= 0) {
+          return false;
+        }
+        NANOSECONDS.timedWait(writtenLock, left);
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Stops accepting new events. Everything that is already queued (or spilled) is still handed to
+   * the processor, afterwards {@link #drainTo(List, int, long)} returns <code>false</code>.
+   */
+  public void close() {
+    closed = true;
+    // if the queue is full, the processor is busy anyway and notices the close on its own
+    queue.offer(POISON);
+  }
+
+  /**
+   * @return Number of events waiting in memory.
+   */
+  public int size() {
+    return queue.size();
+  }
+
+  /**
+   * Moves events, that were spilled to disk but never made it into the store (because the bot
+   * died), into the store. Has to be called after the store got loaded and before the processor
+   * starts.
+   *
+   * @param store Where the events belong.
+   * @return The events that were recovered, in order. They are not part of the loaded boards yet.
+   * @throws IOException If the files cannot be read or written.
+   */
+  public List<ScoreEvent> recoverSpill(final ScoreStore store) throws IOException {
+    final List<ScoreEvent> recovered = new ArrayList<>();
+    for (final Path leftover : new Path[] {drainingSpillPath, spillPath}) {
+      if (Files.exists(leftover)) {
+        BotLogger.warn(TAG, "Found leftover spilled events in " + leftover
+            + ". Appending them to the store.");
+        final List<ScoreEvent> events = new ArrayList<>();
+        try (final ScoreEventReader reader = new ScoreEventReader(leftover, 0)) {
+          @Nullable
+          ScoreEvent event;
+          while ((event = reader.next()) != null) {
+            events.add(event);
+          }
+        }
+        store.append(events);
+        store.force();
+        Files.delete(leftover);
+        recovered.addAll(events);
+      }
+    }
+    return recovered;
+  }
+
+  private boolean spill(final List<ScoreEvent> events) {
+    try {
+      @Nullable
+      FileChannel channel = spillChannel;
+      if (channel == null) {
+        BotLogger.warn(TAG,
+            "The event log queue is full. Spilling events to " + spillPath + " until it drained.");
+        channel = FileChannel.open(spillPath, CREATE, WRITE, APPEND);
+        spillChannel = channel;
+      }
+      int size = 0;
+      for (final ScoreEvent event : events) {
+        size += ScoreEventCodec.encodedSize(event);
+      }
+      final ByteBuffer records = ByteBuffer.allocate(size);
+      for (final ScoreEvent event : events) {
+        ScoreEventCodec.encode(event, records);
+      }
+      records.flip();
+      final long previousSize = channel.size();
+      try {
+        while (records.hasRemaining()) {
+          channel.write(records);
+        }
+      } catch (final IOException exception) {
+        // half of an update would be read back as if the rest of it never happened
+        channel.truncate(previousSize);
+        throw exception;
+      }
+      spilling = true;
+      spilled += events.size();
+      return true;
+    } catch (final IOException exception) {
+      BotLogger.error("Could not spill " + events + " to disk.", TAG, exception);
+      return false;
+    }
+  }
+
+  /**
+   * Hands the spilled events to the processor and starts accepting events into the queue again.
+   * The spill file is only deleted after the processor wrote them, so a crash in between can at
+   * worst duplicate a few events, but never lose them.
+   */
+  private void unspill(final List<ScoreEvent> batch) {
+    final int start = batch.size();
+    try {
+      final @Nullable FileChannel channel = spillChannel;
+      if (channel != null) {
+        channel.close();
+        spillChannel = null;
+      }
+      Files.move(spillPath, drainingSpillPath);
+
+      try (final ScoreEventReader reader = new ScoreEventReader(drainingSpillPath, 0)) {
+        @Nullable
+        ScoreEvent event;
+        while ((event = reader.next()) != null) {
+          batch.add(event);
+        }
+      }
+      spillHandedOut = true;
+      BotLogger.info(TAG, "The event log queue caught up. Handing " + spilled
+          + " spilled events to the event log.");
+    } catch (final IOException exception) {
+      batch.subList(start, batch.size()).clear();
+      final Path broken = spillPath
+          .resolveSibling(spillPath.getFileName() + ".broken-" + System.currentTimeMillis());
+      BotLogger.error("Could not read back the spilled events. Moving them to " + broken
+          + ", somebody has to look at them by hand. Sorry!", TAG, exception);
+      try {
+        Files.move(drainingSpillPath, broken);
+      } catch (final IOException moveException) {
+        BotLogger.error("Could not even move them. Giving up on them.", TAG, moveException);
+      }
+    } finally {
+      spilled = 0;
+      spilling = false;
+    }
+  }
+}
@@ -0,0 +1,228 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.telegram.telegrambots.logging.BotLogger;
+
+/**
+ * Rebuilds the {@link ScoreBoards} from the newest snapshot and the part of the event log that was
+ * written after it. Chats whose log got compacted past the snapshot start from their
+ * {@link ChatCheckpoint} instead. Chats do not depend on each other, so each one can be folded into
+ * a board of its own on any thread. Within a chat the events are always applied in the order they
+ * were logged, because an undo depends on everything that came before it.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public final class EventLogReplay {
+
+  /**
+   * Namespace for logger.
+   */
+  private static final String TAG = "EVENT_LOG_REPLAY";
+
+  /**
+   * The outcome of replaying the log of one chat.
+   */
+  private static final class ChatReplay {
+    final ChatEventLog chatLog;
+    final ScoreBoard board;
+    final long validEnd;
+    final long events;
+
+    ChatReplay(final ChatEventLog chatLog, final ScoreBoard board, final long validEnd,
+        final long events) {
+      this.chatLog = chatLog;
+      this.board = board;
+      this.validEnd = validEnd;
+      this.events = events;
+    }
+  }
+
+  private EventLogReplay() {
+    // only static helpers in here
+  }
+
+  /**
+   * This is the only time the event log gets read, afterwards the boards are kept up to date by
+   * the bot. Broken records at the end of a chat log, left behind by a crash, get cut off.
+   *
+   * @param chatLogs The event log.
+   * @param checkpoints The checkpoints of compacted chats.
+   * @param snapshot The newest usable snapshot or <code>null</code> to replay everything.
+   * @param mode Whether to replay the chats one after another or in parallel.
+   * @param threads Size of the fork join pool for {@link ReplayMode#PARALLEL}.
+   * @return The score boards of all chats.
+   * @throws IOException If the event log cannot be read.
+   */
+  public static ScoreBoards replay(final PartitionedEventLog chatLogs,
+      final ChatCheckpoints checkpoints, final @Nullable ScoreSnapshot snapshot,
+      final ReplayMode mode, final int threads) throws IOException {
+    final long startTime = System.nanoTime();
+    if (snapshot == null) {
+      BotLogger.info(TAG, "No usable snapshot found. Replaying the whole event log.");
+    }
+
+    final List<ChatReplay> replays;
+    switch (mode) {
+      case SEQUENTIAL:
+        replays = replaySequentially(chatLogs, checkpoints, snapshot);
+        break;
+      case VERIFY:
+        replays = verify(chatLogs, checkpoints, snapshot, threads);
+        break;
+      case PARALLEL:
+      default:
+        replays = replayInParallel(chatLogs, checkpoints, snapshot, threads);
+    }
+
+    final ScoreBoards replayed = restore(snapshot);
+    long events = 0;
+    for (final ChatReplay replay : replays) {
+      replayed.put(replay.chatLog.getChatId(), replay.board);
+      events += replay.events;
+
+      if (replay.validEnd < replay.chatLog.end()) {
+        /*
+         * Whatever is behind the last complete record is half an event from a crash. New events
+         * must not be appended behind it.
+         */
+        BotLogger.warn(TAG,
+            format("Cutting off %d bytes of garbage at the end of the event log of chat %d.",
+                Long.valueOf(replay.chatLog.end() - replay.validEnd),
+                Long.valueOf(replay.chatLog.getChatId())));
+        replay.chatLog.truncate(replay.validEnd);
+      }
+    }
+
+    BotLogger.info(TAG, format(
+        "Restored %d score boards and replayed the remaining %d events of %d chat logs %s in %d ms.",
+        Integer.valueOf(replayed.size()), Long.valueOf(events),
+        Integer.valueOf(replays.size()), mode == ReplayMode.SEQUENTIAL ? "sequentially"
+            : "on " + threads + " threads",
+        Long.valueOf(NANOSECONDS.toMillis(System.nanoTime() - startTime))));
+    return replayed;
+  }
+
+  private static List<ChatReplay> replaySequentially(final PartitionedEventLog chatLogs,
+      final ChatCheckpoints checkpoints, final @Nullable ScoreSnapshot snapshot)
+      throws IOException {
+    final List<ChatReplay> replays = new ArrayList<>();
+    for (final ChatEventLog chatLog : chatLogs.chats()) {
+      replays.add(replayChat(chatLog, checkpoints, snapshot));
+    }
+    return replays;
+  }
+
+  private static List<ChatReplay> replayInParallel(final PartitionedEventLog chatLogs,
+      final ChatCheckpoints checkpoints, final @Nullable ScoreSnapshot snapshot,
+      final int threads) throws IOException {
+    // the largest chats go first, so no thread is left alone with a huge one at the end
+    final List<ChatEventLog> largestFirst = new ArrayList<>(chatLogs.chats());
+    largestFirst.sort(Comparator.comparingLong(ChatEventLog::end).reversed());
+
+    final ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+    try {
+      final List<ForkJoinTask<ChatReplay>> tasks = new ArrayList<>(largestFirst.size());
+      for (final ChatEventLog chatLog : largestFirst) {
+        tasks.add(pool.submit(() -> replayChat(chatLog, checkpoints, snapshot)));
+      }
+
+      final List<ChatReplay> replays = new ArrayList<>(tasks.size());
+      for (final ForkJoinTask<ChatReplay> task : tasks) {
+        replays.add(task.get());
+      }
+      return replays;
+    } catch (final ExecutionException exception) {
+      final Throwable cause = exception.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new IOException("Replaying the event log failed.", cause);
+    } catch (final InterruptedException exception) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Got interrupted while replaying the event log.", exception);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Replays sequentially and in parallel and compares the outcome. This is meant for checking a
+   * new machine or a new version of the bot, it reads the event log twice.
+   */
+  private static List<ChatReplay> verify(final PartitionedEventLog chatLogs,
+      final ChatCheckpoints checkpoints, final @Nullable ScoreSnapshot snapshot,
+      final int threads) throws IOException {
+    final List<ChatReplay> sequential = replaySequentially(chatLogs, checkpoints, snapshot);
+    final List<ChatReplay> parallel = replayInParallel(chatLogs, checkpoints, snapshot, threads);
+
+    final ScoreBoards sequentialBoards = restore(snapshot);
+    sequential.forEach(
+        replay -> sequentialBoards.put(replay.chatLog.getChatId(), replay.board));
+    final ScoreBoards parallelBoards = restore(snapshot);
+    parallel.forEach(
+        replay -> parallelBoards.put(replay.chatLog.getChatId(), replay.board));
+
+    if (sequentialBoards.sameAs(parallelBoards)) {
+      BotLogger.info(TAG, "The parallel replay matches the sequential one.");
+    } else {
+      BotLogger.error(TAG,
+          "The parallel replay does not match the sequential one! Going with the sequential result. Sequential: "
+              + sequentialBoards.scores() + " Parallel: " + parallelBoards.scores());
+    }
+    return sequential;
+  }
+
+  private static ChatReplay replayChat(final ChatEventLog chatLog,
+      final ChatCheckpoints checkpoints, final @Nullable ScoreSnapshot snapshot)
+      throws IOException {
+    final Long chatId = Long.valueOf(chatLog.getChatId());
+    final @Nullable ChatCheckpoint checkpoint = checkpoints.load(chatLog);
+    final long checkpointOffset = checkpoint == null ? 0 : checkpoint.getOffset();
+    final ScoreBoard board;
+    final long from;
+    if (checkpoint != null && (snapshot == null
+        || snapshot.getPositions().getOrDefault(chatId, Long.valueOf(0)).longValue()
+            < checkpointOffset)) {
+      // the snapshot points into segments that got compacted since
+      board = checkpoint.toBoard();
+      from = checkpointOffset;
+    } else if (snapshot == null) {
+      board = new ScoreBoard();
+      from = 0;
+    } else {
+      board = new ScoreBoard(snapshot.getBoards().getOrDefault(chatId, Collections.emptyMap()),
+          snapshot.getWins().getOrDefault(chatId, Collections.emptyList()),
+          snapshot.getBuckets().getOrDefault(chatId, Collections.emptyMap()));
+      from = snapshot.getPositions().getOrDefault(chatId, Long.valueOf(0)).longValue();
+    }
+
+    final long[] events = new long[1];
+    final long validEnd = chatLog.forEach(from, event -> {
+      board.apply(event);
+      events[0]++;
+    });
+    return new ChatReplay(chatLog, board, validEnd, events[0]);
+  }
+
+  private static ScoreBoards restore(final @Nullable ScoreSnapshot snapshot) {
+    return snapshot == null ? new ScoreBoards()
+        : ScoreBoards.restore(snapshot.getBoards(), snapshot.getWins(), snapshot.getBuckets());
+  }
+}
@@ -0,0 +1,292 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.telegram.telegrambots.logging.BotLogger;
+
+/**
+ * Keeps the events in the {@link PartitionedEventLog} on the local disk. Every now and then the
+ * boards get written into a {@link ScoreSnapshot}, so a restart only has to replay what was logged
+ * after it.
+ *
+ * <p>
+ * Snapshots get written on a thread of their own, which keeps the only copy of the boards this
+ * store has. The processor just hands over the events appended since the last snapshot, so taking
+ * one does not get slower with every chat the bot is in. Questions about the scores of a chat are
+ * answered by replaying its log, which only contains events that were actually appended.
+ *
+ * <p>
+ * In the background the {@link EventLogCompactor} compresses old segments and folds the ones past
+ * the retention into a {@link ChatCheckpoint} per chat. Their events are no longer in
+ * {@link #forEach(long, Consumer)} then.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public class FileScoreStore implements ScoreStore {
+
+  /**
+   * Namespace for logger.
+   */
+  private static final String TAG = "FILE_SCORE_STORE";
+
+  /**
+   * A snapshot gets taken after this many events have been written.
+   */
+  private static final int SNAPSHOT_INTERVAL = 1000;
+
+  private final PartitionedEventLog chatLogs;
+  private final ChatCheckpoints checkpoints;
+  private final ScoreSnapshots snapshots;
+  private final EventLogCompactor compactor;
+  private final ReplayMode replayMode;
+  private final int replayThreads;
+
+  private long lastUpdateId;
+  private int eventsSinceSnapshot;
+  private boolean unsynced;
+
+  /**
+   * Events appended since the last snapshot was handed over.
+   */
+  private List<ScoreEvent> appendedSinceSnapshot = new ArrayList<>();
+
+  private final ExecutorService snapshotWriter = Executors.newSingleThreadExecutor(runnable -> {
+    final Thread thread = new Thread(runnable, "score-snapshots");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  /**
+   * Changes waiting for the snapshot thread. It folds all of them in before writing, so a slow disk
+   * does not make it write one outdated snapshot after the other.
+   */
+  private final Queue<Changes> pendingChanges = new ConcurrentLinkedQueue<>();
+
+  /*
+   * The state of the next snapshot. Only the snapshot thread touches these.
+   */
+  private ScoreBoards snapshotBoards = new ScoreBoards();
+  private final Map<Long, Long> snapshotPositions = new HashMap<>();
+  private long snapshotUpdateId;
+
+  /**
+   * What changed between two snapshots.
+   */
+  private static final class Changes {
+
+    final List<ScoreEvent> events;
+    final Map<Long, Long> positions;
+    final long lastUpdateId;
+
+    Changes(final List<ScoreEvent> events, final Map<Long, Long> positions,
+        final long lastUpdateId) {
+      this.events = events;
+      this.positions = positions;
+      this.lastUpdateId = lastUpdateId;
+    }
+  }
+
+  /**
+   * @param chatLogs The event log.
+   * @param checkpoints The checkpoints of compacted chats.
+   * @param snapshots Where snapshots of the boards get written to.
+   * @param compactor Compacts the event log once it was replayed. It has to work on the same
+   *        event log and checkpoints.
+   * @param replayMode How to replay the event log on {@link #load()}.
+   * @param replayThreads Size of the pool for {@link ReplayMode#PARALLEL}.
+   */
+  public FileScoreStore(final PartitionedEventLog chatLogs, final ChatCheckpoints checkpoints,
+      final ScoreSnapshots snapshots, final EventLogCompactor compactor,
+      final ReplayMode replayMode, final int replayThreads) {
+    this.chatLogs = chatLogs;
+    this.checkpoints = checkpoints;
+    this.snapshots = snapshots;
+    this.compactor = compactor;
+    this.replayMode = replayMode;
+    this.replayThreads = replayThreads;
+  }
+
+  @Override
+  public ScoreBoards load() throws IOException {
+    final @Nullable ScoreSnapshot snapshot = snapshots.loadNewest(chatLogs);
+    final ScoreBoards boards =
+        EventLogReplay.replay(chatLogs, checkpoints, snapshot, replayMode, replayThreads);
+    lastUpdateId = snapshot == null ? 0 : snapshot.getLastUpdateId();
+    /*
+     * The snapshot thread gets its own copy of the boards, because the caller's boards might soon
+     * contain events that are still waiting to be appended and must not end up in a snapshot yet.
+     */
+    final Map<Long, Long> positions = chatLogs.ends();
+    final ScoreBoards snapshotStart = boards.copy();
+    final long updateId = lastUpdateId;
+    snapshotWriter.execute(() -> {
+      snapshotBoards = snapshotStart;
+      snapshotPositions.putAll(positions);
+      snapshotUpdateId = updateId;
+    });
+    // broken tails are cut off by now, so nothing moves under the compactor anymore
+    compactor.start();
+    return boards;
+  }
+
+  @Override
+  public void append(final List<ScoreEvent> events) throws IOException {
+    chatLogs.append(events);
+    unsynced = true;
+
+    for (final ScoreEvent event : events) {
+      appendedSinceSnapshot.add(event);
+      lastUpdateId = event.getUpdateId();
+    }
+
+    eventsSinceSnapshot += events.size();
+    if (eventsSinceSnapshot >= SNAPSHOT_INTERVAL) {
+      snapshot();
+    }
+  }
+
+  @Override
+  public void force() throws IOException {
+    chatLogs.force();
+    unsynced = false;
+  }
+
+  @Override
+  public void forEach(final long chatId, final Consumer<ScoreEvent> consumer) throws IOException {
+    final @Nullable ChatEventLog chatLog = chatLogs.find(chatId);
+    if (chatLog != null) {
+      chatLog.forEach(chatLog.start(), consumer);
+    }
+  }
+
+  @Override
+  public Map<String, Integer> scores(final long chatId) throws IOException {
+    return replay(chatId).scores();
+  }
+
+  @Override
+  public List<ScoreBoard.Win> lastWins(final long chatId, final int count) throws IOException {
+    return replay(chatId).lastWins(count);
+  }
+
+  /**
+   * Rebuilds the board of a chat from its checkpoint and what got logged after it.
+   */
+  private ScoreBoard replay(final long chatId) throws IOException {
+    final @Nullable ChatEventLog chatLog = chatLogs.find(chatId);
+    if (chatLog == null) {
+      return new ScoreBoard();
+    }
+    final @Nullable ChatCheckpoint checkpoint = checkpoints.load(chatLog);
+    final ScoreBoard board = checkpoint == null ? new ScoreBoard() : checkpoint.toBoard();
+    chatLog.forEach(checkpoint == null ? 0 : checkpoint.getOffset(), board::apply);
+    return board;
+  }
+
+  /**
+   * Leaves a fresh snapshot behind, which makes the next start instant, and closes the event log.
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      compactor.close(30, SECONDS);
+    } catch (final InterruptedException exception) {
+      BotLogger.warn("Got interrupted while waiting for the compaction to stop.", TAG, exception);
+      Thread.currentThread().interrupt();
+    }
+    try (final PartitionedEventLog log = chatLogs) {
+      if (!appendedSinceSnapshot.isEmpty()) {
+        snapshot();
+      }
+      snapshotWriter.shutdown();
+      try {
+        if (!snapshotWriter.awaitTermination(30, SECONDS)) {
+          BotLogger.warn(TAG, "Gave up waiting for the last snapshot to be written.");
+        }
+      } catch (final InterruptedException exception) {
+        BotLogger.warn("Got interrupted while waiting for the last snapshot.", TAG, exception);
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Hands the events appended since the last snapshot together with the current end of their logs
+   * over to the snapshot thread, so the next startup only needs to replay what comes after it. The
+   * log gets synced first, a snapshot must never point at events that could still be lost.
+   */
+  private void snapshot() {
+    eventsSinceSnapshot = 0;
+    try {
+      if (unsynced) {
+        force();
+      }
+    } catch (final IOException exception) {
+      /*
+       * The events are appended already, failing here would make the processor append them again.
+       * They wait for the next interval instead.
+       */
+      BotLogger.warn("Could not sync the event log for a snapshot. Trying again later.", TAG,
+          exception);
+      return;
+    }
+
+    final Map<Long, Long> positions = new HashMap<>();
+    for (final ScoreEvent event : appendedSinceSnapshot) {
+      final Long chatId = Long.valueOf(event.getChatId());
+      if (!positions.containsKey(chatId)) {
+        final @Nullable ChatEventLog chatLog = chatLogs.find(event.getChatId());
+        if (chatLog != null) {
+          positions.put(chatId, Long.valueOf(chatLog.end()));
+        }
+      }
+    }
+    pendingChanges.add(new Changes(appendedSinceSnapshot, positions, lastUpdateId));
+    appendedSinceSnapshot = new ArrayList<>();
+    snapshotWriter.execute(this::writeSnapshot);
+  }
+
+  /**
+   * Runs on the snapshot thread.
+   */
+  private void writeSnapshot() {
+    @Nullable
+    Changes changes = pendingChanges.poll();
+    if (changes == null) {
+      // an earlier run took care of these already
+      return;
+    }
+    while (changes != null) {
+      changes.events.forEach(snapshotBoards::apply);
+      snapshotPositions.putAll(changes.positions);
+      snapshotUpdateId = changes.lastUpdateId;
+      changes = pendingChanges.poll();
+    }
+    try {
+      snapshots.write(new ScoreSnapshot(ScoreSnapshot.VERSION, new HashMap<>(snapshotPositions),
+          snapshotUpdateId, snapshotBoards.scores(), snapshotBoards.wins(),
+          snapshotBoards.buckets()));
+    } catch (final IOException | RuntimeException exception) {
+      BotLogger.warn(
+          "Failed to write a snapshot. Not fatal, the next startup just has to replay more of the event log.",
+          TAG, exception);
+    }
+  }
+}
@@ -0,0 +1,28 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+/**
+ * How updates get from Telegram to the bot. Set it with the environment variable
+ * <code>SCOBO_INGESTION</code>.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public enum IngestionMode {
+
+  /**
+   * The bot keeps asking Telegram for new updates. Works from anywhere, but costs a round trip per
+   * batch of updates and only one process may poll at a time. This is the default.
+   */
+  POLLING,
+
+  /**
+   * Telegram posts every update to a HTTPS endpoint of the bot. Needs a public URL in
+   * <code>SCOBO_WEBHOOK_URL</code> and listens on <code>PORT</code>, which is what a Heroku web
+   * dyno gets. Without the URL the bot polls instead.
+   */
+  WEBHOOK
+}
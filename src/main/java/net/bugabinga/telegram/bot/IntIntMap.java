@@ -0,0 +1,212 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+/**
+ * A map from positive ints to ints, stored in two plain arrays with open addressing. Nothing gets
+ * boxed and changing a value that is already there never allocates.
+ *
+ * <p>
+ * Not thread safe.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public class IntIntMap {
+
+  /**
+   * Marks a free slot. This is why keys have to be positive.
+   */
+  private static final int FREE = 0;
+
+  private static final int MIN_CAPACITY = 4;
+
+  /**
+   * Callback for {@link IntIntMap#forEach(Visitor)}.
+   */
+  @FunctionalInterface
+  public interface Visitor {
+
+    /**
+     * @param key A key of the map.
+     * @param value Its value.
+     */
+    void visit(int key, int value);
+  }
+
+  private int[] keys;
+  private int[] values;
+  private int size;
+
+  /**
+   * Creates an empty map.
+   */
+  public IntIntMap() {
+    keys = new int[MIN_CAPACITY];
+    values = new int[MIN_CAPACITY];
+  }
+
+  private IntIntMap(final IntIntMap other) {
+    keys = other.keys.clone();
+    values = other.values.clone();
+    size = other.size;
+  }
+
+  /**
+   * @param key A positive key.
+   * @param missing Returned if there is no value for the key.
+   * @return The value of the key or <code>missing</code>.
+   */
+  public int get(final int key, final int missing) {
+    final int slot = find(key);
+    return keys[slot] == FREE ? missing : values[slot];
+  }
+
+  /**
+   * @param key A positive key.
+   * @return <code>true</code> if the key has a value.
+   */
+  public boolean containsKey(final int key) {
+    return keys[find(key)] != FREE;
+  }
+
+  /**
+   * @param key A positive key.
+   * @param value Replaces the value of the key.
+   */
+  public void put(final int key, final int value) {
+    final int slot = insert(key);
+    values[slot] = value;
+  }
+
+  /**
+   * @param key A positive key.
+   * @param delta Added to the value of the key, which counts as 0 if there is none yet.
+   * @return The new value.
+   */
+  public int add(final int key, final int delta) {
+    final int slot = insert(key);
+    values[slot] += delta;
+    return values[slot];
+  }
+
+  /**
+   * @param key A positive key.
+   * @return <code>true</code> if the key had a value.
+   */
+  public boolean remove(final int key) {
+    int slot = find(key);
+    if (keys[slot] == FREE) {
+      return false;
+    }
+    /*
+     * Instead of leaving a tombstone behind, every following key of the same run that would be
+     * found at or before the freed slot gets moved back into it.
+     */
+    final int mask = keys.length - 1;
+    int next = slot;
+    while (true) {
+      next = (next + 1) & mask;
+      final int moved = keys[next];
+      if (moved == FREE) {
+        break;
+      }
+      final int home = slotOf(moved);
+      if (((next - home) & mask) >= ((next - slot) & mask)) {
+        keys[slot] = moved;
+        values[slot] = values[next];
+        slot = next;
+      }
+    }
+    keys[slot] = FREE;
+    values[slot] = 0;
+    size--;
+    return true;
+  }
+
+  /**
+   * @return Number of keys with a value.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @param visitor Gets every key and its value, in no particular order.
+   */
+  public void forEach(final Visitor visitor) {
+    for (int slot = 0; slot < keys.length; slot++) {
+      if (keys[slot] != FREE) {
+        visitor.visit(keys[slot], values[slot]);
+      }
+    }
+  }
+
+  /**
+   * @return An independent map with the same content.
+   */
+  public IntIntMap copy() {
+    return new IntIntMap(this);
+  }
+
+  /**
+   * @return Bytes taken by the arrays of this map, roughly.
+   */
+  public long footprint() {
+    return 8L * keys.length;
+  }
+
+  /**
+   * @return The slot of the key, or the free slot where it would go.
+   */
+  private int find(final int key) {
+    if (key <= FREE) {
+      throw new IllegalArgumentException("Keys must be positive, got " + key + ".");
+    }
+    final int mask = keys.length - 1;
+    int slot = slotOf(key);
+    while (keys[slot] != FREE && keys[slot] != key) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  /**
+   * @return The slot of the key, which gets added with a value of 0 if it is not there yet.
+   */
+  private int insert(final int key) {
+    int slot = find(key);
+    if (keys[slot] == FREE) {
+      if (4 * (size + 1) > 3 * keys.length) {
+        grow();
+        slot = find(key);
+      }
+      keys[slot] = key;
+      size++;
+    }
+    return slot;
+  }
+
+  private void grow() {
+    final int[] oldKeys = keys;
+    final int[] oldValues = values;
+    keys = new int[2 * oldKeys.length];
+    values = new int[2 * oldKeys.length];
+    for (int slot = 0; slot < oldKeys.length; slot++) {
+      if (oldKeys[slot] != FREE) {
+        final int newSlot = find(oldKeys[slot]);
+        keys[newSlot] = oldKeys[slot];
+        values[newSlot] = oldValues[slot];
+      }
+    }
+  }
+
+  /**
+   * Fibonacci hashing, so keys that are close to each other still spread over the table.
+   */
+  private int slotOf(final int key) {
+    return (key * 0x9E3779B9) >>> (32 - Integer.numberOfTrailingZeros(keys.length));
+  }
+}
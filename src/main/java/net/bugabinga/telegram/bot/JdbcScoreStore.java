@@ -0,0 +1,358 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import static java.lang.String.format;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.telegram.telegrambots.logging.BotLogger;
+
+/**
+ * Keeps the events in a SQL database, next to tables with the current scores, undo stacks and
+ * points per day of every chat. Those tables are indexed by chat, so the scores or the wins that
+ * can be undone are a single lookup and a restart does not need to replay anything.
+ *
+ * <p>
+ * The SQL is kept plain enough for any database with a JDBC driver. By default an embedded H2
+ * database in the data directory is used, a Postgres on Heroku only needs a different URL.
+ *
+ * <p>
+ * Events and the tables derived from them are written in one transaction per batch.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public class JdbcScoreStore implements ScoreStore {
+
+  /**
+   * Namespace for logger.
+   */
+  private static final String TAG = "JDBC_SCORE_STORE";
+
+  private static final BotLog.Sampler UNKNOWN_KIND = new BotLog.Sampler(1000);
+
+  private static final String[] SCHEMA = {
+      "CREATE TABLE IF NOT EXISTS score_events (seq BIGINT PRIMARY KEY, chat_id BIGINT NOT NULL, kind SMALLINT NOT NULL, user_id BIGINT NOT NULL, user_name VARCHAR(255) NOT NULL, update_id BIGINT NOT NULL, ts BIGINT NOT NULL, target BIGINT NOT NULL)",
+      "CREATE INDEX IF NOT EXISTS score_events_by_chat ON score_events (chat_id, seq)",
+      "CREATE TABLE IF NOT EXISTS scores (chat_id BIGINT NOT NULL, user_name VARCHAR(255) NOT NULL, score INT NOT NULL, PRIMARY KEY (chat_id, user_name))",
+      "CREATE TABLE IF NOT EXISTS wins (chat_id BIGINT NOT NULL, position INT NOT NULL, user_id BIGINT NOT NULL, user_name VARCHAR(255) NOT NULL, update_id BIGINT NOT NULL, ts BIGINT NOT NULL, PRIMARY KEY (chat_id, position))",
+      // databases from before wins knew their time; their wins count for day 0, which has expired
+      "ALTER TABLE wins ADD COLUMN IF NOT EXISTS ts BIGINT NOT NULL DEFAULT 0",
+      "CREATE TABLE IF NOT EXISTS score_buckets (chat_id BIGINT NOT NULL, day INT NOT NULL, user_name VARCHAR(255) NOT NULL, points INT NOT NULL, PRIMARY KEY (chat_id, day, user_name))"};
+
+  private final String url;
+
+  /**
+   * Only used by the processor thread.
+   */
+  private final Connection writer;
+
+  /**
+   * Shared by all readers, one at a time.
+   */
+  private final Connection reader;
+
+  /**
+   * The state of every chat as it is in the database, so a batch only needs to write the rows of
+   * the chats it changed. Only touched by the processor thread.
+   */
+  private ScoreBoards boards = new ScoreBoards();
+
+  private long nextSequence;
+
+  /**
+   * @param url JDBC URL of the database.
+   * @param user Database user.
+   * @param password Password of the database user.
+   * @throws IOException If the database cannot be opened or the tables cannot be created.
+   */
+  public JdbcScoreStore(final String url, final String user, final String password)
+      throws IOException {
+    this.url = url;
+    try {
+      writer = DriverManager.getConnection(url, user, password);
+      reader = DriverManager.getConnection(url, user, password);
+      try (final Statement statement = writer.createStatement()) {
+        for (final String sql : SCHEMA) {
+          statement.execute(sql);
+        }
+        try (final ResultSet result =
+            statement.executeQuery("SELECT COALESCE(MAX(seq), 0) FROM score_events")) {
+          result.next();
+          nextSequence = result.getLong(1) + 1;
+        }
+      }
+      writer.setAutoCommit(false);
+    } catch (final SQLException exception) {
+      throw new IOException("Could not open the database " + url + ".", exception);
+    }
+    BotLogger.info(TAG, format("Opened %s, which holds %d events.", url,
+        Long.valueOf(nextSequence - 1)));
+  }
+
+  @Override
+  public ScoreBoards load() throws IOException {
+    final Map<Long, Map<String, Integer>> scores = new HashMap<>();
+    final Map<Long, List<ScoreBoard.Win>> wins = new HashMap<>();
+    final Map<Long, Map<Long, Map<String, Integer>>> buckets = new HashMap<>();
+    synchronized (reader) {
+      try (final Statement statement = reader.createStatement()) {
+        try (final ResultSet result =
+            statement.executeQuery("SELECT chat_id, user_name, score FROM scores")) {
+          while (result.next()) {
+            scores.computeIfAbsent(Long.valueOf(result.getLong(1)), __ -> new HashMap<>())
+                .put(result.getString(2), Integer.valueOf(result.getInt(3)));
+          }
+        }
+        try (final ResultSet result = statement.executeQuery(
+            "SELECT chat_id, user_id, user_name, update_id, ts FROM wins ORDER BY chat_id, position")) {
+          while (result.next()) {
+            wins.computeIfAbsent(Long.valueOf(result.getLong(1)), __ -> new ArrayList<>())
+                .add(new ScoreBoard.Win(result.getLong(2), result.getString(3), result.getLong(4),
+                    result.getLong(5)));
+          }
+        }
+        try (final ResultSet result =
+            statement.executeQuery("SELECT chat_id, day, user_name, points FROM score_buckets")) {
+          while (result.next()) {
+            buckets.computeIfAbsent(Long.valueOf(result.getLong(1)), __ -> new HashMap<>())
+                .computeIfAbsent(Long.valueOf(result.getInt(2)), __ -> new HashMap<>())
+                .put(result.getString(3), Integer.valueOf(result.getInt(4)));
+          }
+        }
+      } catch (final SQLException exception) {
+        throw new IOException("Could not load the score boards from " + url + ".", exception);
+      }
+    }
+    boards = ScoreBoards.restore(scores, wins, buckets);
+    BotLogger.info(TAG, format("Loaded %d score boards.", Integer.valueOf(boards.size())));
+    return boards.copy();
+  }
+
+  @Override
+  public void append(final List<ScoreEvent> events) throws IOException {
+    // the events go to copies first, the boards may only change once the database has them too
+    final ScoreBoards changed = new ScoreBoards();
+    final Set<Long> changedChats = new LinkedHashSet<>();
+    long sequence = nextSequence;
+    try {
+      try (final PreparedStatement insert = writer.prepareStatement(
+          "INSERT INTO score_events (seq, chat_id, kind, user_id, user_name, update_id, ts, target) VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
+        for (final ScoreEvent event : events) {
+          insert.setLong(1, sequence++);
+          insert.setLong(2, event.getChatId());
+          insert.setShort(3, event.getKind().id);
+          insert.setLong(4, event.getUserId());
+          insert.setString(5, event.getUserName());
+          insert.setLong(6, event.getUpdateId());
+          insert.setLong(7, event.getTimestamp());
+          insert.setLong(8, event.getTarget());
+          insert.addBatch();
+
+          final long chatId = event.getChatId();
+          if (changedChats.add(Long.valueOf(chatId))) {
+            final @Nullable ScoreBoard board = boards.find(chatId);
+            if (board != null) {
+              changed.put(chatId, board.copy());
+            }
+          }
+          changed.apply(event);
+        }
+        insert.executeBatch();
+      }
+
+      for (final Long chatId : changedChats) {
+        writeBoard(chatId, changed.of(chatId.longValue()));
+      }
+      writer.commit();
+    } catch (final SQLException exception) {
+      try {
+        writer.rollback();
+      } catch (final SQLException rollbackException) {
+        exception.addSuppressed(rollbackException);
+      }
+      throw new IOException("Could not store " + events.size() + " events in " + url + ".",
+          exception);
+    }
+    nextSequence = sequence;
+    boards.putAll(changed);
+  }
+
+  /**
+   * Replaces the rows of a chat in the derived tables. A chat has a handful of people and at most
+   * {@link ScoreBoard#UNDO_DEPTH} wins, so this is cheap. Of the points per day only the days that
+   * changed get written, which is usually just today, and the ones that expired get deleted.
+   */
+  private void writeBoard(final Long chatId, final ScoreBoard board) throws SQLException {
+    final long chat = chatId.longValue();
+    try (final PreparedStatement delete =
+        writer.prepareStatement("DELETE FROM scores WHERE chat_id = ?")) {
+      delete.setLong(1, chat);
+      delete.executeUpdate();
+    }
+    try (final PreparedStatement insert = writer
+        .prepareStatement("INSERT INTO scores (chat_id, user_name, score) VALUES (?, ?, ?)")) {
+      for (final Map.Entry<String, Integer> score : board.scores().entrySet()) {
+        insert.setLong(1, chat);
+        insert.setString(2, score.getKey());
+        insert.setInt(3, score.getValue().intValue());
+        insert.addBatch();
+      }
+      insert.executeBatch();
+    }
+
+    try (final PreparedStatement delete =
+        writer.prepareStatement("DELETE FROM wins WHERE chat_id = ?")) {
+      delete.setLong(1, chat);
+      delete.executeUpdate();
+    }
+    try (final PreparedStatement insert = writer.prepareStatement(
+        "INSERT INTO wins (chat_id, position, user_id, user_name, update_id, ts) VALUES (?, ?, ?, ?, ?, ?)")) {
+      int position = 0;
+      for (final ScoreBoard.Win win : board.wins()) {
+        insert.setLong(1, chat);
+        insert.setInt(2, position++);
+        insert.setLong(3, win.getUserId());
+        insert.setString(4, win.getUserName());
+        insert.setLong(5, win.getUpdateId());
+        insert.setLong(6, win.getTimestamp());
+        insert.addBatch();
+      }
+      insert.executeBatch();
+    }
+
+    final int firstChangedDay = board.takeFirstChangedDay();
+    try (final PreparedStatement delete = writer
+        .prepareStatement("DELETE FROM score_buckets WHERE chat_id = ? AND (day >= ? OR day < ?)")) {
+      delete.setLong(1, chat);
+      delete.setInt(2, firstChangedDay);
+      delete.setInt(3, board.oldestDay());
+      delete.executeUpdate();
+    }
+    try (final PreparedStatement insert = writer.prepareStatement(
+        "INSERT INTO score_buckets (chat_id, day, user_name, points) VALUES (?, ?, ?, ?)")) {
+      for (final Map.Entry<Long, Map<String, Integer>> day : board.buckets(firstChangedDay)
+          .entrySet()) {
+        for (final Map.Entry<String, Integer> points : day.getValue().entrySet()) {
+          insert.setLong(1, chat);
+          insert.setInt(2, day.getKey().intValue());
+          insert.setString(3, points.getKey());
+          insert.setInt(4, points.getValue().intValue());
+          insert.addBatch();
+        }
+      }
+      insert.executeBatch();
+    }
+  }
+
+  /**
+   * Every batch is committed on its own. How durable a commit is, is up to the database. An
+   * embedded H2 writes its commits lazily, so it gets asked to sync here.
+   */
+  @Override
+  public void force() throws IOException {
+    if (!url.startsWith("jdbc:h2:")) {
+      return;
+    }
+    try (final Statement statement = writer.createStatement()) {
+      statement.execute("CHECKPOINT SYNC");
+    } catch (final SQLException exception) {
+      throw new IOException("Could not sync " + url + ".", exception);
+    }
+  }
+
+  @Override
+  public void forEach(final long chatId, final Consumer<ScoreEvent> consumer) throws IOException {
+    synchronized (reader) {
+      try (final PreparedStatement select = reader.prepareStatement(
+          "SELECT kind, user_id, user_name, update_id, ts, target FROM score_events WHERE chat_id = ? ORDER BY seq")) {
+        select.setLong(1, chatId);
+        try (final ResultSet result = select.executeQuery()) {
+          while (result.next()) {
+            final ScoreEvent.@Nullable Kind kind = ScoreEvent.Kind.of((byte) result.getShort(1));
+            if (kind == null) {
+              final short unknown = result.getShort(1);
+              UNKNOWN_KIND.warn(TAG, () -> "Skipping an event of unknown kind " + unknown
+                  + " in chat " + chatId + ".");
+              continue;
+            }
+            consumer.accept(new ScoreEvent(kind, chatId, result.getLong(2), result.getString(3),
+                result.getLong(4), result.getLong(5), result.getLong(6), null));
+          }
+        }
+      } catch (final SQLException exception) {
+        throw new IOException("Could not read the events of chat " + chatId + ".", exception);
+      }
+    }
+  }
+
+  @Override
+  public Map<String, Integer> scores(final long chatId) throws IOException {
+    final Map<String, Integer> scores = new HashMap<>();
+    synchronized (reader) {
+      try (final PreparedStatement select =
+          reader.prepareStatement("SELECT user_name, score FROM scores WHERE chat_id = ?")) {
+        select.setLong(1, chatId);
+        try (final ResultSet result = select.executeQuery()) {
+          while (result.next()) {
+            scores.put(result.getString(1), Integer.valueOf(result.getInt(2)));
+          }
+        }
+      } catch (final SQLException exception) {
+        throw new IOException("Could not read the scores of chat " + chatId + ".", exception);
+      }
+    }
+    return scores;
+  }
+
+  @Override
+  public List<ScoreBoard.Win> lastWins(final long chatId, final int count) throws IOException {
+    final List<ScoreBoard.Win> wins = new ArrayList<>();
+    synchronized (reader) {
+      try (final PreparedStatement select = reader.prepareStatement(
+          "SELECT user_id, user_name, update_id, ts FROM wins WHERE chat_id = ? AND position < ? ORDER BY position")) {
+        select.setLong(1, chatId);
+        select.setInt(2, count);
+        try (final ResultSet result = select.executeQuery()) {
+          while (result.next()) {
+            wins.add(new ScoreBoard.Win(result.getLong(1), result.getString(2), result.getLong(3),
+                result.getLong(4)));
+          }
+        }
+      } catch (final SQLException exception) {
+        throw new IOException("Could not read the wins of chat " + chatId + ".", exception);
+      }
+    }
+    return wins;
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      try {
+        reader.close();
+      } finally {
+        writer.close();
+      }
+    } catch (final SQLException exception) {
+      throw new IOException("Could not close " + url + ".", exception);
+    }
+  }
+}
@@ -0,0 +1,114 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how long something took in buckets of microseconds. Every power of two is split into
+ * eight buckets, so a percentile is off by at most an eighth. Recording is a couple of shifts and
+ * an add, it never allocates or locks, so it is fine on the hot path of every update.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public final class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 3;
+
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+  /**
+   * The last bucket holds everything from 2^40 microseconds on, which is about 12 days.
+   */
+  private static final int BUCKETS = (40 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+  private final LongAdder[] counts = new LongAdder[BUCKETS];
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sumNanos = new LongAdder();
+
+  /**
+   * An empty histogram.
+   */
+  public LatencyHistogram() {
+    for (int bucket = 0; bucket < BUCKETS; bucket++) {
+      counts[bucket] = new LongAdder();
+    }
+  }
+
+  /**
+   * @param nanos How long it took, usually the difference of two {@link System#nanoTime()}.
+   */
+  public void record(final long nanos) {
+    final long clamped = Math.max(0, nanos);
+    counts[bucketOf(NANOSECONDS.toMicros(clamped))].increment();
+    count.increment();
+    sumNanos.add(clamped);
+  }
+
+  /**
+   * @return How often something was recorded.
+   */
+  public long count() {
+    return count.sum();
+  }
+
+  /**
+   * @return All recorded durations added up, in seconds.
+   */
+  public double sumSeconds() {
+    return sumNanos.sum() / 1e9;
+  }
+
+  /**
+   * @param quantile Between 0 and 1, like 0.99 for the 99th percentile.
+   * @return The upper bound of the bucket the quantile lies in, in seconds. 0 if nothing was
+   *         recorded yet.
+   */
+  public double quantileSeconds(final double quantile) {
+    final long[] snapshot = new long[BUCKETS];
+    long total = 0;
+    for (int bucket = 0; bucket < BUCKETS; bucket++) {
+      snapshot[bucket] = counts[bucket].sum();
+      total += snapshot[bucket];
+    }
+    if (total == 0) {
+      return 0;
+    }
+    final long rank = Math.max(1, (long) Math.ceil(quantile * total));
+    long seen = 0;
+    for (int bucket = 0; bucket < BUCKETS; bucket++) {
+      seen += snapshot[bucket];
+      if (seen >= rank) {
+        return upperBoundMicros(bucket) / 1e6;
+      }
+    }
+    return upperBoundMicros(BUCKETS - 1) / 1e6;
+  }
+
+  /**
+   * Below {@link #SUB_BUCKETS} every microsecond gets its own bucket, above the three bits after
+   * the highest one pick the bucket within its power of two.
+   */
+  private static int bucketOf(final long micros) {
+    if (micros < SUB_BUCKETS) {
+      return (int) micros;
+    }
+    final int exponent = 63 - Long.numberOfLeadingZeros(micros);
+    final int subBucket = (int) (micros >>> exponent - SUB_BUCKET_BITS) & SUB_BUCKETS - 1;
+    return Math.min(BUCKETS - 1, (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket);
+  }
+
+  private static long upperBoundMicros(final int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket + 1;
+    }
+    final int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    final int subBucket = bucket % SUB_BUCKETS;
+    return (long) (SUB_BUCKETS + subBucket + 1) << exponent - SUB_BUCKET_BITS;
+  }
+}
@@ -0,0 +1,133 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * A map from longs to objects, stored in two plain arrays with open addressing. Looking up a key
+ * never boxes it, which matters for chat ids that get looked up with every update.
+ *
+ * <p>
+ * Keys cannot be removed, the map only grows. Not thread safe.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ * @param <V> Type of the values.
+ */
+public class LongObjectMap<V> {
+
+  private static final int MIN_CAPACITY = 8;
+
+  /**
+   * Callback for {@link LongObjectMap#forEach(Visitor)}.
+   *
+   * @param <V> Type of the values.
+   */
+  @FunctionalInterface
+  public interface Visitor<V> {
+
+    /**
+     * @param key A key of the map.
+     * @param value Its value.
+     */
+    void visit(long key, V value);
+  }
+
+  private long[] keys;
+
+  /**
+   * A slot is free if its value is <code>null</code>, so every long can be a key.
+   */
+  private @Nullable Object[] values;
+
+  private int size;
+
+  /**
+   * Creates an empty map.
+   */
+  public LongObjectMap() {
+    keys = new long[MIN_CAPACITY];
+    values = new Object[MIN_CAPACITY];
+  }
+
+  /**
+   * @param key Any key.
+   * @return The value of the key or <code>null</code> if there is none.
+   */
+  @SuppressWarnings("unchecked")
+  public @Nullable V get(final long key) {
+    return (V) values[find(key)];
+  }
+
+  /**
+   * @param key Any key.
+   * @param value Replaces the value of the key.
+   * @return The previous value of the key or <code>null</code> if there was none.
+   */
+  @SuppressWarnings("unchecked")
+  public @Nullable V put(final long key, final V value) {
+    int slot = find(key);
+    final @Nullable Object previous = values[slot];
+    if (previous == null) {
+      if (4 * (size + 1) > 3 * keys.length) {
+        grow();
+        slot = find(key);
+      }
+      keys[slot] = key;
+      size++;
+    }
+    values[slot] = value;
+    return (V) previous;
+  }
+
+  /**
+   * @return Number of keys with a value.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @param visitor Gets every key and its value, in no particular order.
+   */
+  @SuppressWarnings("unchecked")
+  public void forEach(final Visitor<V> visitor) {
+    for (int slot = 0; slot < keys.length; slot++) {
+      final @Nullable Object value = values[slot];
+      if (value != null) {
+        visitor.visit(keys[slot], (V) value);
+      }
+    }
+  }
+
+  /**
+   * @return The slot of the key, or the free slot where it would go.
+   */
+  private int find(final long key) {
+    final int mask = keys.length - 1;
+    final int shift = 64 - Integer.numberOfTrailingZeros(keys.length);
+    // Fibonacci hashing, so chat ids that are close to each other still spread over the table
+    int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+    while (values[slot] != null && keys[slot] != key) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private void grow() {
+    final long[] oldKeys = keys;
+    final @Nullable Object[] oldValues = values;
+    keys = new long[2 * oldKeys.length];
+    values = new Object[2 * oldKeys.length];
+    for (int slot = 0; slot < oldKeys.length; slot++) {
+      if (oldValues[slot] != null) {
+        final int newSlot = find(oldKeys[slot]);
+        keys[newSlot] = oldKeys[slot];
+        values[newSlot] = oldValues[slot];
+      }
+    }
+  }
+}
@@ -0,0 +1,160 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardOpenOption.READ;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.telegram.telegrambots.logging.BotLogger;
+
+/**
+ * Reads {@link ScoreEvent}s from one segment of a {@link ChatEventLog} by mapping it into memory.
+ * Records are decoded straight out of the page cache, nothing gets copied into an intermediate
+ * buffer. The segment can be walked front to back or back to front.
+ *
+ * <p>
+ * A segment has to fit into one mapping, so it may not be larger than 2 GiB, which is far beyond
+ * any sane segment size.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public class MappedEventReader {
+
+  /**
+   * Namespace for logger.
+   */
+  private static final String TAG = "MAPPED_EVENT_READER";
+
+  private final Path path;
+  private final MappedByteBuffer map;
+  private final int start;
+  private final ScoreEventCodec.Decoder decoder = new ScoreEventCodec.Decoder();
+
+  /**
+   * Offset right behind the last complete record that was read forwards.
+   */
+  private int position;
+
+  /**
+   * Offsets of all complete records, only collected once reading backwards starts.
+   */
+  private int @Nullable [] recordStarts;
+  private int recordCount;
+  private int backwards;
+
+  /**
+   * @param path The segment.
+   * @param offset Where to start reading. Has to be the start of a record.
+   * @param limit Where to stop reading. Everything behind it might still be in the middle of
+   *        being written by someone else.
+   * @throws IOException If the file cannot be mapped.
+   */
+  public MappedEventReader(final Path path, final long offset, final long limit)
+      throws IOException {
+    this.path = path;
+    try (final FileChannel channel = FileChannel.open(path, READ)) {
+      final long size = Math.min(channel.size(), limit);
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException(path + " is too large to be mapped into memory.");
+      }
+      // the mapping stays valid after the channel is closed
+      map = channel.map(READ_ONLY, 0, size);
+    }
+    start = (int) Math.min(offset, map.limit());
+    position = start;
+  }
+
+  /**
+   * Broken records with a sane length get skipped. If the segment ends with only half a record
+   * (because we crashed while writing it), reading stops in front of it.
+   *
+   * @return The next event or <code>null</code> if there are no more complete records.
+   */
+  public @Nullable ScoreEvent next() {
+    map.position(position);
+    while (true) {
+      final int recordSize = ScoreEventCodec.peekRecordSize(map);
+
+      if (recordSize == -2) {
+        BotLogger.error(TAG, "Found garbage instead of a record at offset " + position + " of "
+            + path + ". Ignoring the rest of the segment.");
+        return null;
+      }
+
+      if (recordSize == -1 || map.remaining() < recordSize) {
+        if (map.hasRemaining()) {
+          BotLogger.warn(TAG, "The segment " + path + " ends with an incomplete record at offset "
+              + position + ". Was the bot killed while writing it?");
+        }
+        return null;
+      }
+
+      final @Nullable ScoreEvent event = decoder.decode(map);
+      position += recordSize;
+      if (event == null) {
+        BotLogger.error(TAG,
+            "Skipping a broken record in front of offset " + position + " of " + path + ".");
+        continue;
+      }
+      return event;
+    }
+  }
+
+  /**
+   * Walks from the last complete record towards the offset given to the constructor. The first
+   * call has to find the start of every record, which only needs to look at their length prefix.
+   *
+   * @return The previous event or <code>null</code> if the offset is reached.
+   */
+  public @Nullable ScoreEvent previous() {
+    int[] starts = recordStarts;
+    if (starts == null) {
+      starts = findRecordStarts();
+      recordStarts = starts;
+      backwards = recordCount;
+    }
+
+    while (backwards > 0) {
+      map.position(starts[--backwards]);
+      final @Nullable ScoreEvent event = decoder.decode(map);
+      if (event != null) {
+        return event;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return Offset right behind the last complete record that was read forwards.
+   */
+  public long position() {
+    return position;
+  }
+
+  private int[] findRecordStarts() {
+    int[] starts = new int[64];
+    int offset = start;
+    while (true) {
+      map.position(offset);
+      final int recordSize = ScoreEventCodec.peekRecordSize(map);
+      if (recordSize < 0 || map.remaining() < recordSize) {
+        return starts;
+      }
+      if (recordCount == starts.length) {
+        starts = Arrays.copyOf(starts, 2 * starts.length);
+      }
+      starts[recordCount++] = offset;
+      offset += recordSize;
+    }
+  }
+}
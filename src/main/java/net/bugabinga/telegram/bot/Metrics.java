@@ -0,0 +1,372 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanNotificationInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ObjectName;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.telegram.telegrambots.logging.BotLogger;
+
+/**
+ * Counters, gauges and latency histograms of the bot. Whoever measures something asks for its
+ * metric once and keeps it, so the hot path never looks anything up.
+ *
+ * <p>
+ * A metric may carry one label, like the command a reply latency belongs to. The metrics can be
+ * read through JMX and as the text format Prometheus scrapes, see {@link MetricsServer}.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public final class Metrics {
+
+  /**
+   * Namespace for logger.
+   */
+  private static final String TAG = "METRICS";
+
+  private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+  /**
+   * One named value, maybe with a label.
+   */
+  private abstract static class Metric {
+    final String name;
+    final String help;
+    final @Nullable String labelName;
+    final @Nullable String labelValue;
+
+    Metric(final String name, final String help, final @Nullable String labelName,
+        final @Nullable String labelValue) {
+      this.name = name;
+      this.help = help;
+      this.labelName = labelName;
+      this.labelValue = labelValue;
+    }
+
+    abstract String type();
+
+    abstract void writeText(StringBuilder text);
+
+    abstract void putAttributes(Map<String, Object> attributes);
+
+    /**
+     * @param suffix Gets appended to the name, like "_count".
+     * @param extraLabel Another label inside the braces, like <code>quantile="0.99"</code>.
+     */
+    void writeLine(final StringBuilder text, final String suffix,
+        final @Nullable String extraLabel, final double value) {
+      text.append(name).append(suffix);
+      if (labelName != null || extraLabel != null) {
+        text.append('{');
+        if (labelName != null) {
+          text.append(labelName).append("=\"").append(labelValue).append('"');
+          if (extraLabel != null) {
+            text.append(',');
+          }
+        }
+        if (extraLabel != null) {
+          text.append(extraLabel);
+        }
+        text.append('}');
+      }
+      text.append(' ');
+      if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+        text.append((long) value);
+      } else {
+        text.append(value);
+      }
+      text.append('\n');
+    }
+
+    String attributeName() {
+      return labelValue == null ? name : name + "." + labelValue;
+    }
+  }
+
+  private static final class Counter extends Metric {
+    final LongAdder value = new LongAdder();
+
+    Counter(final String name, final String help, final @Nullable String labelName,
+        final @Nullable String labelValue) {
+      super(name, help, labelName, labelValue);
+    }
+
+    @Override
+    String type() {
+      return "counter";
+    }
+
+    @Override
+    void writeText(final StringBuilder text) {
+      writeLine(text, "", null, value.sum());
+    }
+
+    @Override
+    void putAttributes(final Map<String, Object> attributes) {
+      attributes.put(attributeName(), Long.valueOf(value.sum()));
+    }
+  }
+
+  private static final class Gauge extends Metric {
+    final DoubleSupplier value;
+
+    Gauge(final String name, final String help, final DoubleSupplier value) {
+      super(name, help, null, null);
+      this.value = value;
+    }
+
+    @Override
+    String type() {
+      return "gauge";
+    }
+
+    @Override
+    void writeText(final StringBuilder text) {
+      writeLine(text, "", null, value.getAsDouble());
+    }
+
+    @Override
+    void putAttributes(final Map<String, Object> attributes) {
+      attributes.put(attributeName(), Double.valueOf(value.getAsDouble()));
+    }
+  }
+
+  private static final class Histogram extends Metric {
+    final LatencyHistogram value = new LatencyHistogram();
+
+    Histogram(final String name, final String help, final @Nullable String labelName,
+        final @Nullable String labelValue) {
+      super(name, help, labelName, labelValue);
+    }
+
+    @Override
+    String type() {
+      return "summary";
+    }
+
+    @Override
+    void writeText(final StringBuilder text) {
+      for (final double quantile : QUANTILES) {
+        writeLine(text, "", "quantile=\"" + quantile + '"', value.quantileSeconds(quantile));
+      }
+      writeLine(text, "_sum", null, value.sumSeconds());
+      writeLine(text, "_count", null, value.count());
+    }
+
+    @Override
+    void putAttributes(final Map<String, Object> attributes) {
+      final String attributeName = attributeName();
+      for (final double quantile : QUANTILES) {
+        attributes.put(attributeName + ".p"
+            + BigDecimal.valueOf(quantile).movePointRight(2).stripTrailingZeros().toPlainString(),
+            Double.valueOf(value.quantileSeconds(quantile)));
+      }
+      attributes.put(attributeName + ".sum", Double.valueOf(value.sumSeconds()));
+      attributes.put(attributeName + ".count", Long.valueOf(value.count()));
+    }
+  }
+
+  /**
+   * Sorted by name first, so all metrics of a name end up next to each other in the text format.
+   */
+  private final Map<String, Metric> metrics = new ConcurrentSkipListMap<>();
+
+  private @Nullable ObjectName objectName;
+
+  /**
+   * @param name Like "scobo_updates_total".
+   * @param help What it counts.
+   * @return Goes up by one for every occurrence.
+   */
+  public LongAdder counter(final String name, final String help) {
+    return counter(name, help, null, null);
+  }
+
+  /**
+   * @param name Like "scobo_send_failures_total".
+   * @param help What it counts.
+   * @param labelName Like "reason".
+   * @param labelValue Like "rate_limited".
+   * @return Goes up by one for every occurrence.
+   */
+  public LongAdder counter(final String name, final String help,
+      final @Nullable String labelName, final @Nullable String labelValue) {
+    return ((Counter) metrics.computeIfAbsent(key(name, labelValue),
+        key -> new Counter(name, help, labelName, labelValue))).value;
+  }
+
+  /**
+   * @param name Like "scobo_queue_depth".
+   * @param help What it measures.
+   * @param value Gets asked whenever the metrics get read. Must be cheap and thread safe.
+   */
+  public void gauge(final String name, final String help, final DoubleSupplier value) {
+    metrics.put(key(name, null), new Gauge(name, help, value));
+  }
+
+  /**
+   * @param name Like "scobo_fsync_seconds".
+   * @param help What takes that long.
+   * @return Records how long it took.
+   */
+  public LatencyHistogram histogram(final String name, final String help) {
+    return histogram(name, help, null, null);
+  }
+
+  /**
+   * @param name Like "scobo_reply_seconds".
+   * @param help What takes that long.
+   * @param labelName Like "command".
+   * @param labelValue Like "board".
+   * @return Records how long it took.
+   */
+  public LatencyHistogram histogram(final String name, final String help,
+      final @Nullable String labelName, final @Nullable String labelValue) {
+    return ((Histogram) metrics.computeIfAbsent(key(name, labelValue),
+        key -> new Histogram(name, help, labelName, labelValue))).value;
+  }
+
+  private static String key(final String name, final @Nullable String labelValue) {
+    // a space sorts before anything that may be in a name
+    return labelValue == null ? name : name + ' ' + labelValue;
+  }
+
+  /**
+   * @return All metrics in the text format Prometheus scrapes.
+   */
+  public String toText() {
+    final StringBuilder text = new StringBuilder(4096);
+    @Nullable
+    String family = null;
+    for (final Metric metric : metrics.values()) {
+      if (!metric.name.equals(family)) {
+        family = metric.name;
+        text.append("# HELP ").append(metric.name).append(' ').append(metric.help).append('\n');
+        text.append("# TYPE ").append(metric.name).append(' ').append(metric.type())
+            .append('\n');
+      }
+      metric.writeText(text);
+    }
+    return text.toString();
+  }
+
+  /**
+   * @return Every value with its JMX attribute name, like "scobo_reply_seconds.board.p99".
+   */
+  Map<String, Object> attributes() {
+    final Map<String, Object> attributes = new TreeMap<>();
+    for (final Metric metric : metrics.values()) {
+      metric.putAttributes(attributes);
+    }
+    return attributes;
+  }
+
+  /**
+   * Makes the metrics show up in JConsole and friends. Failing to do so is not worth crashing.
+   *
+   * @param name Like "net.bugabinga.telegram.bot:type=Metrics".
+   */
+  public void registerMBean(final String name) {
+    try {
+      final ObjectName registered = new ObjectName(name);
+      ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(), registered);
+      objectName = registered;
+    } catch (final JMException exception) {
+      BotLogger.warn("Could not register the metrics with JMX.", TAG, exception);
+    }
+  }
+
+  /**
+   * Takes the metrics out of JMX again.
+   */
+  public void unregisterMBean() {
+    final @Nullable ObjectName registered = objectName;
+    if (registered == null) {
+      return;
+    }
+    try {
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(registered);
+    } catch (final JMException exception) {
+      BotLogger.warn("Could not unregister the metrics from JMX.", TAG, exception);
+    }
+    objectName = null;
+  }
+
+  /**
+   * Read only view of the metrics for JMX. Metrics can get added at any time, so the attributes
+   * get listed anew every time someone asks.
+   */
+  private final class MetricsMBean implements DynamicMBean {
+
+    @Override
+    public Object getAttribute(final String attribute) throws AttributeNotFoundException {
+      final @Nullable Object value = attributes().get(attribute);
+      if (value == null) {
+        throw new AttributeNotFoundException(attribute);
+      }
+      return value;
+    }
+
+    @Override
+    public void setAttribute(final Attribute attribute) throws AttributeNotFoundException {
+      throw new AttributeNotFoundException("The metrics are read only.");
+    }
+
+    @Override
+    public AttributeList getAttributes(final String[] names) {
+      final Map<String, Object> attributes = attributes();
+      final AttributeList list = new AttributeList();
+      for (final String name : names) {
+        final @Nullable Object value = attributes.get(name);
+        if (value != null) {
+          list.add(new Attribute(name, value));
+        }
+      }
+      return list;
+    }
+
+    @Override
+    public AttributeList setAttributes(final AttributeList attributes) {
+      return new AttributeList();
+    }
+
+    @Override
+    public @Nullable Object invoke(final String actionName, final Object[] params,
+        final String[] signature) {
+      return null;
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+      final Map<String, Object> attributes = attributes();
+      final MBeanAttributeInfo[] infos = new MBeanAttributeInfo[attributes.size()];
+      int index = 0;
+      for (final Map.Entry<String, Object> attribute : attributes.entrySet()) {
+        infos[index++] = new MBeanAttributeInfo(attribute.getKey(),
+            attribute.getValue().getClass().getName(), attribute.getKey(), true, false, false);
+      }
+      return new MBeanInfo(Metrics.class.getName(), "Metrics of the Score Board Bot.", infos,
+          null, new MBeanOperationInfo[0], new MBeanNotificationInfo[0]);
+    }
+  }
+}
@@ -0,0 +1,80 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.telegram.telegrambots.logging.BotLogger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Answers <code>GET /metrics</code> with the {@link Metrics} in the text format Prometheus
+ * scrapes. A scrape is rare and small, so a single thread does all of it.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public final class MetricsServer implements AutoCloseable {
+
+  /**
+   * Namespace for logger.
+   */
+  private static final String TAG = "METRICS_SERVER";
+
+  private final HttpServer server;
+  private final ExecutorService executor;
+
+  /**
+   * Starts listening right away.
+   *
+   * @param metrics What to answer with.
+   * @param port Where to listen, on all interfaces.
+   * @throws IOException If the port is taken.
+   */
+  public MetricsServer(final Metrics metrics, final int port) throws IOException {
+    server = HttpServer.create(new InetSocketAddress(port), 0);
+    executor = Executors.newSingleThreadExecutor(task -> {
+      final Thread thread = new Thread(task, "scobo-metrics");
+      thread.setDaemon(true);
+      return thread;
+    });
+    server.setExecutor(executor);
+    server.createContext("/metrics", exchange -> scrape(exchange, metrics));
+    server.start();
+    BotLogger.info(TAG, "Serving metrics on port " + port + ".");
+  }
+
+  private static void scrape(final HttpExchange exchange, final Metrics metrics)
+      throws IOException {
+    try {
+      if (!"GET".equals(exchange.getRequestMethod())) {
+        exchange.sendResponseHeaders(405, -1);
+        return;
+      }
+      final byte[] body = metrics.toText().getBytes(UTF_8);
+      exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4");
+      exchange.sendResponseHeaders(200, body.length);
+      try (final OutputStream response = exchange.getResponseBody()) {
+        response.write(body);
+      }
+    } finally {
+      exchange.close();
+    }
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+}
@@ -0,0 +1,427 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.telegram.telegrambots.api.methods.ActionType;
+import org.telegram.telegrambots.api.methods.BotApiMethod;
+import org.telegram.telegrambots.api.methods.send.SendChatAction;
+import org.telegram.telegrambots.bots.AbsSender;
+import org.telegram.telegrambots.exceptions.TelegramApiException;
+import org.telegram.telegrambots.exceptions.TelegramApiRequestException;
+import org.telegram.telegrambots.logging.BotLogger;
+
+/**
+ * Sends everything the bot has to say to Telegram without making anyone wait for it. Messages to
+ * one chat go out strictly in the order they were handed in, one at a time. Messages to different
+ * chats go out concurrently.
+ *
+ * <p>
+ * Telegram limits how fast a bot may send, in total and per chat, and answers with 429 once it is
+ * flooded. Both limits are modeled as token buckets, so messages get held back just long enough
+ * instead of bouncing off the API. Groups, which have negative ids, may get far fewer messages per
+ * minute than private chats. If Telegram still asks us to retry later, the chat pauses for as long
+ * as it says.
+ *
+ * <p>
+ * A chat can ask faster than it may be answered, so only a few messages may wait per chat. A
+ * message with a key replaces a waiting one with the same key, like a board that would be outdated
+ * by the time it goes out anyway. If a chat has too many waiting nonetheless, the oldest message
+ * with a key goes first, otherwise the new one does not get queued at all.
+ *
+ * <p>
+ * All the bookkeeping happens on a single scheduler thread, the actual HTTP calls on a small pool.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public class OutboundMessages {
+
+  /**
+   * Namespace for logger.
+   */
+  private static final String TAG = "OUTBOUND_MESSAGES";
+
+  /**
+   * Telegram shows a typing action for this long, or until the next message arrives.
+   */
+  private static final long TYPING_DURATION_NANOS = SECONDS.toNanos(5);
+
+  /**
+   * How often a message gets retried when Telegram says it is sent too fast.
+   */
+  private static final int MAX_RETRIES = 3;
+
+  private static final String TYPING_KEY = "typing";
+
+  private static final BotLog.Sampler DROPPED = new BotLog.Sampler(100);
+
+  /**
+   * A message waiting to be sent.
+   */
+  private static final class Pending {
+    BotApiMethod<?> method;
+    final @Nullable String key;
+    final CompletableFuture<Void> sent = new CompletableFuture<>();
+    int retries;
+
+    Pending(final BotApiMethod<?> method, final @Nullable String key) {
+      this.method = method;
+      this.key = key;
+    }
+  }
+
+  /**
+   * Everything that is going on for a single chat. Only touched by the scheduler thread.
+   */
+  private static final class Outbox {
+    final long chatId;
+    final Deque<Pending> queue = new ArrayDeque<>();
+    final TokenBucket bucket;
+    boolean busy;
+    @Nullable
+    ScheduledFuture<?> typing;
+    long typingSince;
+
+    Outbox(final long chatId, final TokenBucket bucket, final long now) {
+      this.chatId = chatId;
+      this.bucket = bucket;
+      typingSince = now - TYPING_DURATION_NANOS;
+    }
+  }
+
+  private final AbsSender sender;
+  private final ScheduledExecutorService scheduler;
+  private final ExecutorService senders;
+  private final TokenBucket global;
+  private final double groupPerSecond;
+  private final int groupBurst;
+  private final double privatePerSecond;
+  private final int privateBurst;
+  private final long typingDelayMillis;
+  private final int maxQueuedPerChat;
+  private final Map<Long, Outbox> outboxes = new HashMap<>();
+  private final LatencyHistogram executeLatency;
+  private final LongAdder retries;
+  private final LongAdder failures;
+  private final LongAdder dropped;
+
+  /**
+   * Idle chats get forgotten once there are this many outboxes.
+   */
+  private int forgetThreshold = 1024;
+
+  /**
+   * @param sender Does the actual HTTP calls, usually the bot itself.
+   * @param threads How many HTTP calls may be in flight at once.
+   * @param globalPerSecond How many messages the bot may send per second in total.
+   * @param groupPerSecond How many messages the bot may send per second to a single group.
+   * @param groupBurst How many messages may go to a single group at once after a quiet period.
+   * @param privatePerSecond How many messages the bot may send per second to a single person.
+   * @param privateBurst How many messages may go to a single person at once after a quiet period.
+   * @param typingDelayMillis Replies that are ready faster than this are not preceded by a typing
+   *        action.
+   * @param maxQueuedPerChat How many messages may wait to be sent to a single chat.
+   * @param metrics Where the latencies and failures of the HTTP calls go.
+   */
+  public OutboundMessages(final AbsSender sender, final int threads, final double globalPerSecond,
+      final double groupPerSecond, final int groupBurst, final double privatePerSecond,
+      final int privateBurst, final long typingDelayMillis, final int maxQueuedPerChat,
+      final Metrics metrics) {
+    this.sender = sender;
+    this.groupPerSecond = groupPerSecond;
+    this.groupBurst = groupBurst;
+    this.privatePerSecond = privatePerSecond;
+    this.privateBurst = privateBurst;
+    this.typingDelayMillis = typingDelayMillis;
+    this.maxQueuedPerChat = Math.max(1, maxQueuedPerChat);
+    global = new TokenBucket(globalPerSecond, (int) Math.ceil(globalPerSecond), System.nanoTime());
+    scheduler =
+        Executors.newSingleThreadScheduledExecutor(task -> new Thread(task, "scobo-outbound"));
+    senders = Executors.newFixedThreadPool(Math.max(1, threads),
+        task -> new Thread(task, "scobo-outbound-http"));
+    executeLatency = metrics.histogram("scobo_send_seconds",
+        "Time of one HTTP call to the Bot API, failed ones included.");
+    retries = metrics.counter("scobo_send_retries_total",
+        "Messages that Telegram asked to send again later.");
+    failures = metrics.counter("scobo_send_failures_total", "Messages that could not be sent.");
+    dropped = metrics.counter("scobo_sends_dropped_total",
+        "Messages that were dropped or replaced, because their chat had too many waiting.");
+  }
+
+  /**
+   * @param chatId The chat the method goes to.
+   * @param method Usually a message.
+   * @return Completes once Telegram accepted the method, or exceptionally if it did not or it got
+   *         dropped.
+   */
+  public CompletableFuture<Void> send(final long chatId, final BotApiMethod<?> method) {
+    return send(chatId, method, null);
+  }
+
+  /**
+   * @param chatId The chat the method goes to.
+   * @param method Usually a message.
+   * @param key If not <code>null</code>, a message with the same key that still waits gets this
+   *        method instead, and this one may be dropped when the chat has too many waiting.
+   * @return Completes once Telegram accepted the method, or exceptionally if it did not or it got
+   *         dropped.
+   */
+  public CompletableFuture<Void> send(final long chatId, final BotApiMethod<?> method,
+      final @Nullable String key) {
+    final Pending pending = new Pending(method, key);
+    scheduler.execute(() -> {
+      final Outbox outbox = outbox(chatId);
+      cancelTyping(outbox);
+      enqueue(outbox, pending);
+      if (!outbox.busy) {
+        sendNext(outbox);
+      }
+    });
+    return pending.sent;
+  }
+
+  /**
+   * Runs on the scheduler thread.
+   */
+  private void enqueue(final Outbox outbox, final Pending pending) {
+    final @Nullable String key = pending.key;
+    if (key != null) {
+      for (final Pending waiting : outbox.queue) {
+        if (key.equals(waiting.key)) {
+          waiting.method = pending.method;
+          waiting.sent.whenComplete((result, failure) -> {
+            if (failure == null) {
+              pending.sent.complete(null);
+            } else {
+              pending.sent.completeExceptionally(failure);
+            }
+          });
+          dropped.increment();
+          return;
+        }
+      }
+    }
+
+    if (outbox.queue.size() >= maxQueuedPerChat) {
+      Pending victim = pending;
+      for (final Pending waiting : outbox.queue) {
+        if (waiting.key != null) {
+          victim = waiting;
+          break;
+        }
+      }
+      dropped.increment();
+      DROPPED.warn(TAG, () -> format("Chat %d has %d messages waiting already. Dropping one.",
+          Long.valueOf(outbox.chatId), Integer.valueOf(outbox.queue.size())));
+      victim.sent.cancel(false);
+      if (victim == pending) {
+        return;
+      }
+      outbox.queue.remove(victim);
+    }
+    outbox.queue.add(pending);
+  }
+
+  /**
+   * Shows people that the bot is working on something. The typing action only goes out if no reply
+   * got sent to the chat within the typing delay, and only once for as long as Telegram shows it
+   * anyway.
+   *
+   * @param chatId The chat that waits for a reply.
+   */
+  public void announceTyping(final long chatId) {
+    scheduler.execute(() -> {
+      final Outbox outbox = outbox(chatId);
+      if (outbox.typing != null
+          || System.nanoTime() - outbox.typingSince < TYPING_DURATION_NANOS) {
+        return;
+      }
+      outbox.typing = scheduler.schedule(() -> {
+        outbox.typing = null;
+        if (outbox.busy || !outbox.queue.isEmpty()) {
+          // a reply is on its way already
+          return;
+        }
+        outbox.typingSince = System.nanoTime();
+        outbox.queue.add(new Pending(
+            new SendChatAction(Long.valueOf(chatId), ActionType.TYPING.toString()), TYPING_KEY));
+        sendNext(outbox);
+      }, typingDelayMillis, MILLISECONDS);
+    });
+  }
+
+  /**
+   * Sends whatever is still waiting and stops.
+   *
+   * @param timeout How long to wait for the messages to go out.
+   * @param unit Unit of the timeout.
+   * @return <code>false</code> if some messages did not make it out in time.
+   * @throws InterruptedException If waiting got interrupted.
+   */
+  public boolean close(final long timeout, final TimeUnit unit) throws InterruptedException {
+    final long deadline = System.nanoTime() + unit.toNanos(timeout);
+    final CompletableFuture<Void> drained = new CompletableFuture<>();
+    scheduler.execute(() -> awaitDrained(drained));
+    boolean done;
+    try {
+      drained.get(timeout, unit);
+      done = true;
+    } catch (final ExecutionException | TimeoutException exception) {
+      done = false;
+    }
+    scheduler.shutdownNow();
+    senders.shutdown();
+    done &= senders.awaitTermination(Math.max(0, deadline - System.nanoTime()), NANOSECONDS);
+    if (!done) {
+      BotLogger.error(TAG, "Not every message could be sent before closing.");
+    }
+    return done;
+  }
+
+  private void awaitDrained(final CompletableFuture<Void> drained) {
+    for (final Outbox outbox : outboxes.values()) {
+      if (outbox.busy || !outbox.queue.isEmpty()) {
+        scheduler.schedule(() -> awaitDrained(drained), 10, MILLISECONDS);
+        return;
+      }
+    }
+    drained.complete(null);
+  }
+
+  /**
+   * Sends the head of the queue of a chat as soon as both the global and the chat's limit allow
+   * it. Runs on the scheduler thread.
+   */
+  private void sendNext(final Outbox outbox) {
+    final @Nullable Pending pending = outbox.queue.peek();
+    if (pending == null) {
+      outbox.busy = false;
+      return;
+    }
+    outbox.busy = true;
+
+    final long now = System.nanoTime();
+    final long delay = Math.max(global.delay(now), outbox.bucket.delay(now));
+    if (delay > 0) {
+      scheduler.schedule(() -> sendNext(outbox), delay, NANOSECONDS);
+      return;
+    }
+    global.take(now);
+    outbox.bucket.take(now);
+    outbox.queue.poll();
+
+    senders.execute(() -> {
+      final long start = System.nanoTime();
+      @Nullable
+      Exception failure = null;
+      try {
+        sender.execute(pending.method);
+      } catch (final TelegramApiException | RuntimeException exception) {
+        failure = exception;
+      }
+      executeLatency.record(System.nanoTime() - start);
+      final @Nullable Exception result = failure;
+      try {
+        scheduler.execute(() -> {
+          if (result == null) {
+            pending.sent.complete(null);
+          } else {
+            failed(outbox, pending, result);
+          }
+          sendNext(outbox);
+        });
+      } catch (final RejectedExecutionException exception) {
+        // closing gave up on the remaining messages, nobody waits for this one anymore
+      }
+    });
+  }
+
+  private void failed(final Outbox outbox, final Pending pending, final Exception exception) {
+    final @Nullable Integer retryAfter = retryAfter(exception);
+    if (retryAfter != null && pending.retries++ < MAX_RETRIES) {
+      BotLogger.warn(TAG, format("Telegram wants chat %d to wait for %d seconds.",
+          Long.valueOf(outbox.chatId), retryAfter));
+      outbox.bucket.pause(SECONDS.toNanos(retryAfter.longValue()), System.nanoTime());
+      outbox.queue.addFirst(pending);
+      retries.increment();
+      return;
+    }
+    failures.increment();
+    BotLogger.error("Failed to send " + pending.method + " to the people.", TAG, exception);
+    pending.sent.completeExceptionally(exception);
+  }
+
+  private static @Nullable Integer retryAfter(final Exception exception) {
+    if (exception instanceof TelegramApiRequestException) {
+      final TelegramApiRequestException requestException = (TelegramApiRequestException) exception;
+      if (requestException.getParameters() != null) {
+        return requestException.getParameters().getRetryAfter();
+      }
+    }
+    return null;
+  }
+
+  private void cancelTyping(final Outbox outbox) {
+    final @Nullable ScheduledFuture<?> typing = outbox.typing;
+    if (typing != null) {
+      typing.cancel(false);
+      outbox.typing = null;
+    }
+  }
+
+  private Outbox outbox(final long chatId) {
+    final Long key = Long.valueOf(chatId);
+    @Nullable
+    Outbox outbox = outboxes.get(key);
+    if (outbox == null) {
+      final long now = System.nanoTime();
+      if (outboxes.size() >= forgetThreshold) {
+        forgetIdleChats(now);
+        forgetThreshold = Math.max(1024, 2 * outboxes.size());
+      }
+      final TokenBucket bucket = chatId < 0 ? new TokenBucket(groupPerSecond, groupBurst, now)
+          : new TokenBucket(privatePerSecond, privateBurst, now);
+      outbox = new Outbox(chatId, bucket, now);
+      outboxes.put(key, outbox);
+    }
+    return outbox;
+  }
+
+  /**
+   * A chat that has nothing going on and whose bucket is full again is no different from one that
+   * never sent anything, so there is no need to remember it.
+   */
+  private void forgetIdleChats(final long now) {
+    for (final Iterator<Outbox> iterator = outboxes.values().iterator(); iterator.hasNext();) {
+      final Outbox outbox = iterator.next();
+      if (!outbox.busy && outbox.queue.isEmpty() && outbox.typing == null
+          && now - outbox.typingSince >= TYPING_DURATION_NANOS && outbox.bucket.isFull(now)) {
+        iterator.remove();
+      }
+    }
+  }
+}
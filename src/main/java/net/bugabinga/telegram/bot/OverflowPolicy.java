@@ -0,0 +1,32 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+/**
+ * What happens to an update, when the {@link EventLogQueue} is full because the disk cannot keep
+ * up. Set it with the environment variable <code>SCOBO_QUEUE_OVERFLOW</code>.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public enum OverflowPolicy {
+
+  /**
+   * The thread handing over the update waits until there is space again. With long polling this
+   * simply stops us from fetching more updates from Telegram.
+   */
+  BLOCK,
+
+  /**
+   * The update is refused and the people in the chat get told to try again.
+   */
+  REJECT,
+
+  /**
+   * The update gets appended to a spill file on disk and is written to the event log as soon as
+   * the queue has been emptied. Nothing is lost and nobody waits, but memory stays bounded.
+   */
+  SPILL
+}
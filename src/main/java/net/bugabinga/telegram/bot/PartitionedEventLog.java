@@ -0,0 +1,225 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.telegram.telegrambots.logging.BotLogger;
+
+/**
+ * The event log, partitioned by chat. Every chat gets a {@link ChatEventLog} in a sub directory
+ * named after its id, so reading the history of one chat never touches the events of any other.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public class PartitionedEventLog implements Closeable {
+
+  /**
+   * Namespace for logger.
+   */
+  private static final String TAG = "PARTITIONED_EVENT_LOG";
+
+  /**
+   * Segment size used unless <code>SCOBO_SEGMENT_SIZE</code> says otherwise.
+   */
+  static final long DEFAULT_SEGMENT_SIZE = 8 * 1024 * 1024;
+
+  /**
+   * Number of open segments allowed unless <code>SCOBO_MAX_OPEN_SEGMENTS</code> says otherwise.
+   */
+  static final int DEFAULT_MAX_OPEN_WRITERS = 128;
+
+  private final Path directory;
+  private final long maxSegmentSize;
+  private final int maxOpenWriters;
+  private final ConcurrentMap<Long, ChatEventLog> chats = new ConcurrentHashMap<>();
+
+  /**
+   * Chats that currently hold an open segment, least recently written first. Only touched by the
+   * processor thread.
+   */
+  private final LinkedHashMap<Long, ChatEventLog> writers = new LinkedHashMap<>(16, 0.75f, true);
+
+  private ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+
+  /**
+   * @param directory Where the logs of all chats live. Gets created if missing.
+   * @param maxSegmentSize Size in bytes at which the log of a chat rolls over into a new segment.
+   * @param maxOpenWriters How many segments may be open for writing at once. Chats that have not
+   *        been written to for a while get their segment closed.
+   * @throws IOException If the directory cannot be created or listed.
+   */
+  public PartitionedEventLog(final Path directory, final long maxSegmentSize,
+      final int maxOpenWriters) throws IOException {
+    this.directory = Files.createDirectories(directory);
+    this.maxSegmentSize = maxSegmentSize;
+    this.maxOpenWriters = Math.max(1, maxOpenWriters);
+
+    try (final DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+      for (final Path file : files) {
+        if (!Files.isDirectory(file)) {
+          continue;
+        }
+        final long chatId;
+        try {
+          chatId = Long.parseLong(file.getFileName().toString());
+        } catch (final NumberFormatException exception) {
+          BotLogger.warn(TAG, "Ignoring " + file + ", it is not named after a chat.");
+          continue;
+        }
+        chats.put(Long.valueOf(chatId), new ChatEventLog(chatId, file, maxSegmentSize));
+      }
+    }
+  }
+
+  /**
+   * @return The directory of the log.
+   */
+  public Path getDirectory() {
+    return directory;
+  }
+
+  /**
+   * @param chatId Id of a chat.
+   * @return The log of the chat or <code>null</code> if nothing was ever written for it.
+   */
+  public @Nullable ChatEventLog find(final long chatId) {
+    return chats.get(Long.valueOf(chatId));
+  }
+
+  /**
+   * @return The logs of all chats that have any.
+   */
+  public Collection<ChatEventLog> chats() {
+    return chats.values();
+  }
+
+  /**
+   * @return The current end of the log of every chat.
+   */
+  public Map<Long, Long> ends() {
+    final Map<Long, Long> ends = new HashMap<>();
+    chats.forEach((chatId, log) -> ends.put(chatId, Long.valueOf(log.end())));
+    return ends;
+  }
+
+  /**
+   * Appends the events to the logs of their chats, keeping their order within each chat. All
+   * events of a chat are written with a single call. Only the processor thread may call this.
+   *
+   * @param events The events to write.
+   * @throws IOException If writing fails. The chats that were written already are rolled back, so
+   *         either all of the events are in the log or none.
+   */
+  public void append(final List<ScoreEvent> events) throws IOException {
+    final Map<Long, List<ScoreEvent>> byChat = new LinkedHashMap<>();
+    for (final ScoreEvent event : events) {
+      byChat.computeIfAbsent(Long.valueOf(event.getChatId()), chatId -> new ArrayList<>())
+          .add(event);
+    }
+
+    final List<ChatEventLog> appended = new ArrayList<>(byChat.size());
+    final long[] previousEnds = new long[byChat.size()];
+    try {
+      for (final Map.Entry<Long, List<ScoreEvent>> entry : byChat.entrySet()) {
+        final ChatEventLog chatLog = writer(entry.getKey());
+        previousEnds[appended.size()] = chatLog.end();
+        append(chatLog, entry.getValue());
+        appended.add(chatLog);
+      }
+    } catch (final IOException exception) {
+      for (int index = 0; index < appended.size(); index++) {
+        try {
+          appended.get(index).rollBack(previousEnds[index]);
+        } catch (final IOException rollBackException) {
+          exception.addSuppressed(rollBackException);
+        }
+      }
+      throw exception;
+    }
+  }
+
+  private void append(final ChatEventLog chatLog, final List<ScoreEvent> chatEvents)
+      throws IOException {
+    int size = 0;
+    for (final ScoreEvent event : chatEvents) {
+      size += ScoreEventCodec.encodedSize(event);
+    }
+    if (buffer.capacity() < size) {
+      buffer = ByteBuffer.allocate(Integer.highestOneBit(size) << 1);
+    }
+
+    buffer.clear();
+    for (final ScoreEvent event : chatEvents) {
+      ScoreEventCodec.encode(event, buffer);
+    }
+    buffer.flip();
+    chatLog.append(buffer);
+  }
+
+  /**
+   * Forces everything that was appended to disk.
+   *
+   * @throws IOException If syncing fails.
+   */
+  public void force() throws IOException {
+    for (final ChatEventLog log : writers.values()) {
+      log.force();
+    }
+  }
+
+  /**
+   * Syncs and closes all open segments. The log can still be used afterwards.
+   */
+  @Override
+  public void close() throws IOException {
+    final Iterator<ChatEventLog> open = writers.values().iterator();
+    while (open.hasNext()) {
+      final ChatEventLog log = open.next();
+      open.remove();
+      log.closeWriter();
+    }
+  }
+
+  private ChatEventLog writer(final Long chatId) throws IOException {
+    @Nullable
+    ChatEventLog log = writers.get(chatId);
+    if (log != null) {
+      return log;
+    }
+
+    log = chats.get(chatId);
+    if (log == null) {
+      log = new ChatEventLog(chatId.longValue(), directory.resolve(chatId.toString()),
+          maxSegmentSize);
+      chats.put(chatId, log);
+    }
+    writers.put(chatId, log);
+
+    if (writers.size() > maxOpenWriters) {
+      final Iterator<ChatEventLog> leastRecent = writers.values().iterator();
+      final ChatEventLog evicted = leastRecent.next();
+      leastRecent.remove();
+      evicted.closeWriter();
+    }
+    return log;
+  }
+}
@@ -0,0 +1,92 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Gives every name that shows up on a score board a small int id, so the boards can count points
+ * in primitive maps. Every name is stored once, no matter in how many chats it scores.
+ *
+ * <p>
+ * Ids are never given back. There are only so many people that use the bot.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public class PlayerNames {
+
+  /**
+   * Returned by {@link #find(String)} for names that never showed up.
+   */
+  public static final int UNKNOWN = 0;
+
+  private final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<>();
+
+  /**
+   * Index is the id. Id 0 is never used, {@link IntIntMap} needs its keys positive.
+   */
+  private volatile String[] names = new String[64];
+
+  private int nextId = 1;
+
+  /**
+   * @param name Name of a person as shown on the board.
+   * @return The id of the name. Names that were seen before do not allocate anything.
+   */
+  public int idOf(final String name) {
+    final @Nullable Integer id = ids.get(name);
+    if (id != null) {
+      return id.intValue();
+    }
+    return add(name);
+  }
+
+  /**
+   * @param name Name of a person as shown on the board.
+   * @return The id of the name or {@link #UNKNOWN}. Unlike {@link #idOf(String)} this never adds
+   *         the name.
+   */
+  public int find(final String name) {
+    final @Nullable Integer id = ids.get(name);
+    return id == null ? UNKNOWN : id.intValue();
+  }
+
+  /**
+   * @param id Returned by {@link #idOf(String)} before.
+   * @return The name of the id.
+   */
+  public String nameOf(final int id) {
+    return names[id];
+  }
+
+  /**
+   * @return Number of names known so far.
+   */
+  public int size() {
+    return ids.size();
+  }
+
+  private synchronized int add(final String name) {
+    final @Nullable Integer known = ids.get(name);
+    if (known != null) {
+      return known.intValue();
+    }
+    final int id = nextId++;
+    String[] table = names;
+    if (id == table.length) {
+      table = Arrays.copyOf(table, 2 * table.length);
+    }
+    table[id] = name;
+    // the name has to be readable before anybody can learn its id
+    names = table;
+    ids.put(name, Integer.valueOf(id));
+    return id;
+  }
+}
@@ -0,0 +1,33 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+/**
+ * How the event log gets read when the bot starts or an old event log gets migrated. Set it with
+ * the environment variable <code>SCOBO_REPLAY</code>.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public enum ReplayMode {
+
+  /**
+   * One thread reads everything in order. Old JSON logs are bound into complete updates, which is
+   * slow but the reference for what an update means.
+   */
+  SEQUENTIAL,
+
+  /**
+   * Chats are replayed in parallel on a fork join pool, old JSON logs are parsed in chunks in
+   * parallel by a streaming decoder that only looks at the fields it needs. The order of events
+   * within a chat is kept.
+   */
+  PARALLEL,
+
+  /**
+   * Does both and complains loudly if the results differ. The sequential result wins then.
+   */
+  VERIFY
+}
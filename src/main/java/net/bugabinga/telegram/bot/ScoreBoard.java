@@ -0,0 +1,536 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.telegram.telegrambots.logging.BotLogger;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The current scores of all people in one chat. Instances are kept up to date incrementally while
+ * updates arrive, so reading the board never has to touch the event log.
+ *
+ * <p>
+ * Next to the scores every board keeps the most recent wins on a stack, so /undo knows right away
+ * whose point to take back, and a {@link ScoreRanking} keeps everybody in order for /board and
+ * /rank.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public class ScoreBoard {
+
+  /**
+   * Namespace for logger.
+   */
+  private static final String TAG = "SCORE_BOARD";
+
+  /**
+   * How many wins per chat can be undone. Older ones fall off the bottom of the stack.
+   */
+  static final int UNDO_DEPTH = 100;
+
+  /**
+   * Shared by the boards of all chats, most people play in more than one.
+   */
+  private static final PlayerNames NAMES = new PlayerNames();
+
+  /**
+   * Room for this many wins gets allocated up front. The undo stack grows up to
+   * {@link #UNDO_DEPTH} only in chats that are actually busy.
+   */
+  private static final int INITIAL_UNDO_CAPACITY = 4;
+
+  /**
+   * A /won that can still be undone.
+   */
+  public static final class Win {
+    private final long userId;
+    private final String userName;
+    private final long updateId;
+    private final long timestamp;
+
+    /**
+     * @param userId Telegram id of the winner.
+     * @param userName Name of the winner as shown on the board.
+     * @param updateId Id of the update the win came from.
+     * @param timestamp When the win happened, in seconds since the epoch.
+     */
+    @JsonCreator
+    public Win(@JsonProperty("userId") final long userId,
+        @JsonProperty("userName") final String userName,
+        @JsonProperty("updateId") final long updateId,
+        @JsonProperty("timestamp") final long timestamp) {
+      this.userId = userId;
+      this.userName = userName;
+      this.updateId = updateId;
+      this.timestamp = timestamp;
+    }
+
+    /**
+     * @return Telegram id of the winner.
+     */
+    public long getUserId() {
+      return userId;
+    }
+
+    /**
+     * @return Name of the winner as shown on the board.
+     */
+    public String getUserName() {
+      return userName;
+    }
+
+    /**
+     * @return Id of the update the win came from.
+     */
+    public long getUpdateId() {
+      return updateId;
+    }
+
+    /**
+     * @return When the win happened, in seconds since the epoch. Taking it back takes the point
+     *         from the same day of the {@link ScoreBuckets}.
+     */
+    public long getTimestamp() {
+      return timestamp;
+    }
+
+    @Override
+    public boolean equals(final @Nullable Object other) {
+      if (!(other instanceof Win)) {
+        return false;
+      }
+      final Win win = (Win) other;
+      return userId == win.userId && updateId == win.updateId && timestamp == win.timestamp
+          && userName.equals(win.userName);
+    }
+
+    @Override
+    public int hashCode() {
+      return Long.hashCode(updateId);
+    }
+  }
+
+  /**
+   * The place of one person on the board.
+   */
+  public static final class Standing {
+    private final int rank;
+    private final String userName;
+    private final int score;
+
+    /**
+     * @param rank Starting at 1. People with the same score share a rank.
+     * @param userName Name of the person as shown on the board.
+     * @param score Points of the person.
+     */
+    public Standing(final int rank, final String userName, final int score) {
+      this.rank = rank;
+      this.userName = userName;
+      this.score = score;
+    }
+
+    /**
+     * @return Starting at 1. People with the same score share a rank.
+     */
+    public int getRank() {
+      return rank;
+    }
+
+    /**
+     * @return Name of the person as shown on the board.
+     */
+    public String getUserName() {
+      return userName;
+    }
+
+    /**
+     * @return Points of the person.
+     */
+    public int getScore() {
+      return score;
+    }
+  }
+
+  /**
+   * Points per person, keyed by the {@link PlayerNames} id of their name.
+   */
+  private final IntIntMap scores;
+
+  /**
+   * The same points, ordered for /board and /rank.
+   */
+  private final ScoreRanking ranking;
+
+  /**
+   * The same points once more, per day, for boards of a {@link ScoreWindow}.
+   */
+  private final ScoreBuckets buckets;
+
+  /*
+   * The wins that can be undone, as a ring buffer of primitive columns. The most recent one is at
+   * winsHead, older ones follow at lower indexes.
+   */
+  private long[] winUserIds;
+  private int[] winNameIds;
+  private long[] winUpdateIds;
+  private long[] winTimestamps;
+  private int winsHead = -1;
+  private int winCount;
+
+  /**
+   * Creates an empty board.
+   */
+  public ScoreBoard() {
+    scores = new IntIntMap();
+    ranking = new ScoreRanking(NAMES);
+    buckets = new ScoreBuckets();
+    winUserIds = new long[INITIAL_UNDO_CAPACITY];
+    winNameIds = new int[INITIAL_UNDO_CAPACITY];
+    winUpdateIds = new long[INITIAL_UNDO_CAPACITY];
+    winTimestamps = new long[INITIAL_UNDO_CAPACITY];
+  }
+
+  /**
+   * @param scores Scores to start with, e.g. taken from a {@link ScoreSnapshot}.
+   * @param wins Wins that can be undone, most recent first.
+   * @param buckets Points per name, keyed by the day since the epoch.
+   */
+  public ScoreBoard(final Map<String, Integer> scores, final List<Win> wins,
+      final Map<Long, Map<String, Integer>> buckets) {
+    this();
+    scores.forEach((name, score) -> {
+      final int nameId = NAMES.idOf(name);
+      this.scores.put(nameId, score.intValue());
+      ranking.add(score.intValue(), nameId);
+    });
+    for (int index = Math.min(wins.size(), UNDO_DEPTH) - 1; index >= 0; index--) {
+      final Win win = wins.get(index);
+      pushWin(win.getUserId(), NAMES.idOf(win.getUserName()), win.getUpdateId(),
+          win.getTimestamp());
+    }
+    buckets.forEach((day, points) -> points.forEach((name, score) -> this.buckets
+        .add(day.intValue(), NAMES.idOf(name), score.intValue())));
+    // what was restored is already stored
+    this.buckets.takeFirstChangedDay();
+  }
+
+  private ScoreBoard(final ScoreBoard other) {
+    scores = other.scores.copy();
+    ranking = other.ranking.copy();
+    buckets = other.buckets.copy();
+    winUserIds = other.winUserIds.clone();
+    winNameIds = other.winNameIds.clone();
+    winUpdateIds = other.winUpdateIds.clone();
+    winTimestamps = other.winTimestamps.clone();
+    winsHead = other.winsHead;
+    winCount = other.winCount;
+  }
+
+  /**
+   * Folds one event of this chat into the board.
+   *
+   * @param event Either fresh from Telegram or replayed from the event log.
+   */
+  public void apply(final ScoreEvent event) {
+    /*
+     * The following logic is the heart of the current implementation of the API. It is simple
+     * currently, because we have only 2 commands that can alter the score. An /undo gets logged as
+     * one REVERT per win it takes back, UNDO only shows up in old event logs.
+     */
+    switch (event.getKind()) {
+      case WON:
+        won(event);
+        break;
+      case UNDO:
+        undo(event);
+        break;
+      case REVERT:
+        revert(event);
+        break;
+      default:
+        BotLogger.warn(TAG, "Do not know how to apply " + event + ". Ignoring it.");
+    }
+  }
+
+  /**
+   * won --> +1 for the user
+   *
+   * @param event The win.
+   */
+  public synchronized void won(final ScoreEvent event) {
+    final int nameId = NAMES.idOf(event.getUserName());
+    // people whose points got all taken back are still on the board with 0
+    if (scores.containsKey(nameId)) {
+      final int score = scores.add(nameId, 1);
+      ranking.move(score - 1, score, nameId);
+    } else {
+      scores.put(nameId, 1);
+      ranking.add(1, nameId);
+    }
+    buckets.add(ScoreBuckets.dayOf(event.getTimestamp()), nameId, 1);
+    pushWin(event.getUserId(), nameId, event.getUpdateId(), event.getTimestamp());
+  }
+
+  /**
+   * undo --> -1 for the user, unless score gets smaller than 0. This is what /undo did before it
+   * knew about the undo stack, old event logs still contain it.
+   *
+   * @param event The undo.
+   */
+  public synchronized void undo(final ScoreEvent event) {
+    final int nameId = NAMES.idOf(event.getUserName());
+    takePointFrom(nameId);
+    // the most recent win of the sender is what got taken back
+    for (int index = 0; index < winCount; index++) {
+      if (winNameIds[winSlot(index)] == nameId) {
+        removeWin(index);
+        break;
+      }
+    }
+  }
+
+  /**
+   * revert --> -1 for the user of the reverted win
+   *
+   * @param event The compensating event.
+   */
+  public synchronized void revert(final ScoreEvent event) {
+    takePointFrom(NAMES.idOf(event.getUserName()));
+    // it is the top of the stack, unless a legacy undo got in between
+    for (int index = 0; index < winCount; index++) {
+      if (winUpdateIds[winSlot(index)] == event.getTarget()) {
+        removeWin(index);
+        break;
+      }
+    }
+  }
+
+  /**
+   * -1 for the person, unless the score would get smaller than 0. Then the person is removed from
+   * the board.
+   */
+  private void takePointFrom(final int nameId) {
+    final int score = scores.get(nameId, -1);
+    if (score == 0) {
+      scores.remove(nameId);
+      ranking.remove(score, nameId);
+    } else if (score > 0) {
+      scores.put(nameId, score - 1);
+      ranking.move(score, score - 1, nameId);
+    }
+  }
+
+  /**
+   * @param index 0 is the most recent win.
+   * @return Where the win is in the ring buffer.
+   */
+  private int winSlot(final int index) {
+    final int capacity = winUpdateIds.length;
+    return (winsHead - index + capacity) % capacity;
+  }
+
+  /**
+   * Puts a win on top of the stack. Once it holds {@link #UNDO_DEPTH} wins, the oldest one gets
+   * overwritten.
+   */
+  private void pushWin(final long userId, final int nameId, final long updateId,
+      final long timestamp) {
+    if (winCount == winUpdateIds.length && winCount < UNDO_DEPTH) {
+      growWins(Math.min(2 * winCount, UNDO_DEPTH));
+    }
+    winsHead = (winsHead + 1) % winUpdateIds.length;
+    winUserIds[winsHead] = userId;
+    winNameIds[winsHead] = nameId;
+    winUpdateIds[winsHead] = updateId;
+    winTimestamps[winsHead] = timestamp;
+    winCount = Math.min(winCount + 1, winUpdateIds.length);
+  }
+
+  /**
+   * Takes the point of the win from the day it was scored on.
+   *
+   * @param index 0 is the most recent win. The more recent ones move down by one.
+   */
+  private void removeWin(final int index) {
+    final int removed = winSlot(index);
+    buckets.add(ScoreBuckets.dayOf(winTimestamps[removed]), winNameIds[removed], -1);
+    for (int moving = index; moving > 0; moving--) {
+      final int to = winSlot(moving);
+      final int from = winSlot(moving - 1);
+      winUserIds[to] = winUserIds[from];
+      winNameIds[to] = winNameIds[from];
+      winUpdateIds[to] = winUpdateIds[from];
+      winTimestamps[to] = winTimestamps[from];
+    }
+    winsHead = winSlot(1);
+    winCount--;
+  }
+
+  private void growWins(final int capacity) {
+    final long[] userIds = new long[capacity];
+    final int[] nameIds = new int[capacity];
+    final long[] updateIds = new long[capacity];
+    final long[] timestamps = new long[capacity];
+    // oldest first, so the most recent win ends up at winCount - 1
+    for (int index = 0; index < winCount; index++) {
+      final int slot = winSlot(index);
+      userIds[winCount - 1 - index] = winUserIds[slot];
+      nameIds[winCount - 1 - index] = winNameIds[slot];
+      updateIds[winCount - 1 - index] = winUpdateIds[slot];
+      timestamps[winCount - 1 - index] = winTimestamps[slot];
+    }
+    winUserIds = userIds;
+    winNameIds = nameIds;
+    winUpdateIds = updateIds;
+    winTimestamps = timestamps;
+    winsHead = winCount - 1;
+  }
+
+  /**
+   * @param count How many wins to look at.
+   * @return Up to <code>count</code> of the most recent wins that can still be undone, most recent
+   *         first.
+   */
+  public synchronized List<Win> lastWins(final int count) {
+    final List<Win> last = new ArrayList<>(Math.min(count, winCount));
+    for (int index = 0; index < winCount && index < count; index++) {
+      final int slot = winSlot(index);
+      last.add(new Win(winUserIds[slot], NAMES.nameOf(winNameIds[slot]), winUpdateIds[slot],
+          winTimestamps[slot]));
+    }
+    return last;
+  }
+
+  /**
+   * @param count How many people to return at most.
+   * @return The best people of the chat, best first. People with equal scores are ordered by name.
+   */
+  public synchronized List<Standing> top(final int count) {
+    final List<Standing> top = new ArrayList<>(Math.min(count, ranking.size()));
+    ranking.top(count, (nameId, score) -> {
+      final int rank;
+      if (top.isEmpty()) {
+        rank = 1;
+      } else {
+        final Standing previous = top.get(top.size() - 1);
+        rank = previous.getScore() == score ? previous.getRank() : top.size() + 1;
+      }
+      top.add(new Standing(rank, NAMES.nameOf(nameId), score));
+    });
+    return top;
+  }
+
+  /**
+   * Adds up the days of the window, which never touches a single event.
+   *
+   * @param window Time span of the board.
+   * @param today Days since the epoch.
+   * @return Everybody who made points in the window, best first. People with equal scores are
+   *         ordered by name.
+   */
+  public synchronized List<Standing> standings(final ScoreWindow window, final int today) {
+    if (window == ScoreWindow.ALL) {
+      return top(Integer.MAX_VALUE);
+    }
+    final List<Standing> unordered = new ArrayList<>();
+    buckets.sum(window.firstDay(today), today).forEach(
+        (nameId, score) -> unordered.add(new Standing(0, NAMES.nameOf(nameId), score)));
+    unordered.sort((first, second) -> first.getScore() == second.getScore()
+        ? first.getUserName().compareTo(second.getUserName())
+        : Integer.compare(second.getScore(), first.getScore()));
+
+    final List<Standing> standings = new ArrayList<>(unordered.size());
+    int rank = 0;
+    int previousScore = Integer.MIN_VALUE;
+    for (final Standing standing : unordered) {
+      if (standing.getScore() != previousScore) {
+        rank = standings.size() + 1;
+        previousScore = standing.getScore();
+      }
+      standings.add(new Standing(rank, standing.getUserName(), standing.getScore()));
+    }
+    return standings;
+  }
+
+  /**
+   * @param fromDay The oldest day to return.
+   * @return Points per name keyed by the day since the epoch, as far as they are kept.
+   */
+  public synchronized Map<Long, Map<String, Integer>> buckets(final int fromDay) {
+    return buckets.export(NAMES, fromDay);
+  }
+
+  /**
+   * @return The oldest day whose points changed since the last call, {@link Integer#MAX_VALUE} if
+   *         none did.
+   */
+  public synchronized int takeFirstChangedDay() {
+    return buckets.takeFirstChangedDay();
+  }
+
+  /**
+   * @return The oldest day whose points are kept.
+   */
+  public synchronized int oldestDay() {
+    return buckets.oldestDay();
+  }
+
+  /**
+   * @param userName Name of a person as shown on the board.
+   * @return Where the person stands, or <code>null</code> if the person is not on the board.
+   */
+  public synchronized @Nullable Standing standingOf(final String userName) {
+    final int nameId = NAMES.find(userName);
+    if (nameId == PlayerNames.UNKNOWN || !scores.containsKey(nameId)) {
+      return null;
+    }
+    final int score = scores.get(nameId, 0);
+    return new Standing(ranking.rankOf(score), userName, score);
+  }
+
+  /**
+   * @return Number of people on the board.
+   */
+  public synchronized int size() {
+    return scores.size();
+  }
+
+  /**
+   * @return A copy of the current scores, so callers can take their time rendering it.
+   */
+  public synchronized Map<String, Integer> scores() {
+    final Map<String, Integer> copy = new HashMap<>();
+    scores.forEach((nameId, score) -> copy.put(NAMES.nameOf(nameId), Integer.valueOf(score)));
+    return copy;
+  }
+
+  /**
+   * @return A copy of the wins that can be undone, most recent first.
+   */
+  public synchronized List<Win> wins() {
+    return lastWins(winCount);
+  }
+
+  /**
+   * @return An independent board with the same scores and wins.
+   */
+  public synchronized ScoreBoard copy() {
+    return new ScoreBoard(this);
+  }
+
+  @Override
+  public synchronized String toString() {
+    return scores().toString();
+  }
+}
@@ -0,0 +1,936 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import static java.lang.String.format;
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.exists;
+import static java.nio.file.Files.notExists;
+import static java.nio.file.Files.size;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.joining;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongPredicate;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.telegram.telegrambots.ApiConstants;
+import org.telegram.telegrambots.ApiContext;
+import org.telegram.telegrambots.api.methods.send.SendMessage;
+import org.telegram.telegrambots.api.objects.Message;
+import org.telegram.telegrambots.api.objects.Update;
+import org.telegram.telegrambots.bots.AbsSender;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
+import org.telegram.telegrambots.logging.BotLogger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Everything the bot does with an update, no matter how it arrived. The long polling
+ * {@link ScoreBoardBot} and the {@link ScoreBoardWebhookBot} only hand their updates over to this.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public class ScoreBoardCore {
+
+  /*
+   * Taken some emojis from
+   * https://stackoverflow.com/questions/34433308/java-based-telegram-bot-api-how-to-send-emojis#
+   * 35523951 which are meant to convey "success".
+   */
+  private static final String[] SUCCESS_EMOJIS =
+      new String[] {"\uD83D\uDC4F", "\uD83C\uDF89", "\uD83D\uDE0E", "\uD83D\uDE2C"};
+
+  private static final String[] CONGRATZ_TEXT =
+      new String[] {"gg", "wp", "gratz", "nice", "gj", "you rock"};
+
+  /**
+   * Name of the bot as known to the Telegram Bot API.
+   */
+  static final String SCOBO_BOT = "scobo_bot";
+
+  /**
+   * This command gets used by people that want to increase their score by 1.
+   */
+  static final String WON_COMMAND = "/won";
+
+  /**
+   * This command undoes the last command that altered the score. "/undo 3" undoes the last three.
+   */
+  static final String UNDO_COMMAND = "/undo";
+
+  /**
+   * This command shows a table with the current scores for all people. "/board week" only counts
+   * the points of this week, see {@link ScoreWindow}.
+   */
+  private static final String BOARD_COMMAND = "/board";
+
+  /**
+   * This command tells people where they stand on the board.
+   */
+  private static final String RANK_COMMAND = "/rank";
+
+  /**
+   * Name of the directory next to the event log, that holds the snapshots of the score boards.
+   */
+  private static final String SNAPSHOTS_DIRECTORY = "snapshots";
+
+  /**
+   * Name of the directory in the data directory, that holds the event logs of all chats.
+   */
+  private static final String EVENTS_DIRECTORY = "events";
+
+  /**
+   * Name of the directory in the data directory, that holds the shards of the chats if several
+   * instances share it.
+   */
+  private static final String SHARDS_DIRECTORY = "shards";
+
+  /**
+   * Every shard needs a database of its own, this gets replaced with its number in SCOBO_JDBC_URL.
+   */
+  private static final String SHARD_PLACEHOLDER = "{shard}";
+
+  /**
+   * How long handing over a shard may take before it is tried again later.
+   */
+  private static final long SHARD_HANDOVER_SECONDS = 10;
+
+  private final EventLogQueue eventLog;
+
+  private final ExecutorService executor;
+
+  private final ChatDispatcher dispatcher;
+
+  private final OutboundMessages outbound;
+
+  private final ObjectMapper mapper;
+
+  private final ScoreBoards scoreBoards;
+
+  private final BoardCache boardCache;
+
+  private final ReplayMode replayMode;
+
+  private final int replayThreads;
+
+  /**
+   * How many people /board shows at most.
+   */
+  private final int boardSize;
+
+  private final Metrics metrics;
+
+  private final @Nullable MetricsServer metricsServer;
+
+  private final LongAdder updates;
+
+  private final LongAdder failedUpdates;
+
+  private final LatencyHistogram wonLatency;
+
+  private final LatencyHistogram undoLatency;
+
+  private final LatencyHistogram boardLatency;
+
+  private final LatencyHistogram rankLatency;
+
+  private final LatencyHistogram unknownLatency;
+
+  /**
+   * Number of shards the chats are split into, 0 if this instance has all of them to itself.
+   */
+  private final int shardCount;
+
+  private final @Nullable ShardedScoreStore shardedStore;
+
+  private final @Nullable ShardLeases shardLeases;
+
+  private final @Nullable ShardForwarder forwarder;
+
+  /**
+   * Constructs the core of a Score Board bot with its thread executor and queue it is going to
+   * manage.
+   *
+   * <p>
+   * If SCOBO_INSTANCE names this instance, it shares the data directory with other instances.
+   * The chats are split into SCOBO_SHARDS shards then, and this instance only keeps the ones it
+   * holds the {@link ShardLeases lease} of. Updates of other chats get forwarded to their owner.
+   *
+   * @param sender Sends the replies to Telegram, usually the bot that owns this core.
+   * @throws IOException If the event log file cannot be accessed
+   */
+  public ScoreBoardCore(final AbsSender sender) throws IOException {
+    mapper = new ObjectMapper();
+    metrics = new Metrics();
+    updates = metrics.counter("scobo_updates_total", "Updates received from Telegram.");
+    failedUpdates = metrics.counter("scobo_update_failures_total",
+        "Updates that could not be handed to their chat or the event log.");
+    wonLatency = replyLatency("won");
+    undoLatency = replyLatency("undo");
+    boardLatency = replyLatency("board");
+    rankLatency = replyLatency("rank");
+    unknownLatency = replyLatency("unknown");
+    replayMode = Configuration.getEnum("SCOBO_REPLAY", ReplayMode.PARALLEL);
+    replayThreads =
+        Configuration.getInt("SCOBO_REPLAY_THREADS", Runtime.getRuntime().availableProcessors());
+    boardSize = Math.max(1, Configuration.getInt("SCOBO_BOARD_SIZE", 10));
+    boardCache =
+        new BoardCache(Math.max(1, Configuration.getInt("SCOBO_BOARD_CACHE_CHATS", 1_000)));
+    final Path dataDirectory = initializeDataDirectory();
+    final Path legacyLogPath = dataDirectory.resolve(SCOBO_BOT + ".json");
+    final StorageBackend backend = Configuration.getEnum("SCOBO_STORE", StorageBackend.FILE);
+    BotLogger.info(SCOBO_BOT, "Keeping the scores in the " + backend + " store.");
+    final String instance = Configuration.getString("SCOBO_INSTANCE", "");
+    shardCount = instance.isEmpty() ? 0 : Math.max(1, Configuration.getInt("SCOBO_SHARDS", 16));
+    final ScoreStore store;
+    OverflowPolicy overflowPolicy =
+        Configuration.getEnum("SCOBO_QUEUE_OVERFLOW", OverflowPolicy.BLOCK);
+    // files that belong to this instance alone are named after it
+    final String instanceName;
+    final Path shardsDirectory = dataDirectory.resolve(SHARDS_DIRECTORY);
+    if (shardCount > 0) {
+      // every shard is laid out like the data directory of a single instance
+      shardedStore = new ShardedScoreStore(shardCount, shard -> openStore(backend,
+          createDirectories(ShardLeases.directoryOf(shardsDirectory, shard))
+              .resolve(SCOBO_BOT + ".json"),
+          shard));
+      store = shardedStore;
+      if (overflowPolicy == OverflowPolicy.SPILL) {
+        // spilled events would come back after a restart, when their shard may be somewhere else
+        BotLogger.warn(SCOBO_BOT, "Sharded instances cannot spill events. Blocking instead.");
+        overflowPolicy = OverflowPolicy.BLOCK;
+      }
+      instanceName = SCOBO_BOT + "-" + instance;
+    } else {
+      shardedStore = null;
+      store = openStore(backend, legacyLogPath, -1);
+      instanceName = SCOBO_BOT;
+    }
+    eventLog = new EventLogQueue(Configuration.getInt("SCOBO_QUEUE_CAPACITY", 10_000),
+        overflowPolicy, legacyLogPath.resolveSibling(instanceName + ".spill"));
+    final long loadStart = System.nanoTime();
+    scoreBoards = store.load();
+    final double loadSeconds = (System.nanoTime() - loadStart) / 1e9;
+    metrics.gauge("scobo_replay_seconds",
+        "Time it took to load the score boards on startup, replay included.", () -> loadSeconds);
+    for (final ScoreEvent recovered : eventLog.recoverSpill(store)) {
+      scoreBoards.apply(recovered);
+    }
+    executor = Executors.newSingleThreadExecutor();
+    // the old JSON log lives on as an optional archive of the raw updates
+    executor.execute(new EventLogProcessor(eventLog, store,
+        Configuration.getBoolean("SCOBO_ARCHIVE_UPDATES", false)
+            ? legacyLogPath.resolveSibling(instanceName + ".json") : null,
+        mapper,
+        Configuration.getEnum("SCOBO_FSYNC", DurabilityMode.INTERVAL),
+        Configuration.getLong("SCOBO_FSYNC_INTERVAL_MS", 1000), metrics));
+    metrics.gauge("scobo_event_log_queue_depth", "Events waiting to be written.", eventLog::size);
+
+    dispatcher = new ChatDispatcher(
+        Configuration.getInt("SCOBO_DISPATCH_THREADS",
+            2 * Runtime.getRuntime().availableProcessors()),
+        Configuration.getInt("SCOBO_DISPATCH_QUEUE_LIMIT", 1_000));
+    /*
+     * Telegram allows about 30 messages per second in total, about 20 per minute in a group and
+     * about one per second in a private chat.
+     */
+    outbound = new OutboundMessages(sender, Configuration.getInt("SCOBO_SEND_THREADS", 4),
+        Configuration.getDouble("SCOBO_SENDS_PER_SECOND", 30),
+        Configuration.getDouble("SCOBO_CHAT_SENDS_PER_MINUTE", 20) / 60,
+        Configuration.getInt("SCOBO_CHAT_SEND_BURST", 3),
+        Configuration.getDouble("SCOBO_PRIVATE_CHAT_SENDS_PER_SECOND", 1),
+        Configuration.getInt("SCOBO_PRIVATE_CHAT_SEND_BURST", 3),
+        Configuration.getLong("SCOBO_TYPING_DELAY_MS", 500),
+        Configuration.getInt("SCOBO_CHAT_SEND_QUEUE", 20), metrics);
+
+    metrics.gauge("scobo_board_cache_hits", "Boards answered from the cache.",
+        () -> boardCache.hits());
+    metrics.gauge("scobo_board_cache_misses", "Boards that had to be rendered.",
+        () -> boardCache.misses());
+    metrics.registerMBean("net.bugabinga.telegram.bot:type=Metrics");
+    metricsServer = startMetricsServer();
+
+    if (shardCount > 0) {
+      final String shardSecret = Configuration.getString("SCOBO_SHARD_SECRET", "");
+      if (shardSecret.isEmpty()) {
+        throw new IllegalStateException("SCOBO_INSTANCE is set, so SCOBO_SHARD_SECRET has to be "
+            + "set as well, to the same value on every instance.");
+      }
+      final ShardForwarder startedForwarder = new ShardForwarder(
+          Configuration.getInt("SCOBO_SHARD_PORT", 0),
+          Configuration.getString("SCOBO_SHARD_HOST", "localhost"), shardSecret, mapper,
+          this::takeForwarded, metrics);
+      forwarder = startedForwarder;
+      final ShardLeases leases = new ShardLeases(shardsDirectory, instance,
+          startedForwarder.url(), shardCount, Configuration.getLong("SCOBO_LEASE_MS", 10_000),
+          mapper);
+      shardLeases = leases;
+      metrics.gauge("scobo_shards_held", "Shards this instance takes the updates of.",
+          leases::heldCount);
+      leases.start(new ShardLeases.Listener() {
+        @Override
+        public void acquired(final int shard) throws IOException {
+          acquireShard(shard);
+        }
+
+        @Override
+        public boolean releasing(final int shard) {
+          return releaseShard(shard);
+        }
+      });
+    } else {
+      forwarder = null;
+      shardLeases = null;
+    }
+
+    BotLogger.info(SCOBO_BOT, "Created the Score Board Bot! Ready for action!");
+  }
+
+  /**
+   * Hands the update over to the thread of its chat and returns right away.
+   *
+   * @param update Fresh from Telegram.
+   */
+  public void onUpdate(final @Nullable Update update) {
+    final long received = System.nanoTime();
+    updates.increment();
+    BotLog.debug(SCOBO_BOT, () -> "Received an update from Telegram: " + update);
+
+    if (update == null) {
+      BotLogger.warn(SCOBO_BOT, "The incoming update was null. Seems like a bug in the API?");
+      return;
+    }
+
+    final @Nullable Message message = update.getMessage();
+    if (message == null) {
+      BotLog.debug(SCOBO_BOT, () -> "The incoming update has no message. Ignoring it!");
+      return;
+    }
+
+    final Long chatId = message.getChatId();
+    requireNonNull(chatId);
+    final @Nullable ShardLeases leases = shardLeases;
+    if (leases != null && !leases.holds(shardOf(chatId.longValue()))) {
+      // waiting for the owner here keeps the chat threads free for the chats we hold
+      if (!forward(leases, update)) {
+        failedUpdates.increment();
+        sendFailure(chatId);
+      }
+      return;
+    }
+
+    /*
+     * The receiving thread only hands the update over, so a slow chat cannot hold up the others.
+     * All updates of a chat end up on the same thread, which keeps their order.
+     */
+    if (!dispatcher.dispatch(chatId.longValue(), () -> handleUpdate(update, received, false))) {
+      failedUpdates.increment();
+      sendFailure(chatId);
+    }
+  }
+
+  /**
+   * Takes an update that another instance forwarded, because this one holds its chat.
+   *
+   * @param update Forwarded by another instance.
+   * @return <code>false</code> if this instance does not hold the chat or the chat has too much
+   *         going on. The other instance may try again later.
+   */
+  private boolean takeForwarded(final Update update) {
+    final long received = System.nanoTime();
+    final @Nullable Message message = update.getMessage();
+    if (message == null || message.getChatId() == null) {
+      // nothing to do for anybody
+      return true;
+    }
+    final long chatId = message.getChatId().longValue();
+    final @Nullable ShardLeases leases = shardLeases;
+    if (leases == null || !leases.holds(shardOf(chatId))) {
+      return false;
+    }
+    return dispatcher.dispatch(chatId, () -> handleUpdate(update, received, true));
+  }
+
+  /**
+   * Runs on the thread of the chat the update belongs to.
+   *
+   * @param received {@link System#nanoTime()} when the update came in.
+   * @param forwarded <code>true</code> if another instance forwarded the update to this one.
+   */
+  private void handleUpdate(final Update update, final long received, final boolean forwarded) {
+    final Long chatId = update.getMessage().getChatId();
+    final @Nullable ShardLeases leases = shardLeases;
+    /*
+     * Checked again on the thread of the chat, so a shard that is handed over only has to wait for
+     * the chat threads to catch up once. Whatever was dispatched before gets forwarded from here.
+     */
+    if (leases != null && !leases.holds(shardOf(chatId.longValue()))) {
+      // a forwarded update that ends up at the wrong instance again is not worth another round
+      if (forwarded || !forward(leases, update)) {
+        failedUpdates.increment();
+        sendFailure(chatId);
+      }
+      return;
+    }
+
+    /*
+     * Updates that change a score get added to out Event Log. There they immediately will be
+     * persisted to disk and then the commands get processed.
+     */
+    final List<ScoreEvent> events = toScoreEvents(update);
+    // an /undo 3 is three events, a retry after only some of them got in would undo too much
+    final boolean success = events.isEmpty() || eventLog.offerAll(events);
+    if (success && !events.isEmpty()) {
+      // keeping the score boards in sync here means /board never has to read the event log
+      for (final ScoreEvent event : events) {
+        scoreBoards.apply(event);
+      }
+      boardCache.invalidate(events.get(0).getChatId());
+    }
+
+    if (!success) {
+      BotLogger.error(SCOBO_BOT,
+          "Could not add the update to the event log. There might be too much pressure on it. Low RAM? Low disk space?");
+
+      failedUpdates.increment();
+      sendFailure(chatId);
+    } else {
+      /*
+       * There is an implicit assumption here, that it is OK if the event log writer thread has not
+       * yet finished writing, because the current update itself is never relevant for the message
+       * we are going to send to the chat people.
+       */
+      processUpdate(update, events, received);
+    }
+  }
+
+  /**
+   * Passes the update on to the instance that holds its chat and waits until it took it.
+   *
+   * @return <code>false</code> if the chat has no owner right now, because it is on its way to
+   *         this instance, or the owner did not take the update.
+   */
+  private boolean forward(final ShardLeases leases, final Update update) {
+    final @Nullable ShardForwarder currentForwarder = forwarder;
+    final @Nullable String ownerUrl =
+        leases.ownerUrl(shardOf(update.getMessage().getChatId().longValue()));
+    return currentForwarder != null && ownerUrl != null
+        && currentForwarder.forward(ownerUrl, update);
+  }
+
+  /**
+   * Loads a shard, whose lease we just got. Its updates are not accepted until this returns.
+   */
+  private void acquireShard(final int shard) throws IOException {
+    scoreBoards.putAll(requireNonNull(shardedStore).open(shard));
+  }
+
+  /**
+   * Gives up a shard, whose updates are not accepted anymore. Everything that is under way for
+   * its chats has to be in its store before the next owner loads it.
+   *
+   * @return <code>false</code> if the chat threads or the event log did not catch up in time.
+   */
+  private boolean releaseShard(final int shard) {
+    try {
+      // once the chat threads caught up, every event of the shard is accepted by the event log
+      if (!dispatcher.awaitDispatched(SHARD_HANDOVER_SECONDS, SECONDS)
+          || !eventLog.awaitWritten(eventLog.accepted(), SHARD_HANDOVER_SECONDS, SECONDS)) {
+        return false;
+      }
+    } catch (final InterruptedException exception) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+    try {
+      requireNonNull(shardedStore).close(shard);
+    } catch (final IOException exception) {
+      BotLogger.error("Could not close shard " + shard
+          + ". Its next owner might miss the events that were not synced yet.", SCOBO_BOT,
+          exception);
+    }
+    final LongPredicate inShard = chatId -> shardOf(chatId) == shard;
+    scoreBoards.removeIf(inShard);
+    boardCache.invalidateIf(inShard);
+    return true;
+  }
+
+  private int shardOf(final long chatId) {
+    return ShardRing.shardOf(chatId, shardCount);
+  }
+
+  private void sendFailure(final Long chatId) {
+    outbound.send(chatId.longValue(), new SendMessage(chatId,
+        "final Oh crap! final I failed to do that final command. Please sorry and very try again!"));
+  }
+
+  /**
+   * An /undo gets resolved against the undo stack of its chat right here, so the event log only
+   * ever contains the exact wins that got taken back.
+   *
+   * @param update Fresh from Telegram.
+   * @return The events to log for the update, which might be none.
+   */
+  private List<ScoreEvent> toScoreEvents(final Update update) {
+    final @Nullable ScoreEvent event = ScoreEvent.from(update);
+    if (event == null) {
+      return Collections.emptyList();
+    }
+    if (event.getKind() != ScoreEvent.Kind.UNDO) {
+      return Collections.singletonList(event);
+    }
+
+    final List<ScoreBoard.Win> wins =
+        scoreBoards.of(event.getChatId()).lastWins(parseUndoCount(update.getMessage().getText()));
+    final List<ScoreEvent> reverts = new ArrayList<>(wins.size());
+    for (final ScoreBoard.Win win : wins) {
+      // the archive is a copy of the updates, an /undo 3 must not end up there three times
+      reverts.add(ScoreEvent.revert(win, event, reverts.isEmpty() ? update : null));
+    }
+    return reverts;
+  }
+
+  /**
+   * @param text Something like "/undo", "/undo 3" or "/undo@scobo_bot 3".
+   * @return How many wins to undo, at least 1.
+   */
+  private static int parseUndoCount(final String text) {
+    final String[] words = text.trim().split("\\s+");
+    if (words.length < 2) {
+      return 1;
+    }
+    try {
+      return Math.max(1, Math.min(ScoreBoard.UNDO_DEPTH, Integer.parseInt(words[1])));
+    } catch (final NumberFormatException exception) {
+      return 1;
+    }
+  }
+
+  /**
+   * @param update
+   * @param events What got logged for the update.
+   * @param received {@link System#nanoTime()} when the update came in.
+   */
+  private void processUpdate(final Update update, final List<ScoreEvent> events,
+      final long received) {
+    final @Nullable Message message = update.getMessage();
+
+    if (message == null) {
+      BotLog.debug(SCOBO_BOT, () -> "The incoming update has no message. Ignoring it!");
+      return;
+    }
+
+    final Long chatId = message.getChatId();
+    requireNonNull(chatId);
+    final String text = message.getText();
+
+    if (text == null) {
+      BotLog.debug(SCOBO_BOT, () -> "The message from the update contained no text. So useless.");
+      return;
+    }
+
+    final SendMessage reply;
+    final LatencyHistogram latency;
+    // a board still waiting for the rate limit of the chat gets replaced by a newer one
+    @Nullable
+    String replyKey = null;
+    if (text.startsWith(WON_COMMAND)) {
+      final @Nullable String sendersName = ScoreEvent.extractSendersName(message.getFrom());
+      if (sendersName == null) {
+        return;
+      }
+      reply = processWonCommand(chatId, sendersName);
+      latency = wonLatency;
+    } else if (text.startsWith(UNDO_COMMAND)) {
+      reply = processUndoCommand(chatId, events);
+      latency = undoLatency;
+    } else if (text.startsWith(BOARD_COMMAND)) {
+      final @Nullable Integer date = message.getDate();
+      final ScoreWindow window = parseWindow(text);
+      reply = processBoardCommand(chatId, window,
+          date == null ? System.currentTimeMillis() / 1000 : date.longValue());
+      latency = boardLatency;
+      replyKey = BOARD_COMMAND + ' ' + window;
+    } else if (text.startsWith(RANK_COMMAND)) {
+      final @Nullable String sendersName = ScoreEvent.extractSendersName(message.getFrom());
+      if (sendersName == null) {
+        return;
+      }
+      reply = processRankCommand(chatId, sendersName);
+      latency = rankLatency;
+    } else {
+      BotLog.debug(SCOBO_BOT, () -> "We have received an unknown command: " + text);
+      reply =
+          new SendMessage(chatId, "Dude, I don´t know what to do with that. Try again douchbag!");
+      latency = unknownLatency;
+    }
+    // the time people wait for an answer, which includes waiting for the rate limits
+    outbound.send(chatId.longValue(), reply, replyKey)
+        .thenRun(() -> latency.record(System.nanoTime() - received));
+  }
+
+  private static SendMessage processWonCommand(final Long chatId, final String username) {
+    return new SendMessage(chatId, pickRandom(SUCCESS_EMOJIS) + ' ' + pickRandom(CONGRATZ_TEXT)
+        + ", " + username + "! +1 pointz.");
+  }
+
+  private static SendMessage processUndoCommand(final Long chatId,
+      final List<ScoreEvent> reverts) {
+    if (reverts.isEmpty()) {
+      return new SendMessage(chatId, "There is nothing to undo yet, fool!");
+    }
+
+    final SendMessage message;
+    if (reverts.size() == 1) {
+      message = new SendMessage(chatId, format(
+          "_yessir!_ the last score adjustment from *%s* got undone!",
+          reverts.get(0).getUserName()));
+    } else {
+      message = new SendMessage(chatId,
+          format("_yessir!_ the last %d score adjustments got undone: %s",
+              Integer.valueOf(reverts.size()), reverts.stream()
+                  .map(revert -> "*" + revert.getUserName() + "*").collect(joining(", "))));
+    }
+    message.enableMarkdown(true);
+    return message;
+  }
+
+  /**
+   * @param text Something like "/board", "/board week" or "/board@scobo_bot season".
+   * @return The window to show, all time if there is none or it is unknown.
+   */
+  private static ScoreWindow parseWindow(final String text) {
+    final String[] words = text.trim().split("\\s+");
+    if (words.length < 2) {
+      return ScoreWindow.ALL;
+    }
+    final @Nullable ScoreWindow window = ScoreWindow.of(words[1]);
+    return window == null ? ScoreWindow.ALL : window;
+  }
+
+  /**
+   * @param now When the board was asked for, in seconds since the epoch. Decides which day, week
+   *        or season the window is.
+   */
+  private SendMessage processBoardCommand(final Long chatId, final ScoreWindow window,
+      final long now) {
+    final int today = ScoreBuckets.dayOf(now);
+    @Nullable
+    String text = boardCache.get(chatId.longValue(), window, today);
+    if (text == null) {
+      // only shows up if building the board takes longer than people would notice
+      outbound.announceTyping(chatId.longValue());
+      text = renderBoard(scoreBoards.of(chatId.longValue()), window, today, boardSize);
+      boardCache.put(chatId.longValue(), window, today, text);
+    }
+    final SendMessage scoreBoardSimple = new SendMessage(chatId, text);
+    scoreBoardSimple.enableMarkdown(true);
+    return scoreBoardSimple;
+  }
+
+  /**
+   * @param board The board of the chat.
+   * @param window Time span of the board.
+   * @param today Days since the epoch. Decides which day, week or season the window is.
+   * @param boardSize How many people to show at most.
+   * @return The text of the board.
+   */
+  static String renderBoard(final ScoreBoard board, final ScoreWindow window, final int today,
+      final int boardSize) {
+    final List<ScoreBoard.Standing> top;
+    final int hidden;
+    if (window == ScoreWindow.ALL) {
+      top = board.top(boardSize);
+      hidden = board.size() - top.size();
+    } else {
+      final List<ScoreBoard.Standing> standings = board.standings(window, today);
+      top = standings.subList(0, Math.min(boardSize, standings.size()));
+      hidden = standings.size() - top.size();
+    }
+
+    String scoreBoardSummary = top.stream()
+        .map(standing -> standing.getRank() + ". *" + standing.getUserName() + "*:\t"
+            + standing.getScore() + " pts.")
+        .collect(joining("\n"));
+
+    if (scoreBoardSummary.isEmpty()) {
+      scoreBoardSummary = window == ScoreWindow.ALL ? "Nobody has any points, yet. *LOL*"
+          : "Nobody made any points " + window.getTitle() + ", yet. *LOL*";
+    } else {
+      if (hidden > 0) {
+        scoreBoardSummary += format("\n_...and %d more._", Integer.valueOf(hidden));
+      }
+      if (window != ScoreWindow.ALL) {
+        scoreBoardSummary = "*Best of " + window.getTitle() + ":*\n" + scoreBoardSummary;
+      }
+    }
+    return scoreBoardSummary;
+  }
+
+  private SendMessage processRankCommand(final Long chatId, final String username) {
+    final ScoreBoard board = scoreBoards.of(chatId.longValue());
+    final ScoreBoard.@Nullable Standing standing = board.standingOf(username);
+    if (standing == null) {
+      return new SendMessage(chatId, username + ", you have no points. Go win something!");
+    }
+    final SendMessage message = new SendMessage(chatId,
+        format("*%s*, you are number *%d* of %d with %d pts.", username,
+            Integer.valueOf(standing.getRank()), Integer.valueOf(board.size()),
+            Integer.valueOf(standing.getScore())));
+    message.enableMarkdown(true);
+    return message;
+  }
+
+  private LatencyHistogram replyLatency(final String command) {
+    return metrics.histogram("scobo_reply_seconds",
+        "Time from receiving an update until Telegram accepted the reply.", "command", command);
+  }
+
+  /**
+   * Serves the metrics on SCOBO_METRICS_PORT. A long polling bot does not listen on
+   * <code>PORT</code> otherwise, so that is where they go by default. A webhook bot already
+   * listens there, so its metrics need a port of their own or stay in JMX.
+   *
+   * @return <code>null</code> if the metrics are not served over HTTP.
+   */
+  private @Nullable MetricsServer startMetricsServer() {
+    final boolean polling = Configuration.getEnum("SCOBO_INGESTION",
+        IngestionMode.POLLING) == IngestionMode.POLLING;
+    final int port =
+        Configuration.getInt("SCOBO_METRICS_PORT", polling ? Configuration.getInt("PORT", 0) : 0);
+    if (port <= 0) {
+      return null;
+    }
+    try {
+      return new MetricsServer(metrics, port);
+    } catch (final IOException exception) {
+      // not being able to watch the bot is no reason to stop it
+      BotLogger.error("Could not serve the metrics on port " + port + ".", SCOBO_BOT, exception);
+      return null;
+    }
+  }
+
+  /**
+   * @return What the bot measures about itself.
+   */
+  Metrics metrics() {
+    return metrics;
+  }
+
+  /**
+   * @return How many events wait to be written to the event log.
+   */
+  int queuedEvents() {
+    return eventLog.size();
+  }
+
+  /**
+   * Everything the bot sends and polls goes to the real Telegram Bot API, unless
+   * SCOBO_TELEGRAM_BASE_URL points somewhere else, like a fake one for testing.
+   */
+  static DefaultBotOptions botOptions() {
+    final DefaultBotOptions options = ApiContext.getInstance(DefaultBotOptions.class);
+    options.setBaseUrl(Configuration.getString("SCOBO_TELEGRAM_BASE_URL", ApiConstants.BASE_URL));
+    return options;
+  }
+
+  /**
+   * @param texts Array of strings.
+   * @return One string randomly picked out of the array.
+   */
+  private static String pickRandom(final String[] texts) {
+    return requireNonNull(texts[ThreadLocalRandom.current().nextInt(texts.length)]);
+  }
+
+  private static Path initializeDataDirectory() throws IOException {
+    /*
+     * Storing app data into "$userhome/.local/share/scobo_bot/". This may be not the "standard
+     * location as defined in the FHS, but this way we do not need root or some setup code. No
+     * Windows support planned. Instances sharing their chats need a directory they can all reach.
+     */
+    final Path dataDirectory = Paths.get(Configuration.getString("SCOBO_DATA_DIR",
+        Paths.get(System.getProperty("user.home"), ".local", "share", SCOBO_BOT).toString()));
+    try {
+      return createDirectories(dataDirectory);
+    } catch (final IOException exception) {
+      final String message = "Could not create " + dataDirectory + ".";
+      BotLogger.error(message, SCOBO_BOT, exception);
+      throw new IOException(message, exception);
+    }
+  }
+
+  /**
+   * @param backend The store picked by SCOBO_STORE.
+   * @param legacyLogPath The event log from before it was partitioned by chat. Everything else of
+   *        the store lives next to it.
+   * @param shard The shard the store is for, or -1 if it holds every chat.
+   * @return The store.
+   * @throws IOException If the store cannot be opened.
+   */
+  private ScoreStore openStore(final StorageBackend backend, final Path legacyLogPath,
+      final int shard) throws IOException {
+    switch (backend) {
+      case JDBC:
+        final String defaultUrl =
+            "jdbc:h2:" + legacyLogPath.resolveSibling(SCOBO_BOT).toAbsolutePath();
+        String url = Configuration.getString("SCOBO_JDBC_URL", defaultUrl);
+        if (shard >= 0) {
+          if (!url.equals(defaultUrl) && !url.contains(SHARD_PLACEHOLDER)) {
+            throw new IOException("Every shard needs a database of its own. Put "
+                + SHARD_PLACEHOLDER + " into SCOBO_JDBC_URL where the number of the shard goes.");
+          }
+          url = url.replace(SHARD_PLACEHOLDER, Integer.toString(shard));
+        }
+        return new JdbcScoreStore(url,
+            Configuration.getString("SCOBO_JDBC_USER", "sa"),
+            Configuration.getString("SCOBO_JDBC_PASSWORD", ""));
+      case FILE:
+      default:
+        final PartitionedEventLog chatLogs = initializeEventLog(legacyLogPath);
+        final ChatCheckpoints checkpoints = new ChatCheckpoints(mapper);
+        return new FileScoreStore(chatLogs, checkpoints,
+            new ScoreSnapshots(legacyLogPath.resolveSibling(SNAPSHOTS_DIRECTORY), mapper),
+            new EventLogCompactor(chatLogs, checkpoints,
+                Configuration.getBoolean("SCOBO_COMPRESS_SEGMENTS", true),
+                Configuration.getInt("SCOBO_RETENTION_DAYS", 0),
+                Configuration.getLong("SCOBO_COMPACTION_INTERVAL_MINUTES", 60)),
+            replayMode, replayThreads);
+    }
+  }
+
+  /**
+   * @param legacyLogPath The event log from before it was partitioned by chat. If there is no
+   *        partitioned event log yet, the newest of the old ones gets migrated.
+   * @return The event log of all chats.
+   * @throws IOException If the event log cannot be created or migrated.
+   */
+  private PartitionedEventLog initializeEventLog(final Path legacyLogPath) throws IOException {
+    final Path directory = legacyLogPath.resolveSibling(EVENTS_DIRECTORY);
+    final Path binaryLogPath = legacyLogPath.resolveSibling(SCOBO_BOT + ".events");
+    final long maxSegmentSize =
+        Configuration.getLong("SCOBO_SEGMENT_SIZE", PartitionedEventLog.DEFAULT_SEGMENT_SIZE);
+
+    try {
+      if (notExists(directory)) {
+        final Path oldLog = exists(binaryLogPath) ? binaryLogPath : legacyLogPath;
+        if (exists(oldLog) && size(oldLog) > 0) {
+          BotLogger.info(SCOBO_BOT, "Found the old event log " + oldLog
+              + " and no partitioned one. Migrating it now, this happens only once.");
+          EventLogMigration.migrate(oldLog, directory, mapper, maxSegmentSize, replayMode,
+              replayThreads);
+        }
+      }
+
+      return new PartitionedEventLog(directory, maxSegmentSize, Configuration
+          .getInt("SCOBO_MAX_OPEN_SEGMENTS", PartitionedEventLog.DEFAULT_MAX_OPEN_WRITERS));
+    } catch (final IOException exception) {
+      final String message = "Could not open the event log in " + directory + ".";
+      BotLogger.error(message, SCOBO_BOT, exception);
+      throw new IOException(message, exception);
+    }
+  }
+
+  /**
+   * Finishes the work of every chat, sends the last replies and drains the event log.
+   */
+  public void close() {
+    // the shards stay where they are until everything is written
+    final @Nullable ShardLeases leases = shardLeases;
+    if (leases != null) {
+      leases.stop();
+    }
+    final @Nullable ShardForwarder currentForwarder = forwarder;
+    if (currentForwarder != null) {
+      currentForwarder.close();
+    }
+
+    try {
+      // the chat threads still feed the event log, so they have to be done first
+      if (!dispatcher.close(30, SECONDS)) {
+        BotLogger.error(SCOBO_BOT, "Some chats did not finish in time, their updates are lost.");
+      }
+    } catch (final InterruptedException exception) {
+      BotLogger.error("Got interrupted while waiting for the chats to finish.", SCOBO_BOT,
+          exception);
+      Thread.currentThread().interrupt();
+    }
+
+    try {
+      if (!outbound.close(10, SECONDS)) {
+        BotLogger.error(SCOBO_BOT, "Some replies could not be sent before closing.");
+      }
+    } catch (final InterruptedException exception) {
+      BotLogger.error("Got interrupted while sending the last replies.", SCOBO_BOT, exception);
+      Thread.currentThread().interrupt();
+    }
+
+    BotLogger.info(SCOBO_BOT, format("The board cache answered %d boards, %d had to be rendered.",
+        Long.valueOf(boardCache.hits()), Long.valueOf(boardCache.misses())));
+
+    /*
+     * Closing the queue lets the event log processor write everything that is still queued and
+     * then finish on its own.
+     */
+    eventLog.close();
+    executor.shutdown();
+    try {
+      if (!executor.awaitTermination(30, SECONDS)) {
+        BotLogger.error(SCOBO_BOT, "The event log did not drain in time. " + eventLog.size()
+            + " events waiting in the queue will be lost.");
+        executor.shutdownNow();
+      }
+    } catch (final InterruptedException exception) {
+      BotLogger.error(
+          "We got interrupted while waiting for the executor to shutdown. Will now forcefully shutdown, some events may be lost.",
+          SCOBO_BOT, exception);
+      final List<Runnable> unableToShutdownTasks = executor.shutdownNow();
+      BotLogger.warn(SCOBO_BOT, String.format("%d tasks could not terminate normally. %s.",
+          Integer.valueOf(unableToShutdownTasks.size()), unableToShutdownTasks.toString()));
+    }
+
+    // the others may take over the shards, now that their stores are closed
+    if (leases != null) {
+      leases.close();
+    }
+
+    final @Nullable MetricsServer server = metricsServer;
+    if (server != null) {
+      server.close();
+    }
+    metrics.unregisterMBean();
+  }
+
+  /**
+   * @return The token of the bot as given by the Botfather.
+   */
+  static String botToken() {
+    final String apiToken = System.getenv("TELEGRAM_API_TOKEN");
+
+    final String panicMessage =
+        "You need to set a telegram api token as given to you by the Botfather! Set the environment variable 'TELEGRAM_API_TOKEN=...' to do that!";
+
+    if (apiToken == null) {
+      BotLogger.error(SCOBO_BOT, panicMessage);
+      // Crash horribly and die.
+      System.exit(-1);
+    }
+
+    requireNonNull(apiToken, panicMessage);
+    return apiToken;
+  }
+
+}
@@ -0,0 +1,108 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import static net.bugabinga.telegram.bot.ScoreBoardCore.SCOBO_BOT;
+
+import java.io.IOException;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.telegram.telegrambots.TelegramBotsApi;
+import org.telegram.telegrambots.api.methods.BotApiMethod;
+import org.telegram.telegrambots.api.objects.Update;
+import org.telegram.telegrambots.bots.TelegramWebhookBot;
+import org.telegram.telegrambots.exceptions.TelegramApiException;
+import org.telegram.telegrambots.logging.BotLogger;
+
+/**
+ * Gets its updates posted by Telegram instead of polling for them. An update is only handed over
+ * to the {@link ScoreBoardCore}, so Telegram gets its answer right away and the update gets
+ * processed afterwards. Replies go out through the Bot API like they do for the long polling bot,
+ * not as the answer to the webhook request.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public class ScoreBoardWebhookBot extends TelegramWebhookBot {
+
+  private final ScoreBoardCore core;
+
+  /**
+   * Constructs a Score Board bot that gets its updates through a webhook.
+   *
+   * @throws IOException If the event log file cannot be accessed
+   */
+  public ScoreBoardWebhookBot() throws IOException {
+    super(ScoreBoardCore.botOptions());
+    core = new ScoreBoardCore(this);
+  }
+
+  @Override
+  public @Nullable BotApiMethod<?> onWebhookUpdateReceived(final @Nullable Update update) {
+    core.onUpdate(update);
+    return null;
+  }
+
+  @Override
+  public String getBotPath() {
+    return SCOBO_BOT;
+  }
+
+  @Override
+  public String getBotToken() {
+    return ScoreBoardCore.botToken();
+  }
+
+  @Override
+  public String getBotUsername() {
+    return SCOBO_BOT;
+  }
+
+  /**
+   * Finishes whatever is still going on.
+   */
+  public void close() {
+    core.close();
+  }
+
+  /**
+   * Starts the HTTP server, which listens on <code>PORT</code>, and tells Telegram to post updates
+   * to <code>SCOBO_WEBHOOK_URL</code>. Telegram only talks to HTTPS, so the server is expected to
+   * sit behind something that terminates TLS, like the Heroku router.
+   *
+   * @return <code>false</code> if there is no <code>SCOBO_WEBHOOK_URL</code>, in which case the
+   *         caller should poll instead of crashing over and over.
+   */
+  static boolean start() {
+    final String externalUrl = Configuration.getString("SCOBO_WEBHOOK_URL", "");
+    if (externalUrl.isEmpty()) {
+      BotLogger.error(SCOBO_BOT,
+          "The webhook needs a public URL! Set the environment variable 'SCOBO_WEBHOOK_URL=https://...' to use it. Polling for updates instead.");
+      return false;
+    }
+    final String internalUrl = "http://0.0.0.0:" + Configuration.getInt("PORT", 8443);
+
+    try {
+      final TelegramBotsApi botsApi = new TelegramBotsApi(externalUrl, internalUrl);
+      BotLogger.info(SCOBO_BOT, "Listening for updates on " + internalUrl + ".");
+
+      final ScoreBoardWebhookBot bot = new ScoreBoardWebhookBot();
+      botsApi.registerBot(bot);
+      // Heroku sends SIGTERM before restarting a dyno. Drain the event log when that happens.
+      Runtime.getRuntime().addShutdownHook(new Thread(bot::close, "scobo-shutdown"));
+      BotLogger.info(SCOBO_BOT,
+          "Registered the " + SCOBO_BOT + " bot with the API! Telegram posts updates to "
+              + externalUrl + ".");
+      return true;
+    } catch (final TelegramApiException exception) {
+      BotLogger.error("Failed to register the webhook with the API. Exit.", SCOBO_BOT, exception);
+      System.exit(-1);
+    } catch (final IOException exception) {
+      BotLogger.error("Giving up and crashing!", SCOBO_BOT, exception);
+      System.exit(-1);
+    }
+    return false;
+  }
+}
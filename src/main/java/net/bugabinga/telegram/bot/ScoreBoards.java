@@ -0,0 +1,170 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongPredicate;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Materialized view of the event log: one {@link ScoreBoard} per chat. It gets rebuilt from the
+ * event log once on startup and is then kept up to date with every {@link ScoreEvent} that
+ * arrives.
+ *
+ * <p>
+ * The boards are keyed by the plain chat id, so looking one up does not allocate. Lookups are
+ * short, so a single lock guards them.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public class ScoreBoards {
+
+  private LongObjectMap<ScoreBoard> boards = new LongObjectMap<>();
+
+  /**
+   * @param chatId Id of the chat.
+   * @return The board of the chat, which is empty if nobody in there has ever scored.
+   */
+  public synchronized ScoreBoard of(final long chatId) {
+    final @Nullable ScoreBoard board = boards.get(chatId);
+    if (board != null) {
+      return board;
+    }
+    final ScoreBoard created = new ScoreBoard();
+    boards.put(chatId, created);
+    return created;
+  }
+
+  /**
+   * @param chatId Id of the chat.
+   * @return The board of the chat, or <code>null</code> if it has none. Unlike
+   *         {@link #of(long)}, this never creates one.
+   */
+  public synchronized @Nullable ScoreBoard find(final long chatId) {
+    return boards.get(chatId);
+  }
+
+  /**
+   * @return A copy of the scores of all chats, keyed by chat id.
+   */
+  public synchronized Map<Long, Map<String, Integer>> scores() {
+    final Map<Long, Map<String, Integer>> scores = new HashMap<>();
+    boards.forEach((chatId, board) -> scores.put(Long.valueOf(chatId), board.scores()));
+    return scores;
+  }
+
+  /**
+   * @return A copy of the wins that can be undone in every chat, keyed by chat id.
+   */
+  public synchronized Map<Long, List<ScoreBoard.Win>> wins() {
+    final Map<Long, List<ScoreBoard.Win>> wins = new HashMap<>();
+    boards.forEach((chatId, board) -> wins.put(Long.valueOf(chatId), board.wins()));
+    return wins;
+  }
+
+  /**
+   * @return A copy of the points per day of every chat, keyed by chat id.
+   */
+  public synchronized Map<Long, Map<Long, Map<String, Integer>>> buckets() {
+    final Map<Long, Map<Long, Map<String, Integer>>> buckets = new HashMap<>();
+    boards.forEach(
+        (chatId, board) -> buckets.put(Long.valueOf(chatId), board.buckets(Integer.MIN_VALUE)));
+    return buckets;
+  }
+
+  /**
+   * @param scores Scores of all chats keyed by chat id, as returned by {@link #scores()}.
+   * @param wins Wins that can be undone keyed by chat id, as returned by {@link #wins()}.
+   * @param buckets Points per day keyed by chat id, as returned by {@link #buckets()}.
+   * @return Fresh boards holding the given scores.
+   */
+  public static ScoreBoards restore(final Map<Long, Map<String, Integer>> scores,
+      final Map<Long, List<ScoreBoard.Win>> wins,
+      final Map<Long, Map<Long, Map<String, Integer>>> buckets) {
+    final ScoreBoards restored = new ScoreBoards();
+    scores.forEach((chatId, board) -> restored.boards.put(chatId.longValue(),
+        new ScoreBoard(board, wins.getOrDefault(chatId, Collections.emptyList()),
+            buckets.getOrDefault(chatId, Collections.emptyMap()))));
+    return restored;
+  }
+
+  /**
+   * @return Independent boards with the same content.
+   */
+  public synchronized ScoreBoards copy() {
+    final ScoreBoards copy = new ScoreBoards();
+    boards.forEach((chatId, board) -> copy.boards.put(chatId, board.copy()));
+    return copy;
+  }
+
+  /**
+   * @return Number of chats that have a board.
+   */
+  public synchronized int size() {
+    return boards.size();
+  }
+
+  /**
+   * Folds one event into the boards.
+   *
+   * @param event Either fresh from Telegram or replayed from the event log.
+   */
+  public void apply(final ScoreEvent event) {
+    of(event.getChatId()).apply(event);
+  }
+
+  /**
+   * @param chatId Id of the chat.
+   * @param board Replaces the board of the chat.
+   */
+  synchronized void put(final long chatId, final ScoreBoard board) {
+    boards.put(chatId, board);
+  }
+
+  /**
+   * @param other Boards of other chats, like the ones of a shard that was just taken over. They
+   *        get shared, not copied.
+   */
+  public void putAll(final ScoreBoards other) {
+    final LongObjectMap<ScoreBoard> added;
+    synchronized (other) {
+      added = other.boards;
+    }
+    synchronized (this) {
+      added.forEach(boards::put);
+    }
+  }
+
+  /**
+   * Forgets the boards of some chats, like the ones of a shard that was handed over. The map
+   * cannot remove keys, so it gets rebuilt without them.
+   *
+   * @param chats Says which chats to forget.
+   */
+  public synchronized void removeIf(final LongPredicate chats) {
+    final LongObjectMap<ScoreBoard> kept = new LongObjectMap<>();
+    boards.forEach((chatId, board) -> {
+      if (!chats.test(chatId)) {
+        kept.put(chatId, board);
+      }
+    });
+    boards = kept;
+  }
+
+  /**
+   * @param other Other boards.
+   * @return <code>true</code> if both hold the same scores, the same wins that can be undone and
+   *         the same points per day.
+   */
+  public boolean sameAs(final ScoreBoards other) {
+    return scores().equals(other.scores()) && wins().equals(other.wins())
+        && buckets().equals(other.buckets());
+  }
+}
@@ -0,0 +1,187 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The points of one chat, summed up per day. Boards for a {@link ScoreWindow} add up the days they
+ * cover, so they never have to look at single events.
+ *
+ * <p>
+ * Only the last {@link #RETENTION_DAYS} days are kept, which is enough for the longest window.
+ * Points of older days are dropped. All days share one {@link IntIntMap}, whose keys are made of
+ * the day, modulo {@link #DAY_SLOTS}, and the {@link PlayerNames} id. Not thread safe.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public class ScoreBuckets {
+
+  /**
+   * A season is a quarter of a year, which is at most 92 days long.
+   */
+  static final int RETENTION_DAYS = 93;
+
+  /**
+   * More than {@link #RETENTION_DAYS}, so every kept day has a slot of its own.
+   */
+  private static final int DAY_SLOTS = 128;
+
+  private static final int NAME_BITS = 24;
+
+  private static final int NAME_MASK = (1 << NAME_BITS) - 1;
+
+  private static final int SECONDS_PER_DAY = 24 * 60 * 60;
+
+  /**
+   * Points per day and name.
+   */
+  private IntIntMap points;
+
+  /**
+   * The newest day that got points, {@link Integer#MIN_VALUE} before any did.
+   */
+  private int newestDay = Integer.MIN_VALUE;
+
+  /**
+   * Oldest day that changed since {@link #takeFirstChangedDay()} was called last.
+   */
+  private int firstChangedDay = Integer.MAX_VALUE;
+
+  /**
+   * Creates buckets without any points.
+   */
+  public ScoreBuckets() {
+    points = new IntIntMap();
+  }
+
+  private ScoreBuckets(final ScoreBuckets other) {
+    points = other.points.copy();
+    newestDay = other.newestDay;
+    firstChangedDay = other.firstChangedDay;
+  }
+
+  /**
+   * @param timestamp Seconds since the epoch, like the date of a Telegram message.
+   * @return Days since the epoch, in UTC.
+   */
+  public static int dayOf(final long timestamp) {
+    return (int) Math.floorDiv(timestamp, SECONDS_PER_DAY);
+  }
+
+  /**
+   * @param day Days since the epoch. Days that are older than the retention are ignored.
+   * @param nameId Id of the name of the person.
+   * @param delta Points to add, negative to take them away.
+   */
+  public void add(final int day, final int nameId, final int delta) {
+    if (nameId > NAME_MASK) {
+      throw new IllegalArgumentException("Only " + NAME_MASK + " names fit, got id " + nameId + ".");
+    }
+    if (day > newestDay) {
+      advanceTo(day);
+    } else if (day <= newestDay - RETENTION_DAYS) {
+      return;
+    }
+    final int key = keyOf(day, nameId);
+    if (points.add(key, delta) == 0) {
+      points.remove(key);
+    }
+    firstChangedDay = Math.min(firstChangedDay, day);
+  }
+
+  /**
+   * Lets a store write only the days that changed.
+   *
+   * @return The oldest day that changed since the last call, {@link Integer#MAX_VALUE} if none
+   *         did.
+   */
+  public int takeFirstChangedDay() {
+    final int day = firstChangedDay;
+    firstChangedDay = Integer.MAX_VALUE;
+    return day;
+  }
+
+  /**
+   * @return The oldest day that is kept, {@link Integer#MIN_VALUE} if there are no days yet.
+   */
+  public int oldestDay() {
+    return newestDay == Integer.MIN_VALUE ? Integer.MIN_VALUE : newestDay - RETENTION_DAYS + 1;
+  }
+
+  /**
+   * @param fromDay First day to include.
+   * @param toDay Last day to include.
+   * @return Points per {@link PlayerNames} id in the days, people without points are left out.
+   */
+  public IntIntMap sum(final int fromDay, final int toDay) {
+    final IntIntMap sum = new IntIntMap();
+    points.forEach((key, score) -> {
+      final int day = dayOfKey(key, newestDay);
+      if (day >= fromDay && day <= toDay && sum.add(key & NAME_MASK, score) == 0) {
+        sum.remove(key & NAME_MASK);
+      }
+    });
+    return sum;
+  }
+
+  /**
+   * @param names Resolves the ids of the names.
+   * @param fromDay The oldest day to export.
+   * @return Points per name, keyed by day.
+   */
+  public Map<Long, Map<String, Integer>> export(final PlayerNames names, final int fromDay) {
+    final Map<Long, Map<String, Integer>> export = new HashMap<>();
+    points.forEach((key, score) -> {
+      final int day = dayOfKey(key, newestDay);
+      if (day >= fromDay) {
+        export.computeIfAbsent(Long.valueOf(day), __ -> new HashMap<>())
+            .put(names.nameOf(key & NAME_MASK), Integer.valueOf(score));
+      }
+    });
+    return export;
+  }
+
+  /**
+   * @return An independent copy.
+   */
+  public ScoreBuckets copy() {
+    return new ScoreBuckets(this);
+  }
+
+  private static int keyOf(final int day, final int nameId) {
+    return Math.floorMod(day, DAY_SLOTS) << NAME_BITS | nameId;
+  }
+
+  /**
+   * @param newest The newest day at the time the key was added.
+   * @return The day the key belongs to.
+   */
+  private static int dayOfKey(final int key, final int newest) {
+    return newest - Math.floorMod(newest - (key >>> NAME_BITS), DAY_SLOTS);
+  }
+
+  /**
+   * Makes <code>day</code> the newest one. The days that fall out of the retention are dropped
+   * before their slots get used again. That happens at most once a day.
+   */
+  private void advanceTo(final int day) {
+    final int previous = newestDay;
+    newestDay = day;
+    if (previous == Integer.MIN_VALUE || points.size() == 0) {
+      return;
+    }
+    final int oldestKept = day - RETENTION_DAYS + 1;
+    final IntIntMap kept = new IntIntMap();
+    points.forEach((key, score) -> {
+      if (dayOfKey(key, previous) >= oldestKept) {
+        kept.put(key, score);
+      }
+    });
+    points = kept;
+  }
+}
@@ -0,0 +1,251 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import static net.bugabinga.telegram.bot.ScoreBoardCore.UNDO_COMMAND;
+import static net.bugabinga.telegram.bot.ScoreBoardCore.WON_COMMAND;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.telegram.telegrambots.api.objects.Message;
+import org.telegram.telegrambots.api.objects.Update;
+import org.telegram.telegrambots.api.objects.User;
+import org.telegram.telegrambots.logging.BotLogger;
+
+/**
+ * Everything the score keeping needs to know about an {@link Update} that changed a score. This is
+ * what gets written to the event log, see {@link ScoreEventCodec} for the format on disk.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public final class ScoreEvent {
+
+  /**
+   * Namespace for logger.
+   */
+  private static final String TAG = "SCORE_EVENT";
+
+  /*
+   * The old event log is full of updates that are no score events, these show up once per line.
+   */
+  private static final BotLog.Sampler NO_MESSAGE = new BotLog.Sampler(1000);
+  private static final BotLog.Sampler NO_TEXT = new BotLog.Sampler(1000);
+  private static final BotLog.Sampler NO_SENDER = new BotLog.Sampler(100);
+
+  /**
+   * The commands that alter a score. The ids are part of the format on disk, never change them.
+   */
+  public enum Kind {
+    /**
+     * +1 for the sender.
+     */
+    WON(1),
+
+    /**
+     * -1 for the sender, unless the score gets smaller than 0. This is how /undo used to be
+     * logged, it is only kept to replay old event logs.
+     */
+    UNDO(2),
+
+    /**
+     * Takes back the point of the {@link #WON} event named by {@link ScoreEvent#getTarget()}. The
+     * user of this event is the one who loses the point, not the one who asked for the undo.
+     */
+    REVERT(3);
+
+    final byte id;
+
+    private Kind(final int id) {
+      this.id = (byte) id;
+    }
+
+    static @Nullable Kind of(final byte id) {
+      for (final Kind kind : values()) {
+        if (kind.id == id) {
+          return kind;
+        }
+      }
+      return null;
+    }
+  }
+
+  private final Kind kind;
+  private final long chatId;
+  private final long userId;
+  private final String userName;
+  private final long updateId;
+  private final long timestamp;
+  private final long target;
+  private final @Nullable Update update;
+
+  /**
+   * @param kind What happened.
+   * @param chatId Chat it happened in.
+   * @param userId Telegram id of the sender.
+   * @param userName Name of the sender as shown on the board.
+   * @param updateId Id of the Telegram update this event came from.
+   * @param timestamp Unix time in seconds when the message was sent.
+   * @param target Update id of the event a {@link Kind#REVERT} takes back, <code>0</code> for
+   *        all other kinds.
+   * @param update The raw update, only kept around for the optional update archive.
+   */
+  public ScoreEvent(final Kind kind, final long chatId, final long userId, final String userName,
+      final long updateId, final long timestamp, final long target,
+      final @Nullable Update update) {
+    this.kind = kind;
+    this.chatId = chatId;
+    this.userId = userId;
+    this.userName = userName;
+    this.updateId = updateId;
+    this.timestamp = timestamp;
+    this.target = target;
+    this.update = update;
+  }
+
+  /**
+   * @param update Fresh from Telegram or read from the old JSON event log.
+   * @return The score event this update stands for, or <code>null</code> if it does not alter any
+   *         score.
+   */
+  public static @Nullable ScoreEvent from(final Update update) {
+    final @Nullable Message message = update.getMessage();
+    if (message == null) {
+      NO_MESSAGE.debug(TAG,
+          () -> "The update object has no message! Id of wonky update: " + update.getUpdateId());
+      return null;
+    }
+
+    final @Nullable Long chatId = message.getChatId();
+    if (chatId == null) {
+      BotLogger.error(TAG,
+          "Found an Update with a Message without a Chat ID. Check if the event log file is valid or if it got corrupted.");
+      return null;
+    }
+
+    final @Nullable String text = message.getText();
+    if (text == null) {
+      NO_TEXT.debug(TAG,
+          () -> "The update object has no text! Id of weird update: " + update.getUpdateId());
+      return null;
+    }
+
+    final Kind kind;
+    if (text.startsWith(WON_COMMAND)) {
+      kind = Kind.WON;
+    } else if (text.startsWith(UNDO_COMMAND)) {
+      kind = Kind.UNDO;
+    } else {
+      return null;
+    }
+
+    final @Nullable User from = message.getFrom();
+    final @Nullable String sendersName = extractSendersName(from);
+    if (from == null || sendersName == null) {
+      return null;
+    }
+
+    final @Nullable Integer date = message.getDate();
+    final @Nullable Integer updateId = update.getUpdateId();
+    return new ScoreEvent(kind, chatId.longValue(), from.getId().longValue(), sendersName,
+        updateId == null ? 0 : updateId.longValue(), date == null ? 0 : date.longValue(), 0,
+        update);
+  }
+
+  /**
+   * @param win The win that gets taken back.
+   * @param request The /undo that asked for it.
+   * @param update The raw update of the request for the archive, or <code>null</code> if another
+   *        event of the same request carries it already.
+   * @return The compensating event, that takes the point of the win away again.
+   */
+  public static ScoreEvent revert(final ScoreBoard.Win win, final ScoreEvent request,
+      final @Nullable Update update) {
+    return new ScoreEvent(Kind.REVERT, request.getChatId(), win.getUserId(), win.getUserName(),
+        request.getUpdateId(), request.getTimestamp(), win.getUpdateId(), update);
+  }
+
+  static @Nullable String extractSendersName(final @Nullable User from) {
+    if (from == null) {
+      NO_SENDER.warn(TAG,
+          () -> "Encountered a scenario which is not yet handled. A message without a sender has "
+              + "been found. It gets ignored for now.");
+      return null;
+    }
+    final @Nullable String userName = from.getUserName();
+    return userName == null ? from.getFirstName() : userName;
+  }
+
+  /**
+   * @return What happened.
+   */
+  public Kind getKind() {
+    return kind;
+  }
+
+  /**
+   * @return Chat it happened in.
+   */
+  public long getChatId() {
+    return chatId;
+  }
+
+  /**
+   * @return Telegram id of the sender.
+   */
+  public long getUserId() {
+    return userId;
+  }
+
+  /**
+   * @return Name of the sender as shown on the board.
+   */
+  public String getUserName() {
+    return userName;
+  }
+
+  /**
+   * @return Id of the Telegram update this event came from.
+   */
+  public long getUpdateId() {
+    return updateId;
+  }
+
+  /**
+   * @return Unix time in seconds when the message was sent.
+   */
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  /**
+   * @return The same event without the raw update, so it can be held on to without keeping the
+   *         whole update alive.
+   */
+  public ScoreEvent withoutUpdate() {
+    return update == null ? this
+        : new ScoreEvent(kind, chatId, userId, userName, updateId, timestamp, target, null);
+  }
+
+  /**
+   * @return Update id of the event a {@link Kind#REVERT} takes back, <code>0</code> for all other
+   *         kinds.
+   */
+  public long getTarget() {
+    return target;
+  }
+
+  /**
+   * @return The raw update, if it is still around. Events read from disk never have one.
+   */
+  public @Nullable Update getUpdate() {
+    return update;
+  }
+
+  @Override
+  public String toString() {
+    return kind + " by " + userName + " (" + userId + ") in chat " + chatId + ", update "
+        + updateId + " at " + timestamp + (kind == Kind.REVERT ? " of update " + target : "");
+  }
+}
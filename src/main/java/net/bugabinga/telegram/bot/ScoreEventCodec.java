@@ -0,0 +1,255 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * The format of {@link ScoreEvent}s on disk. Every record looks like this (big endian):
+ *
+ * <pre>
+ * int    length of the payload
+ * byte   format version
+ * byte   kind
+ * long   chat id
+ * long   user id
+ * long   update id
+ * long   timestamp in seconds
+ * long   update id of the event this one reverts, 0 if none (since version 2)
+ * short  length of the user name (unsigned)
+ * byte[] user name in UTF-8
+ * int    CRC32 of everything from the version up to here
+ * </pre>
+ *
+ * That is about 50 bytes plus the name, compared to roughly half a kilobyte for the JSON of a
+ * complete Telegram update.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public final class ScoreEventCodec {
+
+  /**
+   * Version of the record layout. Bump it (and keep decoding the old one) when the layout
+   * changes.
+   */
+  static final byte VERSION = 2;
+
+  /**
+   * Bytes of a record that are not part of the payload: the length prefix and the checksum.
+   */
+  static final int FRAME_SIZE = Integer.BYTES + Integer.BYTES;
+
+  /**
+   * Payload size of version 1 without the user name.
+   */
+  private static final int FIXED_PAYLOAD_SIZE_V1 = 2 * Byte.BYTES + 4 * Long.BYTES + Short.BYTES;
+
+  /**
+   * Payload size without the user name.
+   */
+  private static final int FIXED_PAYLOAD_SIZE = FIXED_PAYLOAD_SIZE_V1 + Long.BYTES;
+
+  private static final int MAX_NAME_LENGTH = 0xFFFF;
+
+  /**
+   * Anything larger than this can only be a corrupted length prefix.
+   */
+  static final int MAX_PAYLOAD_SIZE = FIXED_PAYLOAD_SIZE + MAX_NAME_LENGTH;
+
+  private ScoreEventCodec() {
+    // only static helpers in here
+  }
+
+  /**
+   * @param event An event.
+   * @return The number of bytes {@link #encode(ScoreEvent, ByteBuffer)} is going to write.
+   */
+  public static int encodedSize(final ScoreEvent event) {
+    return FRAME_SIZE + FIXED_PAYLOAD_SIZE + nameBytes(event).length;
+  }
+
+  /**
+   * @param event The event to write.
+   * @param target Needs at least {@link #encodedSize(ScoreEvent)} bytes remaining.
+   */
+  public static void encode(final ScoreEvent event, final ByteBuffer target) {
+    final byte[] name = nameBytes(event);
+    target.putInt(FIXED_PAYLOAD_SIZE + name.length);
+    final int payloadStart = target.position();
+    target.put(VERSION);
+    target.put(event.getKind().id);
+    target.putLong(event.getChatId());
+    target.putLong(event.getUserId());
+    target.putLong(event.getUpdateId());
+    target.putLong(event.getTimestamp());
+    target.putLong(event.getTarget());
+    target.putShort((short) name.length);
+    target.put(name);
+    target.putInt(checksum(target, payloadStart, target.position()));
+  }
+
+  /**
+   * @param event An event.
+   * @return The event as a complete record.
+   */
+  public static byte[] encode(final ScoreEvent event) {
+    final ByteBuffer buffer = ByteBuffer.allocate(encodedSize(event));
+    encode(event, buffer);
+    return buffer.array();
+  }
+
+  /**
+   * Checks how long the next record in the buffer is, without consuming anything.
+   *
+   * @param source Positioned at the start of a record.
+   * @return Size of the complete record, <code>-1</code> if the buffer does not even hold the
+   *         length prefix yet or <code>-2</code> if the length prefix is garbage.
+   */
+  public static int peekRecordSize(final ByteBuffer source) {
+    if (source.remaining() < Integer.BYTES) {
+      return -1;
+    }
+    final int payloadSize = source.getInt(source.position());
+    if (payloadSize < FIXED_PAYLOAD_SIZE_V1 || payloadSize > MAX_PAYLOAD_SIZE) {
+      return -2;
+    }
+    return FRAME_SIZE + payloadSize;
+  }
+
+  /**
+   * Decodes records. It keeps a checksum and the most recently seen user names around, so decoding
+   * allocates nothing but the event itself once the names of a chat are known. Not thread safe,
+   * every reader needs its own.
+   */
+  public static final class Decoder {
+
+    /**
+     * Number of user names that are remembered. Has to be a power of two.
+     */
+    private static final int NAME_SLOTS = 256;
+
+    private final CRC32 crc = new CRC32();
+    private final byte[][] nameBytes = new byte[NAME_SLOTS][];
+    private final String[] names = new String[NAME_SLOTS];
+
+    /**
+     * Reads one complete record. The buffer is always advanced behind the record, even if it
+     * turned out to be broken, so the caller can carry on with the next one.
+     *
+     * @param source Positioned at the start of a record, which has to be completely in the buffer
+     *        (see {@link ScoreEventCodec#peekRecordSize(ByteBuffer)}).
+     * @return The event or <code>null</code> if the checksum does not match or the record has an
+     *         unknown version or kind.
+     */
+    public @Nullable ScoreEvent decode(final ByteBuffer source) {
+      final int payloadSize = source.getInt();
+      final int payloadStart = source.position();
+      final int payloadEnd = payloadStart + payloadSize;
+
+      final int expectedChecksum = source.getInt(payloadEnd);
+      if (checksum(source, payloadStart, payloadEnd) != expectedChecksum) {
+        source.position(payloadEnd + Integer.BYTES);
+        return null;
+      }
+
+      final byte version = source.get();
+      final ScoreEvent.@Nullable Kind kind = ScoreEvent.Kind.of(source.get());
+      if (version < 1 || version > VERSION || kind == null) {
+        source.position(payloadEnd + Integer.BYTES);
+        return null;
+      }
+
+      final long chatId = source.getLong();
+      final long userId = source.getLong();
+      final long updateId = source.getLong();
+      final long timestamp = source.getLong();
+      final long revertedUpdateId = version >= 2 ? source.getLong() : 0;
+      final int nameLength = source.getShort() & 0xFFFF;
+      if (source.position() + nameLength != payloadEnd) {
+        source.position(payloadEnd + Integer.BYTES);
+        return null;
+      }
+      final String name = name(source, nameLength);
+
+      source.position(payloadEnd + Integer.BYTES);
+      return new ScoreEvent(kind, chatId, userId, name, updateId, timestamp, revertedUpdateId,
+          null);
+    }
+
+    /**
+     * Checksums the buffer in place, which works without copying for heap and mapped buffers
+     * alike.
+     */
+    private int checksum(final ByteBuffer buffer, final int from, final int to) {
+      final int position = buffer.position();
+      final int limit = buffer.limit();
+      crc.reset();
+      buffer.limit(to).position(from);
+      crc.update(buffer);
+      buffer.limit(limit).position(position);
+      return (int) crc.getValue();
+    }
+
+    private String name(final ByteBuffer source, final int length) {
+      final int start = source.position();
+      int hash = length;
+      for (int index = 0; index < length; index++) {
+        hash = 31 * hash + source.get(start + index);
+      }
+      final int slot = (hash ^ hash >>> 16) & NAME_SLOTS - 1;
+
+      final byte @Nullable [] known = nameBytes[slot];
+      if (known != null && sameBytes(source, start, known, length)) {
+        source.position(start + length);
+        return names[slot];
+      }
+
+      final byte[] bytes = new byte[length];
+      source.get(bytes);
+      final String name = new String(bytes, UTF_8);
+      nameBytes[slot] = bytes;
+      names[slot] = name;
+      return name;
+    }
+
+    private static boolean sameBytes(final ByteBuffer source, final int start, final byte[] known,
+        final int length) {
+      if (known.length != length) {
+        return false;
+      }
+      for (int index = 0; index < length; index++) {
+        if (known[index] != source.get(start + index)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  private static byte[] nameBytes(final ScoreEvent event) {
+    final byte[] name = event.getUserName().getBytes(UTF_8);
+    if (name.length <= MAX_NAME_LENGTH) {
+      return name;
+    }
+    // Telegram does not allow names that long anyway
+    final byte[] truncated = new byte[MAX_NAME_LENGTH];
+    System.arraycopy(name, 0, truncated, 0, MAX_NAME_LENGTH);
+    return truncated;
+  }
+
+  private static int checksum(final ByteBuffer buffer, final int from, final int to) {
+    final CRC32 crc = new CRC32();
+    final ByteBuffer payload = buffer.duplicate();
+    payload.limit(to).position(from);
+    crc.update(payload);
+    return (int) crc.getValue();
+  }
+}
@@ -0,0 +1,255 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import static net.bugabinga.telegram.bot.ScoreBoardCore.UNDO_COMMAND;
+import static net.bugabinga.telegram.bot.ScoreBoardCore.WON_COMMAND;
+
+import java.io.IOException;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.telegram.telegrambots.api.objects.Update;
+import org.telegram.telegrambots.logging.BotLogger;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Turns the JSON of a Telegram {@link Update} into a {@link ScoreEvent} without binding the whole
+ * update. Only the handful of fields the score keeping needs are pulled out of the token stream,
+ * every other subtree is skipped unread. As soon as the text of the message turns out not to be a
+ * score command, parsing stops.
+ *
+ * <p>
+ * Gives the same result as {@link ScoreEvent#from(Update)} on a bound update. Not thread safe,
+ * every thread needs its own decoder, but they can all share one {@link JsonFactory}.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public class ScoreEventJsonDecoder {
+
+  /**
+   * Namespace for logger.
+   */
+  private static final String TAG = "SCORE_EVENT_JSON_DECODER";
+
+  /*
+   * These show up once per line of the old event log.
+   */
+  private static final BotLog.Sampler NO_MESSAGE = new BotLog.Sampler(1000);
+  private static final BotLog.Sampler NO_SENDER = new BotLog.Sampler(100);
+
+  private final JsonFactory jsonFactory;
+
+  // what has been found so far in the current update
+  private long updateId;
+  private boolean hasMessage;
+  private @Nullable Long chatId;
+  private long date;
+  private ScoreEvent.@Nullable Kind kind;
+  private boolean hasText;
+  private boolean hasSender;
+  private long userId;
+  private @Nullable String userName;
+  private @Nullable String firstName;
+
+  /**
+   * @param jsonFactory Creates the parsers, usually the one of the bot's ObjectMapper.
+   */
+  public ScoreEventJsonDecoder(final JsonFactory jsonFactory) {
+    this.jsonFactory = jsonFactory;
+  }
+
+  /**
+   * @param json UTF-8 encoded JSON of one update.
+   * @param offset Where the update starts in the array.
+   * @param length Number of bytes of the update.
+   * @return The score event the update stands for, or <code>null</code> if it does not alter any
+   *         score.
+   * @throws IOException If the bytes are not valid JSON.
+   */
+  public @Nullable ScoreEvent decode(final byte[] json, final int offset, final int length)
+      throws IOException {
+    try (final JsonParser parser = jsonFactory.createParser(json, offset, length)) {
+      return parser.nextToken() == JsonToken.START_OBJECT ? decode(parser) : null;
+    }
+  }
+
+  /**
+   * Decodes one update out of a stream of them. Creating a parser is not free, so a whole log
+   * should be read through one parser, one root level update after the other.
+   *
+   * @param parser Positioned at the start of an update. Is left at its end.
+   * @return The score event the update stands for, or <code>null</code> if it does not alter any
+   *         score.
+   * @throws IOException If the update is not valid JSON.
+   */
+  public @Nullable ScoreEvent decode(final JsonParser parser) throws IOException {
+    reset();
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      final String field = parser.getCurrentName();
+      final JsonToken value = parser.nextToken();
+      if ("update_id".equals(field)) {
+        updateId = parser.getValueAsLong();
+      } else if ("message".equals(field) && value == JsonToken.START_OBJECT) {
+        hasMessage = true;
+        if (!readMessage(parser)) {
+          // no score command, so nothing else in here is of interest
+          skipRestOfObject(parser);
+          skipRestOfObject(parser);
+          return null;
+        }
+      } else {
+        parser.skipChildren();
+      }
+    }
+    return toEvent();
+  }
+
+  /**
+   * @return <code>false</code> as soon as it is clear that the message is no score command. The
+   *         parser is still inside the message then.
+   */
+  private boolean readMessage(final JsonParser parser) throws IOException {
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      final String field = parser.getCurrentName();
+      final JsonToken value = parser.nextToken();
+      switch (field) {
+        case "text":
+          hasText = value == JsonToken.VALUE_STRING;
+          if (!hasText) {
+            return false;
+          }
+          final String text = parser.getText();
+          if (text.startsWith(WON_COMMAND)) {
+            kind = ScoreEvent.Kind.WON;
+          } else if (text.startsWith(UNDO_COMMAND)) {
+            kind = ScoreEvent.Kind.UNDO;
+          } else {
+            return false;
+          }
+          break;
+        case "chat":
+          readChat(parser, value);
+          break;
+        case "from":
+          readSender(parser, value);
+          break;
+        case "date":
+          date = parser.getValueAsLong();
+          break;
+        default:
+          parser.skipChildren();
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Moves the parser to the end of the object it is currently in, without looking at anything.
+   */
+  private static void skipRestOfObject(final JsonParser parser) throws IOException {
+    int depth = 1;
+    while (depth > 0) {
+      final @Nullable JsonToken token = parser.nextToken();
+      if (token == null) {
+        return;
+      }
+      if (token.isStructStart()) {
+        depth++;
+      } else if (token.isStructEnd()) {
+        depth--;
+      }
+    }
+  }
+
+  private void readChat(final JsonParser parser, final JsonToken value) throws IOException {
+    if (value != JsonToken.START_OBJECT) {
+      parser.skipChildren();
+      return;
+    }
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      final String field = parser.getCurrentName();
+      final JsonToken idValue = parser.nextToken();
+      if ("id".equals(field) && idValue == JsonToken.VALUE_NUMBER_INT) {
+        chatId = Long.valueOf(parser.getLongValue());
+      } else {
+        parser.skipChildren();
+      }
+    }
+  }
+
+  private void readSender(final JsonParser parser, final JsonToken value) throws IOException {
+    if (value != JsonToken.START_OBJECT) {
+      parser.skipChildren();
+      return;
+    }
+    hasSender = true;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      final String field = parser.getCurrentName();
+      parser.nextToken();
+      switch (field) {
+        case "id":
+          userId = parser.getValueAsLong();
+          break;
+        case "username":
+          userName = parser.getValueAsString();
+          break;
+        case "first_name":
+          firstName = parser.getValueAsString();
+          break;
+        default:
+          parser.skipChildren();
+      }
+    }
+  }
+
+  /**
+   * Mirrors the checks of {@link ScoreEvent#from(Update)}.
+   */
+  private @Nullable ScoreEvent toEvent() {
+    if (!hasMessage) {
+      final long wonky = updateId;
+      NO_MESSAGE.debug(TAG, () -> "The update object has no message! Id of wonky update: " + wonky);
+      return null;
+    }
+    final @Nullable Long chat = chatId;
+    if (chat == null) {
+      BotLogger.error(TAG,
+          "Found an Update with a Message without a Chat ID. Check if the event log file is valid or if it got corrupted.");
+      return null;
+    }
+    final ScoreEvent.@Nullable Kind scoreKind = kind;
+    if (!hasText || scoreKind == null) {
+      return null;
+    }
+    if (!hasSender) {
+      NO_SENDER.warn(TAG,
+          () -> "Encountered a scenario which is not yet handled. A message without a sender has "
+              + "been found. It gets ignored for now.");
+      return null;
+    }
+    final @Nullable String name = userName == null ? firstName : userName;
+    if (name == null) {
+      return null;
+    }
+    return new ScoreEvent(scoreKind, chat.longValue(), userId, name, updateId, date, 0, null);
+  }
+
+  private void reset() {
+    updateId = 0;
+    hasMessage = false;
+    chatId = null;
+    date = 0;
+    kind = null;
+    hasText = false;
+    hasSender = false;
+    userId = 0;
+    userName = null;
+    firstName = null;
+  }
+}
@@ -0,0 +1,171 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.telegram.telegrambots.logging.BotLogger;
+
+/**
+ * Reads {@link ScoreEvent}s from one file of binary records, front to back, through a buffer of
+ * fixed size. Good for files of any size, like the spill file, and for streams, like a compressed
+ * segment of a {@link ChatEventLog}. Plain segments are read with the {@link MappedEventReader}
+ * instead.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public class ScoreEventReader implements Closeable {
+
+  /**
+   * Namespace for logger.
+   */
+  private static final String TAG = "SCORE_EVENT_READER";
+
+  private static final int BUFFER_SIZE = 128 * 1024;
+
+  private final ReadableByteChannel channel;
+  private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+  private final ScoreEventCodec.Decoder decoder = new ScoreEventCodec.Decoder();
+
+  /**
+   * Offset in the file where reading stops, even if the file is longer.
+   */
+  private final long limit;
+
+  /**
+   * Offset in the file of the next byte the channel returns.
+   */
+  private long channelPosition;
+
+  /**
+   * Offset in the file right behind the last complete record that was read.
+   */
+  private long position;
+  private boolean endOfFile;
+
+  /**
+   * @param path The event log.
+   * @param offset Where to start reading. Has to be the start of a record.
+   * @throws IOException If the file cannot be opened.
+   */
+  public ScoreEventReader(final Path path, final long offset) throws IOException {
+    this(path, offset, Long.MAX_VALUE);
+  }
+
+  /**
+   * @param path The event log.
+   * @param offset Where to start reading. Has to be the start of a record.
+   * @param limit Where to stop reading. Everything behind it might still be in the middle of
+   *        being written by someone else.
+   * @throws IOException If the file cannot be opened.
+   */
+  public ScoreEventReader(final Path path, final long offset, final long limit)
+      throws IOException {
+    this(FileChannel.open(path, READ).position(offset), offset, limit);
+  }
+
+  /**
+   * @param channel The event log, already at <code>offset</code>. Gets closed with the reader.
+   * @param offset Where the channel is. Has to be the start of a record.
+   * @param limit Where to stop reading.
+   */
+  public ScoreEventReader(final ReadableByteChannel channel, final long offset, final long limit) {
+    this.channel = channel;
+    channelPosition = offset;
+    position = offset;
+    this.limit = limit;
+    buffer.flip();
+  }
+
+  /**
+   * Broken records with a sane length get skipped. If the end of the file contains only half a
+   * record (because we crashed while writing it), reading stops in front of it.
+   *
+   * @return The next event or <code>null</code> if there are no more complete records.
+   * @throws IOException If reading fails.
+   */
+  public @Nullable ScoreEvent next() throws IOException {
+    while (true) {
+      final int recordSize = ScoreEventCodec.peekRecordSize(buffer);
+
+      if (recordSize == -2) {
+        BotLogger.error(TAG, "Found garbage instead of a record at offset " + position
+            + ". Ignoring the rest of the event log.");
+        return null;
+      }
+
+      if (recordSize == -1 || buffer.remaining() < recordSize) {
+        if (endOfFile || !fill(Math.max(recordSize, Integer.BYTES))) {
+          if (buffer.hasRemaining()) {
+            BotLogger.warn(TAG, "The event log ends with an incomplete record at offset "
+                + position + ". Was the bot killed while writing it?");
+          }
+          return null;
+        }
+        continue;
+      }
+
+      final @Nullable ScoreEvent event = decoder.decode(buffer);
+      position += recordSize;
+      if (event == null) {
+        BotLogger.error(TAG,
+            "Skipping a broken record in front of offset " + position + " of the event log.");
+        continue;
+      }
+      return event;
+    }
+  }
+
+  /**
+   * @return Offset right behind the last complete record, which is where the next write should
+   *         go.
+   */
+  public long position() {
+    return position;
+  }
+
+  /**
+   * Reads more of the file into the buffer.
+   *
+   * @param needed Bytes that have to be in the buffer at least.
+   * @return <code>false</code> if the file ended before that.
+   */
+  private boolean fill(final int needed) throws IOException {
+    buffer.compact();
+    while (buffer.position() < needed) {
+      final long unread = limit - channelPosition;
+      if (unread <= 0) {
+        endOfFile = true;
+        break;
+      }
+      if (unread < buffer.remaining()) {
+        buffer.limit(buffer.position() + (int) unread);
+      }
+      final int read = channel.read(buffer);
+      buffer.limit(buffer.capacity());
+      if (read < 0) {
+        endOfFile = true;
+        break;
+      }
+      channelPosition += read;
+    }
+    buffer.flip();
+    return buffer.remaining() >= needed;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
@@ -0,0 +1,301 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import java.util.Arrays;
+
+/**
+ * The people of one chat ordered by score, highest first, and by name when scores are equal. It is
+ * a treap where every node knows the size of its subtree, so the top N can be read in order
+ * without sorting and the rank of a score is found on a single path from the root.
+ *
+ * <p>
+ * The nodes live in primitive arrays and freed nodes get reused, so keeping the ranking up to date
+ * does not allocate once it has grown to the size of the chat. Not thread safe.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public class ScoreRanking {
+
+  /**
+   * Node 0 stands for "no node". Its size is always 0.
+   */
+  private static final int NIL = 0;
+
+  private static final int INITIAL_CAPACITY = 8;
+
+  private final PlayerNames names;
+
+  private int[] left;
+  private int[] right;
+  private int[] sizes;
+  private int[] priorities;
+  private int[] scores;
+  private int[] nameIds;
+
+  private int root = NIL;
+
+  /**
+   * Head of the chain of freed nodes, linked through {@link #left}.
+   */
+  private int free = NIL;
+
+  /**
+   * Next node that has never been used.
+   */
+  private int unused = 1;
+
+  /**
+   * State of a xorshift generator for the priorities.
+   */
+  private int seed = 0x2545F491;
+
+  /**
+   * Remaining nodes to visit in {@link #top(int, IntIntMap.Visitor)}.
+   */
+  private int remaining;
+
+  /**
+   * @param names Resolves the names to break ties between equal scores.
+   */
+  public ScoreRanking(final PlayerNames names) {
+    this.names = names;
+    left = new int[INITIAL_CAPACITY];
+    right = new int[INITIAL_CAPACITY];
+    sizes = new int[INITIAL_CAPACITY];
+    priorities = new int[INITIAL_CAPACITY];
+    scores = new int[INITIAL_CAPACITY];
+    nameIds = new int[INITIAL_CAPACITY];
+  }
+
+  private ScoreRanking(final ScoreRanking other) {
+    names = other.names;
+    left = other.left.clone();
+    right = other.right.clone();
+    sizes = other.sizes.clone();
+    priorities = other.priorities.clone();
+    scores = other.scores.clone();
+    nameIds = other.nameIds.clone();
+    root = other.root;
+    free = other.free;
+    unused = other.unused;
+    seed = other.seed;
+  }
+
+  /**
+   * @param score Score of the person.
+   * @param nameId Id of the name of the person, who must not be in the ranking yet.
+   */
+  public void add(final int score, final int nameId) {
+    final int node = allocate();
+    scores[node] = score;
+    nameIds[node] = nameId;
+    root = insert(root, node);
+  }
+
+  /**
+   * @param score Score the person was added with.
+   * @param nameId Id of the name of the person.
+   */
+  public void remove(final int score, final int nameId) {
+    root = delete(root, score, nameId);
+  }
+
+  /**
+   * @param oldScore Score the person was added with.
+   * @param newScore Replaces it.
+   * @param nameId Id of the name of the person.
+   */
+  public void move(final int oldScore, final int newScore, final int nameId) {
+    remove(oldScore, nameId);
+    add(newScore, nameId);
+  }
+
+  /**
+   * @return Number of people in the ranking.
+   */
+  public int size() {
+    return sizes[root];
+  }
+
+  /**
+   * People with the same score share a rank, the next one skips accordingly, like 1, 2, 2, 4.
+   *
+   * @param score A score.
+   * @return The rank of a person with that score, starting at 1.
+   */
+  public int rankOf(final int score) {
+    int above = 0;
+    int node = root;
+    while (node != NIL) {
+      if (scores[node] > score) {
+        above += sizes[left[node]] + 1;
+        node = right[node];
+      } else {
+        node = left[node];
+      }
+    }
+    return above + 1;
+  }
+
+  /**
+   * @param count How many people to visit at most.
+   * @param visitor Gets the name id and score of the best people, best first.
+   */
+  public void top(final int count, final IntIntMap.Visitor visitor) {
+    remaining = count;
+    visitInOrder(root, visitor);
+  }
+
+  /**
+   * @return An independent ranking with the same content.
+   */
+  public ScoreRanking copy() {
+    return new ScoreRanking(this);
+  }
+
+  private void visitInOrder(final int node, final IntIntMap.Visitor visitor) {
+    if (node == NIL || remaining <= 0) {
+      return;
+    }
+    visitInOrder(left[node], visitor);
+    if (remaining > 0) {
+      remaining--;
+      visitor.visit(nameIds[node], scores[node]);
+      visitInOrder(right[node], visitor);
+    }
+  }
+
+  /**
+   * @return <code>true</code> if the first person goes before the second one.
+   */
+  private boolean precedes(final int score, final int nameId, final int otherScore,
+      final int otherNameId) {
+    if (score != otherScore) {
+      return score > otherScore;
+    }
+    return nameId != otherNameId
+        && names.nameOf(nameId).compareTo(names.nameOf(otherNameId)) < 0;
+  }
+
+  private int insert(final int tree, final int node) {
+    if (tree == NIL) {
+      return node;
+    }
+    int top = tree;
+    if (precedes(scores[node], nameIds[node], scores[tree], nameIds[tree])) {
+      left[tree] = insert(left[tree], node);
+      if (priorities[left[tree]] > priorities[tree]) {
+        top = rotateRight(tree);
+      }
+    } else {
+      right[tree] = insert(right[tree], node);
+      if (priorities[right[tree]] > priorities[tree]) {
+        top = rotateLeft(tree);
+      }
+    }
+    updateSize(tree);
+    updateSize(top);
+    return top;
+  }
+
+  private int delete(final int tree, final int score, final int nameId) {
+    if (tree == NIL) {
+      return NIL;
+    }
+    if (nameIds[tree] == nameId && scores[tree] == score) {
+      final int merged = merge(left[tree], right[tree]);
+      release(tree);
+      return merged;
+    }
+    if (precedes(score, nameId, scores[tree], nameIds[tree])) {
+      left[tree] = delete(left[tree], score, nameId);
+    } else {
+      right[tree] = delete(right[tree], score, nameId);
+    }
+    updateSize(tree);
+    return tree;
+  }
+
+  /**
+   * @return The tree with every node of <code>first</code> before every node of
+   *         <code>second</code>.
+   */
+  private int merge(final int first, final int second) {
+    if (first == NIL) {
+      return second;
+    }
+    if (second == NIL) {
+      return first;
+    }
+    if (priorities[first] > priorities[second]) {
+      right[first] = merge(right[first], second);
+      updateSize(first);
+      return first;
+    }
+    left[second] = merge(first, left[second]);
+    updateSize(second);
+    return second;
+  }
+
+  private int rotateRight(final int node) {
+    final int pivot = left[node];
+    left[node] = right[pivot];
+    right[pivot] = node;
+    return pivot;
+  }
+
+  private int rotateLeft(final int node) {
+    final int pivot = right[node];
+    right[node] = left[pivot];
+    left[pivot] = node;
+    return pivot;
+  }
+
+  private void updateSize(final int node) {
+    if (node != NIL) {
+      sizes[node] = sizes[left[node]] + sizes[right[node]] + 1;
+    }
+  }
+
+  private int allocate() {
+    final int node;
+    if (free != NIL) {
+      node = free;
+      free = left[node];
+    } else {
+      if (unused == left.length) {
+        grow();
+      }
+      node = unused++;
+    }
+    seed ^= seed << 13;
+    seed ^= seed >>> 17;
+    seed ^= seed << 5;
+    left[node] = NIL;
+    right[node] = NIL;
+    sizes[node] = 1;
+    priorities[node] = seed;
+    return node;
+  }
+
+  private void release(final int node) {
+    left[node] = free;
+    right[node] = NIL;
+    sizes[node] = 0;
+    free = node;
+  }
+
+  private void grow() {
+    final int capacity = 2 * left.length;
+    left = Arrays.copyOf(left, capacity);
+    right = Arrays.copyOf(right, capacity);
+    sizes = Arrays.copyOf(sizes, capacity);
+    priorities = Arrays.copyOf(priorities, capacity);
+    scores = Arrays.copyOf(scores, capacity);
+    nameIds = Arrays.copyOf(nameIds, capacity);
+  }
+}
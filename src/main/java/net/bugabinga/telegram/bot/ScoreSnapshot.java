@@ -0,0 +1,103 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The scores of all chats at one exact position of the event log. Everything in front of the
+ * {@link #getPositions()} of a chat is already folded into {@link #getBoards()}, so only the tail
+ * behind it has to be replayed on startup.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public class ScoreSnapshot {
+
+  /**
+   * Bump this whenever the layout of a snapshot or of the event log its offsets point into
+   * changes. Snapshots with another version are ignored and the event log gets replayed instead.
+   */
+  static final int VERSION = 5;
+
+  private final int version;
+  private final Map<Long, Long> positions;
+  private final long lastUpdateId;
+  private final Map<Long, Map<String, Integer>> boards;
+  private final Map<Long, List<ScoreBoard.Win>> wins;
+  private final Map<Long, Map<Long, Map<String, Integer>>> buckets;
+
+  /**
+   * @param version Layout version of the snapshot.
+   * @param positions Logical offset into the {@link ChatEventLog} of every chat, up to which all
+   *        events are included.
+   * @param lastUpdateId Id of the last {@link org.telegram.telegrambots.api.objects.Update}
+   *        included.
+   * @param boards Scores per chat id.
+   * @param wins Wins that can be undone per chat id, most recent first.
+   * @param buckets Points per day per chat id, as far as they are kept.
+   */
+  @JsonCreator
+  public ScoreSnapshot(@JsonProperty("version") final int version,
+      @JsonProperty("positions") final Map<Long, Long> positions,
+      @JsonProperty("lastUpdateId") final long lastUpdateId,
+      @JsonProperty("boards") final Map<Long, Map<String, Integer>> boards,
+      @JsonProperty("wins") final Map<Long, List<ScoreBoard.Win>> wins,
+      @JsonProperty("buckets") final Map<Long, Map<Long, Map<String, Integer>>> buckets) {
+    this.version = version;
+    this.positions = positions;
+    this.lastUpdateId = lastUpdateId;
+    this.boards = boards;
+    this.wins = wins;
+    this.buckets = buckets;
+  }
+
+  /**
+   * @return Layout version of the snapshot.
+   */
+  public int getVersion() {
+    return version;
+  }
+
+  /**
+   * @return Logical offset into the log of every chat, up to which all events are included. Chats
+   *         missing in here had no events yet.
+   */
+  public Map<Long, Long> getPositions() {
+    return positions;
+  }
+
+  /**
+   * @return Id of the last update included.
+   */
+  public long getLastUpdateId() {
+    return lastUpdateId;
+  }
+
+  /**
+   * @return Scores per chat id.
+   */
+  public Map<Long, Map<String, Integer>> getBoards() {
+    return boards;
+  }
+
+  /**
+   * @return Wins that can be undone per chat id, most recent first.
+   */
+  public Map<Long, List<ScoreBoard.Win>> getWins() {
+    return wins;
+  }
+
+  /**
+   * @return Points per day per chat id, keyed by the day since the epoch.
+   */
+  public Map<Long, Map<Long, Map<String, Integer>>> getBuckets() {
+    return buckets;
+  }
+}
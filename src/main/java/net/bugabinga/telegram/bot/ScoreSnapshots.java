@@ -0,0 +1,131 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import static java.lang.String.format;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.telegram.telegrambots.logging.BotLogger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Reads and writes {@link ScoreSnapshot}s. Every snapshot lives in its own file, named after the
+ * time it was taken at, so the newest one is simply the last one in lexical order.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public class ScoreSnapshots {
+
+  /**
+   * Namespace for logger.
+   */
+  private static final String TAG = "SCORE_SNAPSHOTS";
+
+  private static final String SUFFIX = ".snapshot";
+
+  /**
+   * Older snapshots are kept around in case the newest one turns out to be broken.
+   */
+  private static final int SNAPSHOTS_TO_KEEP = 2;
+
+  private final Path directory;
+  private final ObjectMapper jsonMapper;
+
+  /**
+   * @param directory Where the snapshot files live. Gets created if missing.
+   * @param jsonMapper The JSON serializer.
+   * @throws IOException If the directory cannot be created.
+   */
+  public ScoreSnapshots(final Path directory, final ObjectMapper jsonMapper) throws IOException {
+    this.directory = Files.createDirectories(directory);
+    this.jsonMapper = jsonMapper;
+  }
+
+  /**
+   * Writes the snapshot into a temporary file first and then moves it into place, so a crash in
+   * the middle never leaves a half written snapshot behind. Older snapshots only get deleted once
+   * the new one is on disk.
+   *
+   * @param snapshot The snapshot to persist.
+   * @throws IOException If writing fails.
+   */
+  public void write(final ScoreSnapshot snapshot) throws IOException {
+    final Path target =
+        directory.resolve(format("%020d%s", Long.valueOf(System.currentTimeMillis()), SUFFIX));
+    DurableFiles.writeJson(jsonMapper, target, snapshot);
+
+    BotLogger.info(TAG, format("Wrote snapshot of %d chats at update %d.",
+        Integer.valueOf(snapshot.getBoards().size()), Long.valueOf(snapshot.getLastUpdateId())));
+
+    final List<Path> snapshots = list();
+    for (int index = 0; index < snapshots.size() - SNAPSHOTS_TO_KEEP; index++) {
+      Files.deleteIfExists(snapshots.get(index));
+    }
+  }
+
+  /**
+   * @param eventLog The current event log. Snapshots pointing behind the end of any chat belong to
+   *        another (or a truncated) event log and are skipped.
+   * @return The newest snapshot that can be read, or <code>null</code> if there is none.
+   * @throws IOException If the directory cannot be listed.
+   */
+  public @Nullable ScoreSnapshot loadNewest(final PartitionedEventLog eventLog) throws IOException {
+    final List<Path> snapshots = list();
+    Collections.reverse(snapshots);
+
+    for (final Path path : snapshots) {
+      try {
+        final ScoreSnapshot snapshot = jsonMapper.readValue(path.toFile(), ScoreSnapshot.class);
+        if (snapshot.getVersion() != ScoreSnapshot.VERSION) {
+          BotLogger.warn(TAG, "Skipping snapshot " + path + " with unknown version "
+              + snapshot.getVersion() + ".");
+          continue;
+        }
+        if (!fitsInto(snapshot, eventLog)) {
+          BotLogger.warn(TAG, "Skipping snapshot " + path
+              + ", because it points behind the end of the event log. Was the log truncated?");
+          continue;
+        }
+        return snapshot;
+      } catch (final IOException exception) {
+        BotLogger.warn("Skipping snapshot " + path + ", because it could not be read.", TAG,
+            exception);
+      }
+    }
+    return null;
+  }
+
+  private static boolean fitsInto(final ScoreSnapshot snapshot,
+      final PartitionedEventLog eventLog) {
+    for (final Map.Entry<Long, Long> position : snapshot.getPositions().entrySet()) {
+      final @Nullable ChatEventLog chatLog = eventLog.find(position.getKey().longValue());
+      final long end = chatLog == null ? 0 : chatLog.end();
+      if (position.getValue().longValue() > end) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private List<Path> list() throws IOException {
+    final List<Path> snapshots = new ArrayList<>();
+    try (final DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+      files.forEach(snapshots::add);
+    }
+    Collections.sort(snapshots);
+    return snapshots;
+  }
+}
@@ -0,0 +1,71 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Where the score events end up for good. The bot answers from the {@link ScoreBoards} in memory,
+ * a store only has to make sure they can be rebuilt after a restart, and it has to be able to
+ * answer the same questions on its own.
+ *
+ * <p>
+ * {@link #load()} comes first. After that only the {@link EventLogProcessor} writes, while any
+ * thread may read.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public interface ScoreStore extends Closeable {
+
+  /**
+   * Reads the current state of every chat. Called once, before anything gets appended.
+   *
+   * @return The score boards of all chats.
+   * @throws IOException If the store cannot be read.
+   */
+  ScoreBoards load() throws IOException;
+
+  /**
+   * @param events Events of any chats, in the order they happened. Only the processor thread may
+   *        call this.
+   * @throws IOException If the events could not be stored. The processor calls this again with the
+   *         same events until it works, so none of them may be stored by a call that failed.
+   */
+  void append(List<ScoreEvent> events) throws IOException;
+
+  /**
+   * Makes sure everything that was appended survives a crash.
+   *
+   * @throws IOException If syncing fails.
+   */
+  void force() throws IOException;
+
+  /**
+   * @param chatId The chat.
+   * @param consumer Gets every event of the chat that is stored, oldest first.
+   * @throws IOException If the store cannot be read.
+   */
+  void forEach(long chatId, Consumer<ScoreEvent> consumer) throws IOException;
+
+  /**
+   * @param chatId The chat.
+   * @return Points per person as far as the store knows.
+   * @throws IOException If the store cannot be read.
+   */
+  Map<String, Integer> scores(long chatId) throws IOException;
+
+  /**
+   * @param chatId The chat.
+   * @param count How many wins to return at most.
+   * @return The wins that can still be undone, most recent first.
+   * @throws IOException If the store cannot be read.
+   */
+  List<ScoreBoard.Win> lastWins(long chatId, int count) throws IOException;
+}
@@ -0,0 +1,94 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import java.time.LocalDate;
+import java.util.Locale;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * The time span a board covers. "/board week" shows the points of the current week, a plain
+ * "/board" the ones of all time. All windows are in UTC.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public enum ScoreWindow {
+
+  /**
+   * Today.
+   */
+  DAY("today"),
+
+  /**
+   * The current week, starting on Monday.
+   */
+  WEEK("this week"),
+
+  /**
+   * The current quarter of the year.
+   */
+  SEASON("this season"),
+
+  /**
+   * Everything ever.
+   */
+  ALL("all time");
+
+  private final String title;
+
+  private ScoreWindow(final String title) {
+    this.title = title;
+  }
+
+  /**
+   * @return How the window is called on the board.
+   */
+  public String getTitle() {
+    return title;
+  }
+
+  /**
+   * @param today Days since the epoch.
+   * @return The first day of the window that contains <code>today</code>.
+   */
+  public int firstDay(final int today) {
+    switch (this) {
+      case DAY:
+        return today;
+      case WEEK:
+        // the epoch was a Thursday
+        return today - Math.floorMod(today + 3, 7);
+      case SEASON:
+        final LocalDate date = LocalDate.ofEpochDay(today);
+        return (int) date.withMonth((date.getMonthValue() - 1) / 3 * 3 + 1).withDayOfMonth(1)
+            .toEpochDay();
+      case ALL:
+      default:
+        return Integer.MIN_VALUE;
+    }
+  }
+
+  /**
+   * @param word What follows /board, like "week".
+   * @return The window or <code>null</code> if the word means none.
+   */
+  public static @Nullable ScoreWindow of(final String word) {
+    switch (word.toLowerCase(Locale.ROOT)) {
+      case "day":
+      case "today":
+        return DAY;
+      case "week":
+        return WEEK;
+      case "season":
+        return SEASON;
+      case "all":
+        return ALL;
+      default:
+        return null;
+    }
+  }
+}
@@ -0,0 +1,239 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.telegram.telegrambots.api.objects.Update;
+import org.telegram.telegrambots.logging.BotLogger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Passes updates on to the instance that holds the shard of their chat. Telegram, or whatever
+ * spreads its webhook calls over the instances, does not know about shards, so an update may well
+ * arrive at the wrong one.
+ *
+ * <p>
+ * Every instance takes forwarded updates with <code>POST /update</code>. It answers 204 if it took
+ * the update and 503 if it does not hold the shard (yet), in which case the update gets posted
+ * again a few times while the shard changes hands. A forwarded update is never forwarded again, so
+ * two instances that disagree about the owner cannot play ping pong with it.
+ *
+ * <p>
+ * Whoever can post to that endpoint can score in any chat, so every request has to carry the
+ * secret all instances share. Requests without it get 403.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public final class ShardForwarder implements AutoCloseable {
+
+  /**
+   * Namespace for logger.
+   */
+  private static final String TAG = "SHARD_FORWARDER";
+
+  private static final BotLog.Sampler FAILED = new BotLog.Sampler(100);
+
+  private static final BotLog.Sampler REJECTED = new BotLog.Sampler(100);
+
+  private static final String PATH = "/update";
+
+  private static final String SECRET_HEADER = "X-Scobo-Shard-Secret";
+
+  /**
+   * Waits 50, 100, 200 and 400 ms between the attempts, which is about how long handing over a
+   * shard takes.
+   */
+  private static final int RETRIES = 4;
+
+  private static final long RETRY_DELAY_MILLIS = 50;
+
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final ObjectWriter jsonWriter;
+  private final String secret;
+  private final String url;
+  private final LongAdder forwarded;
+  private final LongAdder failures;
+
+  /**
+   * Starts listening right away.
+   *
+   * @param port Where to listen, on all interfaces. 0 picks a free port.
+   * @param host How the other instances reach this one.
+   * @param secret Shared by all instances, proves that a forwarded update comes from one of them.
+   * @param jsonMapper The JSON serializer.
+   * @param receiver Gets the updates that were forwarded to this instance. Returns
+   *        <code>false</code> if it does not take the update.
+   * @param metrics Where the number of forwarded updates goes.
+   * @throws IOException If the port is taken.
+   */
+  public ShardForwarder(final int port, final String host, final String secret,
+      final ObjectMapper jsonMapper, final Predicate<Update> receiver, final Metrics metrics)
+      throws IOException {
+    if (secret.isEmpty()) {
+      throw new IllegalArgumentException("Forwarded updates need a secret.");
+    }
+    this.secret = secret;
+    jsonWriter = jsonMapper.writer();
+    final ObjectReader jsonReader = jsonMapper.readerFor(Update.class);
+    forwarded = metrics.counter("scobo_updates_forwarded_total",
+        "Updates passed on to the instance holding their chat.");
+    failures = metrics.counter("scobo_forward_failures_total",
+        "Updates that could not be passed on to the instance holding their chat.");
+
+    server = HttpServer.create(new InetSocketAddress(port), 0);
+    executor = Executors.newFixedThreadPool(4, task -> {
+      final Thread thread = new Thread(task, "scobo-forwarded");
+      thread.setDaemon(true);
+      return thread;
+    });
+    server.setExecutor(executor);
+    final byte[] expectedSecret = secret.getBytes(UTF_8);
+    server.createContext(PATH,
+        exchange -> receive(exchange, expectedSecret, jsonReader, receiver));
+    server.start();
+    url = "http://" + host + ":" + server.getAddress().getPort();
+    BotLogger.info(TAG, "Taking forwarded updates on " + url + PATH + ".");
+  }
+
+  /**
+   * @return Where the other instances forward updates to this one.
+   */
+  public String url() {
+    return url;
+  }
+
+  /**
+   * Posts the update to the instance that holds its chat and waits for it to take it, so the
+   * updates of a chat arrive there in the order they came in here.
+   *
+   * @param ownerUrl Where the owner of the chat takes forwarded updates.
+   * @param update The update.
+   * @return <code>false</code> if the owner did not take the update.
+   */
+  public boolean forward(final String ownerUrl, final Update update) {
+    final byte[] body;
+    try {
+      body = jsonWriter.writeValueAsBytes(update);
+    } catch (final IOException exception) {
+      failures.increment();
+      BotLogger.error("Could not serialize update " + update.getUpdateId() + ".", TAG, exception);
+      return false;
+    }
+
+    int status = -1;
+    for (int attempt = 0; attempt <= RETRIES; attempt++) {
+      if (attempt > 0) {
+        try {
+          Thread.sleep(RETRY_DELAY_MILLIS << (attempt - 1));
+        } catch (final InterruptedException exception) {
+          Thread.currentThread().interrupt();
+          break;
+        }
+      }
+      status = post(ownerUrl + PATH, secret, body);
+      if (status / 100 == 2) {
+        forwarded.increment();
+        return true;
+      }
+      if (status != 503 && status != -1) {
+        break;
+      }
+    }
+    failures.increment();
+    final int lastStatus = status;
+    FAILED.warn(TAG, () -> "Could not forward update " + update.getUpdateId() + " to " + ownerUrl
+        + ", last answer was " + lastStatus + ".");
+    return false;
+  }
+
+  /**
+   * @return The HTTP status, or -1 if the owner could not be reached at all.
+   */
+  private static int post(final String target, final String secret, final byte[] body) {
+    try {
+      final HttpURLConnection connection = (HttpURLConnection) new URL(target).openConnection();
+      connection.setConnectTimeout((int) SECONDS.toMillis(2));
+      connection.setReadTimeout((int) SECONDS.toMillis(5));
+      connection.setRequestMethod("POST");
+      connection.setDoOutput(true);
+      connection.setFixedLengthStreamingMode(body.length);
+      connection.setRequestProperty("Content-Type", "application/json");
+      connection.setRequestProperty(SECRET_HEADER, secret);
+      try (final OutputStream out = connection.getOutputStream()) {
+        out.write(body);
+      }
+      final int status = connection.getResponseCode();
+      // reading the response to the end keeps the connection alive for the next update
+      try (final InputStream in =
+          status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+        if (in != null) {
+          while (in.read() >= 0) {
+            // drain
+          }
+        }
+      }
+      return status;
+    } catch (final IOException exception) {
+      return -1;
+    }
+  }
+
+  private static void receive(final HttpExchange exchange, final byte[] expectedSecret,
+      final ObjectReader jsonReader, final Predicate<Update> receiver) throws IOException {
+    try {
+      if (!"POST".equals(exchange.getRequestMethod())) {
+        exchange.sendResponseHeaders(405, -1);
+        return;
+      }
+      final @Nullable String secret = exchange.getRequestHeaders().getFirst(SECRET_HEADER);
+      // constant time, so the secret cannot be guessed byte by byte
+      if (secret == null || !MessageDigest.isEqual(expectedSecret, secret.getBytes(UTF_8))) {
+        REJECTED.warn(TAG, () -> "Rejected a forwarded update from "
+            + exchange.getRemoteAddress() + ", it did not know the secret.");
+        exchange.sendResponseHeaders(403, -1);
+        return;
+      }
+      final Update update;
+      try (final InputStream in = exchange.getRequestBody()) {
+        update = jsonReader.readValue(in);
+      } catch (final IOException exception) {
+        BotLogger.warn("Got a forwarded update that is not one.", TAG, exception);
+        exchange.sendResponseHeaders(400, -1);
+        return;
+      }
+      exchange.sendResponseHeaders(receiver.test(update) ? 204 : 503, -1);
+    } finally {
+      exchange.close();
+    }
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+}
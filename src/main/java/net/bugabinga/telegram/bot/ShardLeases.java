@@ -0,0 +1,421 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.telegram.telegrambots.logging.BotLogger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Decides which of several bot instances sharing a data directory owns which shard of the chats.
+ *
+ * <p>
+ * Every instance keeps renewing a {@link ShardMember} file in the directory. The ones that did so
+ * within the last lease are alive, and the {@link ShardRing} over them says who should own a
+ * shard. Owning a shard means holding a lock on its lease file, so two instances never write the
+ * same shard, even if they disagree about who is alive for a moment. The operating system drops
+ * the locks of a dead process, so its shards are free for the others as soon as they notice.
+ *
+ * <p>
+ * An instance that could not renew its membership for a whole lease gives up all of its shards,
+ * because the others consider it dead and want them by then.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public class ShardLeases implements Closeable {
+
+  /**
+   * Namespace for logger.
+   */
+  private static final String TAG = "SHARD_LEASES";
+
+  /**
+   * Remembers how many shards the data got split into. Chats only find their data again with the
+   * same number.
+   */
+  private static final String SHARD_COUNT_FILE = "shard-count";
+
+  private static final String MEMBERS_DIRECTORY = "members";
+
+  private static final String MEMBER_SUFFIX = ".member";
+
+  /**
+   * What happens when an instance gets or gives up a shard. Both run on the thread of the leases,
+   * one shard at a time.
+   */
+  public interface Listener {
+
+    /**
+     * The lease of the shard is ours, but its updates are not accepted yet.
+     *
+     * @param shard The shard to load.
+     * @throws IOException If the shard cannot be loaded. Its lease gets released again then.
+     */
+    void acquired(int shard) throws IOException;
+
+    /**
+     * Updates of the shard are not accepted anymore. Whatever is already under way has to be
+     * finished and written before the lease gets released.
+     *
+     * @param shard The shard to close.
+     * @return <code>false</code> if that did not happen in time. The shard is kept for now then.
+     */
+    boolean releasing(int shard);
+  }
+
+  private final Path directory;
+  private final String instance;
+  private final String url;
+  private final int shards;
+  private final long leaseMillis;
+  private final ObjectMapper jsonMapper;
+  private final Path memberPath;
+  private final ScheduledExecutorService heartbeat;
+  private final ScheduledExecutorService rebalancer;
+
+  /**
+   * The lease files of the shards we hold. Only touched by the rebalancer.
+   */
+  private final @Nullable FileChannel[] leases;
+
+  /**
+   * 1 for every shard whose updates are accepted.
+   */
+  private final AtomicIntegerArray accepting;
+
+  private volatile Map<String, ShardMember> members = Collections.emptyMap();
+  private volatile ShardRing ring = new ShardRing(Collections.emptyList());
+  private volatile long renewed;
+
+  private @Nullable Listener listener;
+
+  /**
+   * @param directory Shared by all instances.
+   * @param instance Id of this instance, unique among all instances sharing the directory.
+   * @param url Where this instance takes forwarded updates.
+   * @param shards Number of shards. Has to stay the same for as long as the data lives.
+   * @param leaseMillis An instance that did not renew its membership for this long is dead.
+   * @param jsonMapper The JSON serializer.
+   * @throws IOException If the directory cannot be created, or holds a different number of shards.
+   */
+  public ShardLeases(final Path directory, final String instance, final String url,
+      final int shards, final long leaseMillis, final ObjectMapper jsonMapper)
+      throws IOException {
+    this.directory = Files.createDirectories(directory);
+    this.instance = instance;
+    this.url = url;
+    this.shards = shards;
+    this.leaseMillis = leaseMillis;
+    this.jsonMapper = jsonMapper;
+    memberPath = Files.createDirectories(directory.resolve(MEMBERS_DIRECTORY))
+        .resolve(instance + MEMBER_SUFFIX);
+    leases = new FileChannel[shards];
+    accepting = new AtomicIntegerArray(shards);
+    checkShardCount();
+    heartbeat = Executors.newSingleThreadScheduledExecutor(task -> {
+      final Thread thread = new Thread(task, "scobo-lease");
+      thread.setDaemon(true);
+      return thread;
+    });
+    rebalancer = Executors.newSingleThreadScheduledExecutor(task -> {
+      final Thread thread = new Thread(task, "scobo-shards");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Joins the other instances. The first round of taking over shards happens right here, so the
+   * instance owns its share once this returns. Afterwards the shards get rebalanced every third of
+   * a lease.
+   *
+   * @param newListener Loads and closes the shards.
+   * @throws IOException If the membership cannot be written.
+   */
+  public void start(final Listener newListener) throws IOException {
+    listener = newListener;
+    renew();
+    try {
+      rebalancer.submit(this::rebalance).get();
+    } catch (final InterruptedException exception) {
+      Thread.currentThread().interrupt();
+    } catch (final ExecutionException exception) {
+      BotLogger.error("The first round of taking over shards failed.", TAG, exception);
+    }
+    final long period = Math.max(1, leaseMillis / 3);
+    heartbeat.scheduleAtFixedRate(this::heartbeat, period, period, MILLISECONDS);
+    rebalancer.scheduleWithFixedDelay(this::rebalance, period, period, MILLISECONDS);
+    BotLogger.info(TAG, format("Instance %s holds %d of %d shards, %d instances are alive.",
+        instance, Integer.valueOf(heldCount()), Integer.valueOf(shards),
+        Integer.valueOf(members.size())));
+  }
+
+  /**
+   * @param shard A shard.
+   * @return <code>true</code> if this instance holds the shard and takes its updates.
+   */
+  public boolean holds(final int shard) {
+    return accepting.get(shard) == 1;
+  }
+
+  /**
+   * @return How many shards this instance takes updates for.
+   */
+  public int heldCount() {
+    int count = 0;
+    for (int shard = 0; shard < shards; shard++) {
+      count += accepting.get(shard);
+    }
+    return count;
+  }
+
+  /**
+   * @param shard A shard.
+   * @return Where the instance that should own the shard takes forwarded updates, or
+   *         <code>null</code> if that is this instance.
+   */
+  public @Nullable String ownerUrl(final int shard) {
+    final @Nullable String owner = ring.ownerOf(shard);
+    if (owner == null || owner.equals(instance)) {
+      return null;
+    }
+    final @Nullable ShardMember member = members.get(owner);
+    return member == null ? null : member.getUrl();
+  }
+
+  /**
+   * @param directory Shared by all instances.
+   * @param shard A shard.
+   * @return Where the data of the shard lives.
+   */
+  public static Path directoryOf(final Path directory, final int shard) {
+    return directory.resolve(format("%03d", Integer.valueOf(shard)));
+  }
+
+  /**
+   * Stops rebalancing, so the shards held right now stay where they are. Call this before the
+   * shards get closed.
+   */
+  public void stop() {
+    rebalancer.shutdown();
+    try {
+      if (!rebalancer.awaitTermination(60, SECONDS)) {
+        BotLogger.warn(TAG, "Rebalancing the shards did not stop in time.");
+      }
+    } catch (final InterruptedException exception) {
+      Thread.currentThread().interrupt();
+    }
+    heartbeat.shutdown();
+  }
+
+  /**
+   * Releases every lease and leaves, so the others take over right away instead of waiting for the
+   * lease to run out. The shards have to be closed by now.
+   */
+  @Override
+  public void close() {
+    stop();
+    for (int shard = 0; shard < shards; shard++) {
+      accepting.set(shard, 0);
+      unlock(shard);
+    }
+    try {
+      Files.deleteIfExists(memberPath);
+    } catch (final IOException exception) {
+      BotLogger.warn("Could not leave, the others take over once the lease ran out.", TAG,
+          exception);
+    }
+  }
+
+  private void checkShardCount() throws IOException {
+    final Path path = directory.resolve(SHARD_COUNT_FILE);
+    if (Files.notExists(path)) {
+      final Path temporary = directory.resolve(SHARD_COUNT_FILE + "." + instance + ".tmp");
+      Files.write(temporary, Integer.toString(shards).getBytes(UTF_8));
+      Files.move(temporary, path, ATOMIC_MOVE, REPLACE_EXISTING);
+    }
+    final String stored = new String(Files.readAllBytes(path), UTF_8).trim();
+    if (!stored.equals(Integer.toString(shards))) {
+      throw new IOException(format(
+          "The chats in %s are split into %s shards, not %d. They would not find their data in other shards.",
+          directory, stored, Integer.valueOf(shards)));
+    }
+  }
+
+  private void heartbeat() {
+    try {
+      renew();
+    } catch (final IOException exception) {
+      BotLogger.warn("Could not renew the membership of " + instance + ".", TAG, exception);
+    }
+  }
+
+  /**
+   * Written next to the member file and moved over it, so the others never read half of it.
+   */
+  private void renew() throws IOException {
+    final long now = System.nanoTime();
+    final Path temporary = memberPath.resolveSibling(memberPath.getFileName() + ".tmp");
+    jsonMapper.writeValue(temporary.toFile(),
+        new ShardMember(instance, url, System.currentTimeMillis()));
+    Files.move(temporary, memberPath, ATOMIC_MOVE, REPLACE_EXISTING);
+    renewed = now;
+  }
+
+  private void rebalance() {
+    try {
+      if (System.nanoTime() - renewed >= MILLISECONDS.toNanos(leaseMillis)) {
+        BotLogger.warn(TAG, "Could not renew the membership of " + instance
+            + " for a whole lease. Giving up every shard, the others want them by now.");
+        for (int shard = 0; shard < shards; shard++) {
+          if (leases[shard] != null) {
+            release(shard);
+          }
+        }
+        return;
+      }
+
+      final Map<String, ShardMember> alive = readMembers();
+      final ShardRing current = new ShardRing(alive.keySet());
+      members = alive;
+      ring = current;
+      // giving up shards first makes room for the ones that come back to us
+      for (int shard = 0; shard < shards; shard++) {
+        if (leases[shard] != null && !instance.equals(current.ownerOf(shard))) {
+          release(shard);
+        }
+      }
+      for (int shard = 0; shard < shards; shard++) {
+        if (leases[shard] == null && instance.equals(current.ownerOf(shard))) {
+          acquire(shard);
+        }
+      }
+    } catch (final RuntimeException exception) {
+      // a scheduled task that throws is never run again
+      BotLogger.error("Rebalancing the shards failed. Trying again later.", TAG, exception);
+    }
+  }
+
+  private Map<String, ShardMember> readMembers() {
+    final Map<String, ShardMember> alive = new HashMap<>();
+    final long now = System.currentTimeMillis();
+    try (final DirectoryStream<Path> files =
+        Files.newDirectoryStream(memberPath.getParent(), "*" + MEMBER_SUFFIX)) {
+      for (final Path file : files) {
+        try {
+          final ShardMember member = jsonMapper.readValue(file.toFile(), ShardMember.class);
+          if (now - member.getRenewedAt() < leaseMillis) {
+            alive.put(member.getInstance(), member);
+          }
+        } catch (final IOException exception) {
+          BotLogger.warn("Could not read the member " + file + ". It counts as dead.", TAG,
+              exception);
+        }
+      }
+    } catch (final IOException exception) {
+      BotLogger.warn("Could not list the members. Sticking to the ones we know.", TAG, exception);
+      return members.isEmpty() ? Collections.singletonMap(instance, self(now)) : members;
+    }
+    // whatever the directory says, we are alive as long as we run this
+    alive.put(instance, self(now));
+    return alive;
+  }
+
+  private ShardMember self(final long now) {
+    return new ShardMember(instance, url, now);
+  }
+
+  private void acquire(final int shard) {
+    @Nullable
+    FileChannel channel = null;
+    try {
+      channel = FileChannel.open(directory.resolve(format("%03d.lease", Integer.valueOf(shard))),
+          CREATE, WRITE);
+      final @Nullable FileLock lock = channel.tryLock();
+      if (lock == null) {
+        // the previous owner is still handing it over, or it is not as dead as it looks
+        BotLog.debug(TAG, () -> "Shard " + shard + " is still held by another instance.");
+        channel.close();
+        return;
+      }
+      requireListener().acquired(shard);
+      leases[shard] = channel;
+      accepting.set(shard, 1);
+      BotLogger.info(TAG, "Took over shard " + shard + ".");
+    } catch (final IOException | RuntimeException exception) {
+      BotLogger.error("Could not take over shard " + shard + ". Trying again later.", TAG,
+          exception);
+      if (channel != null) {
+        try {
+          channel.close();
+        } catch (final IOException closeException) {
+          BotLogger.warn("Could not release the lease of shard " + shard + ".", TAG,
+              closeException);
+        }
+      }
+    }
+  }
+
+  private void release(final int shard) {
+    accepting.set(shard, 0);
+    if (!requireListener().releasing(shard)) {
+      accepting.set(shard, 1);
+      BotLogger.warn(TAG, "Could not hand over shard " + shard + " in time. Trying again later.");
+      return;
+    }
+    unlock(shard);
+    BotLogger.info(TAG, "Handed over shard " + shard + ".");
+  }
+
+  /**
+   * Closing the channel drops its lock.
+   */
+  private void unlock(final int shard) {
+    final @Nullable FileChannel channel = leases[shard];
+    if (channel == null) {
+      return;
+    }
+    leases[shard] = null;
+    try {
+      channel.close();
+    } catch (final IOException exception) {
+      BotLogger.warn("Could not release the lease of shard " + shard + ".", TAG, exception);
+    }
+  }
+
+  private Listener requireListener() {
+    final @Nullable Listener current = listener;
+    if (current == null) {
+      throw new IllegalStateException("The leases have not been started.");
+    }
+    return current;
+  }
+}
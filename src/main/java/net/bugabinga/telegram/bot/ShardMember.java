@@ -0,0 +1,57 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * What an instance tells the others about itself in the shared directory of the
+ * {@link ShardLeases}. It keeps rewriting this, an instance that stopped doing so for longer than
+ * a lease is considered dead.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public class ShardMember {
+
+  private final String instance;
+  private final String url;
+  private final long renewedAt;
+
+  /**
+   * @param instance Id of the instance, unique among all instances sharing the directory.
+   * @param url Where the instance takes updates that were forwarded to it.
+   * @param renewedAt When the instance was last seen alive, in milliseconds since the epoch.
+   */
+  @JsonCreator
+  public ShardMember(@JsonProperty("instance") final String instance,
+      @JsonProperty("url") final String url, @JsonProperty("renewedAt") final long renewedAt) {
+    this.instance = instance;
+    this.url = url;
+    this.renewedAt = renewedAt;
+  }
+
+  /**
+   * @return Id of the instance.
+   */
+  public String getInstance() {
+    return instance;
+  }
+
+  /**
+   * @return Where the instance takes updates that were forwarded to it.
+   */
+  public String getUrl() {
+    return url;
+  }
+
+  /**
+   * @return When the instance was last seen alive, in milliseconds since the epoch.
+   */
+  public long getRenewedAt() {
+    return renewedAt;
+  }
+}
@@ -0,0 +1,100 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Spreads the shards over the instances that are alive with consistent hashing. Every instance gets
+ * a bunch of points on a ring, a shard belongs to the instance with the first point at or after
+ * its own. When an instance comes or goes, only the shards next to its points move, all others
+ * stay where they are.
+ *
+ * <p>
+ * Every instance has to come to the same result, so nothing in here may depend on the JVM it runs
+ * in.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public final class ShardRing {
+
+  /**
+   * More points spread the shards more evenly over few instances.
+   */
+  private static final int POINTS_PER_INSTANCE = 64;
+
+  private final TreeMap<Long, String> points = new TreeMap<>();
+
+  /**
+   * @param instances Ids of the instances that are alive.
+   */
+  public ShardRing(final Collection<String> instances) {
+    for (final String instance : instances) {
+      for (int point = 0; point < POINTS_PER_INSTANCE; point++) {
+        // on a collision the smaller id wins, no matter in which order the instances come
+        points.merge(Long.valueOf(hash(instance + '#' + point)), instance,
+            (one, other) -> one.compareTo(other) <= 0 ? one : other);
+      }
+    }
+  }
+
+  /**
+   * @param shard A shard.
+   * @return Id of the instance the shard belongs to, or <code>null</code> if no instance is alive.
+   */
+  public @Nullable String ownerOf(final int shard) {
+    if (points.isEmpty()) {
+      return null;
+    }
+    @Nullable
+    Map.Entry<Long, String> owner = points.ceilingEntry(Long.valueOf(mix(shard)));
+    if (owner == null) {
+      owner = points.firstEntry();
+    }
+    return owner.getValue();
+  }
+
+  /**
+   * @param chatId Id of a chat.
+   * @param shards Number of shards.
+   * @return The shard the chat belongs to, for as long as the number of shards stays the same.
+   */
+  public static int shardOf(final long chatId, final int shards) {
+    // group ids are negative and close to each other, so mix them before cutting them down
+    return (int) Long.remainderUnsigned(mix(chatId), shards);
+  }
+
+  /**
+   * FNV-1a over the UTF-8 bytes, mixed once more, because FNV alone spreads similar ids badly.
+   */
+  private static long hash(final String text) {
+    long hash = 0xCBF29CE484222325L;
+    for (final byte value : text.getBytes(UTF_8)) {
+      hash ^= value & 0xFF;
+      hash *= 0x100000001B3L;
+    }
+    return mix(hash);
+  }
+
+  /**
+   * The finalizer of MurmurHash3.
+   */
+  private static long mix(final long value) {
+    long mixed = value;
+    mixed ^= mixed >>> 33;
+    mixed *= 0xFF51AFD7ED558CCDL;
+    mixed ^= mixed >>> 33;
+    mixed *= 0xC4CEB9FE1A85EC53L;
+    mixed ^= mixed >>> 33;
+    return mixed;
+  }
+}
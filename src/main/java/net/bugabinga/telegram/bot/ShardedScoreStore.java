@@ -0,0 +1,221 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.telegram.telegrambots.logging.BotLogger;
+
+/**
+ * Keeps every shard of the chats in a store of its own, but only the shards this instance holds
+ * the {@link ShardLeases lease} of. Shards come and go while the bot runs, so {@link #load()} has
+ * nothing to load and {@link #open(int)} does it per shard instead.
+ *
+ * <p>
+ * Opening and closing a shard happens on the thread of the leases, while the processor keeps
+ * appending to the other shards.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public class ShardedScoreStore implements ScoreStore {
+
+  /**
+   * Namespace for logger.
+   */
+  private static final String TAG = "SHARDED_SCORE_STORE";
+
+  private static final BotLog.Sampler NOT_HELD = new BotLog.Sampler(100);
+
+  /**
+   * Opens the store of a single shard.
+   */
+  @FunctionalInterface
+  public interface Opener {
+
+    /**
+     * @param shard The shard.
+     * @return Its store, not loaded yet.
+     * @throws IOException If the store cannot be opened.
+     */
+    ScoreStore open(int shard) throws IOException;
+  }
+
+  private final int shards;
+  private final Opener opener;
+
+  /**
+   * The stores of the shards we hold, guarded by <code>this</code>.
+   */
+  private final @Nullable ScoreStore[] stores;
+
+  /**
+   * Shards that already took their part of a batch that failed in another shard. The processor
+   * appends the same batch again, which must not reach these shards twice.
+   */
+  private final boolean[] appended;
+
+  /**
+   * @param shards Number of shards.
+   * @param opener Opens the store of a shard once we hold it.
+   */
+  public ShardedScoreStore(final int shards, final Opener opener) {
+    this.shards = shards;
+    this.opener = opener;
+    stores = new ScoreStore[shards];
+    appended = new boolean[shards];
+  }
+
+  /**
+   * @return Empty boards. The boards of a shard come from {@link #open(int)}.
+   */
+  @Override
+  public ScoreBoards load() {
+    return new ScoreBoards();
+  }
+
+  /**
+   * Opens and loads the store of a shard. Loading can take a while, appending to the other shards
+   * goes on in the meantime.
+   *
+   * @param shard A shard we just got the lease of.
+   * @return The boards of the chats in the shard.
+   * @throws IOException If the store cannot be opened or loaded.
+   */
+  public ScoreBoards open(final int shard) throws IOException {
+    final ScoreStore store = opener.open(shard);
+    final ScoreBoards boards;
+    try {
+      boards = store.load();
+    } catch (final IOException | RuntimeException exception) {
+      store.close();
+      throw exception;
+    }
+    synchronized (this) {
+      stores[shard] = store;
+    }
+    return boards;
+  }
+
+  /**
+   * Closes the store of a shard. No more events of the shard may be appended afterwards.
+   *
+   * @param shard A shard we are about to give up.
+   * @throws IOException If the store cannot be closed.
+   */
+  public void close(final int shard) throws IOException {
+    final @Nullable ScoreStore store;
+    synchronized (this) {
+      store = stores[shard];
+      stores[shard] = null;
+    }
+    if (store != null) {
+      store.close();
+    }
+  }
+
+  /**
+   * Events of shards we do not hold anymore cannot be stored. The leases make sure they never
+   * arrive here, but if they do, they get dropped instead of stopping the event log.
+   *
+   * <p>
+   * Every shard stores its part on its own. If one of them fails, the ones before it keep theirs
+   * and skip it when the batch comes again.
+   */
+  @Override
+  public synchronized void append(final List<ScoreEvent> events) throws IOException {
+    @SuppressWarnings("unchecked")
+    final @Nullable List<ScoreEvent>[] byShard = new List[shards];
+    for (final ScoreEvent event : events) {
+      final int shard = ShardRing.shardOf(event.getChatId(), shards);
+      @Nullable
+      List<ScoreEvent> shardEvents = byShard[shard];
+      if (shardEvents == null) {
+        shardEvents = new ArrayList<>();
+        byShard[shard] = shardEvents;
+      }
+      shardEvents.add(event);
+    }
+    for (int shard = 0; shard < shards; shard++) {
+      final @Nullable List<ScoreEvent> shardEvents = byShard[shard];
+      if (shardEvents == null || appended[shard]) {
+        continue;
+      }
+      final @Nullable ScoreStore store = stores[shard];
+      if (store == null) {
+        final int lost = shardEvents.size();
+        final int notHeld = shard;
+        NOT_HELD.warn(TAG, () -> "Dropping " + lost + " events of shard " + notHeld
+            + ", which is not held by this instance.");
+        continue;
+      }
+      store.append(shardEvents);
+      appended[shard] = true;
+    }
+    Arrays.fill(appended, false);
+  }
+
+  @Override
+  public synchronized void force() throws IOException {
+    for (final @Nullable ScoreStore store : stores) {
+      if (store != null) {
+        store.force();
+      }
+    }
+  }
+
+  @Override
+  public synchronized void forEach(final long chatId, final Consumer<ScoreEvent> consumer)
+      throws IOException {
+    final @Nullable ScoreStore store = storeOf(chatId);
+    if (store != null) {
+      store.forEach(chatId, consumer);
+    }
+  }
+
+  @Override
+  public synchronized Map<String, Integer> scores(final long chatId) throws IOException {
+    final @Nullable ScoreStore store = storeOf(chatId);
+    return store == null ? Collections.emptyMap() : store.scores(chatId);
+  }
+
+  @Override
+  public synchronized List<ScoreBoard.Win> lastWins(final long chatId, final int count)
+      throws IOException {
+    final @Nullable ScoreStore store = storeOf(chatId);
+    return store == null ? Collections.emptyList() : store.lastWins(chatId, count);
+  }
+
+  /**
+   * Closes the stores of every shard still held.
+   */
+  @Override
+  public void close() throws IOException {
+    @Nullable
+    IOException failure = null;
+    for (int shard = 0; shard < shards; shard++) {
+      try {
+        close(shard);
+      } catch (final IOException exception) {
+        BotLogger.error("Could not close shard " + shard + ".", TAG, exception);
+        failure = exception;
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  private @Nullable ScoreStore storeOf(final long chatId) {
+    return stores[ShardRing.shardOf(chatId, shards)];
+  }
+}
@@ -0,0 +1,27 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+/**
+ * Which {@link ScoreStore} keeps the score events. Set it with the environment variable
+ * <code>SCOBO_STORE</code>. Switching does not carry existing data over.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public enum StorageBackend {
+
+  /**
+   * The {@link FileScoreStore}, an event log per chat plus snapshots in the data directory.
+   */
+  FILE,
+
+  /**
+   * The {@link JdbcScoreStore}. <code>SCOBO_JDBC_URL</code> picks the database, an embedded H2 in
+   * the data directory if it is not set. <code>SCOBO_JDBC_USER</code> and
+   * <code>SCOBO_JDBC_PASSWORD</code> are the credentials.
+   */
+  JDBC
+}
@@ -0,0 +1,84 @@
+/**
+ * © 2017 Oliver Jan Krylow <oliver@bugabinga.net> ❤
+ */
+package net.bugabinga.telegram.bot;
+
+/**
+ * Allows a burst of actions and after that a steady rate of them. Tokens trickle into the bucket at
+ * a fixed rate until it is full, every action takes one out.
+ *
+ * <p>
+ * Not thread safe. Time is passed in by the caller, which makes the bucket easy to reason about and
+ * keeps {@link System#nanoTime()} calls down when several buckets get checked at once.
+ *
+ * @author Oliver Jan Krylow <oliver@bugabinga.net>
+ * @since 16.10.2026
+ *
+ */
+public class TokenBucket {
+
+  private final double capacity;
+  private final double tokensPerNano;
+  private double tokens;
+  private long lastRefill;
+
+  /**
+   * @param perSecond How many actions per second are allowed in the long run.
+   * @param burst How many actions are allowed at once after a quiet period.
+   * @param now Current {@link System#nanoTime()}. The bucket starts out full.
+   */
+  public TokenBucket(final double perSecond, final int burst, final long now) {
+    capacity = Math.max(1, burst);
+    tokensPerNano = perSecond / 1_000_000_000d;
+    tokens = capacity;
+    lastRefill = now;
+  }
+
+  /**
+   * @param now Current {@link System#nanoTime()}.
+   * @return Nanoseconds until a token is available, <code>0</code> if one is available right now.
+   */
+  public long delay(final long now) {
+    refill(now);
+    return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / tokensPerNano);
+  }
+
+  /**
+   * Takes a token, even if there is none. The bucket then goes into debt, which later actions have
+   * to wait off.
+   *
+   * @param now Current {@link System#nanoTime()}.
+   */
+  public void take(final long now) {
+    refill(now);
+    tokens--;
+  }
+
+  /**
+   * Makes the bucket look empty for a while, for when the other side told us to back off.
+   *
+   * @param pauseNanos How long no token is available.
+   * @param now Current {@link System#nanoTime()}.
+   */
+  public void pause(final long pauseNanos, final long now) {
+    refill(now);
+    tokens = Math.min(tokens, 0) - pauseNanos * tokensPerNano;
+  }
+
+  /**
+   * @param now Current {@link System#nanoTime()}.
+   * @return <code>true</code> if the bucket refilled completely, so it is no different from a new
+   *         one.
+   */
+  public boolean isFull(final long now) {
+    refill(now);
+    return tokens >= capacity;
+  }
+
+  private void refill(final long now) {
+    if (now > lastRefill) {
+      tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+      lastRefill = now;
+    }
+  }
+}